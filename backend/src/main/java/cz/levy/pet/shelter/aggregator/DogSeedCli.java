@@ -0,0 +1,26 @@
+package cz.levy.pet.shelter.aggregator;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+
+/**
+ * Loads a seed file into the configured database and exits, without starting the web server.
+ *
+ * <p>Usage: {@code DogSeedCli <seed file> [--spring.datasource.url=...]}
+ */
+public class DogSeedCli {
+
+  public static void main(String[] args) {
+    if (args.length == 0 || args[0].startsWith("--")) {
+      System.err.println("Usage: DogSeedCli <seed file> [--property=value ...]");
+      System.exit(2);
+    }
+    var context =
+        new SpringApplicationBuilder(Application.class)
+            .web(WebApplicationType.NONE)
+            .properties("seed.file=" + args[0])
+            .run(args);
+    System.exit(SpringApplication.exit(context));
+  }
+}
@@ -0,0 +1,13 @@
+package cz.levy.pet.shelter.aggregator.api;
+
+public record DogBatchItemResult(
+    int index, DogBatchItemStatus status, Long internalId, String message) {
+
+  public static DogBatchItemResult created(int index, long internalId) {
+    return new DogBatchItemResult(index, DogBatchItemStatus.CREATED, internalId, null);
+  }
+
+  public static DogBatchItemResult rejected(int index, DogBatchItemStatus status, String message) {
+    return new DogBatchItemResult(index, status, null, message);
+  }
+}
@@ -0,0 +1,11 @@
+package cz.levy.pet.shelter.aggregator.api;
+
+public enum DogBatchItemStatus {
+  CREATED,
+  INSERTED,
+  UPDATED,
+  UNCHANGED,
+  INVALID,
+  DUPLICATE,
+  SHELTER_NOT_FOUND
+}
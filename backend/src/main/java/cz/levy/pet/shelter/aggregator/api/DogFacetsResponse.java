@@ -0,0 +1,13 @@
+package cz.levy.pet.shelter.aggregator.api;
+
+import cz.levy.pet.shelter.aggregator.domain.AgeBracket;
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import java.util.Map;
+
+/**
+ * Dog counts per facet value. Every value is present, with zero when no dog has it; dogs without a
+ * size bucket or age are only counted in {@code total}.
+ */
+public record DogFacetsResponse(
+    long total, Map<Sex, Long> sex, Map<DogSize, Long> dogSize, Map<AgeBracket, Long> ageBracket) {}
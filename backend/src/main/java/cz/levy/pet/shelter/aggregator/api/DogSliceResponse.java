@@ -0,0 +1,5 @@
+package cz.levy.pet.shelter.aggregator.api;
+
+import java.util.List;
+
+public record DogSliceResponse(List<DogResponse> dogs, String nextCursor) {}
@@ -0,0 +1,19 @@
+package cz.levy.pet.shelter.aggregator.api;
+
+import java.util.List;
+
+public record DogUpsertBatchResponse(
+    long inserted, long updated, long unchanged, List<DogBatchItemResult> items) {
+
+  public static DogUpsertBatchResponse of(List<DogBatchItemResult> items) {
+    return new DogUpsertBatchResponse(
+        count(items, DogBatchItemStatus.INSERTED),
+        count(items, DogBatchItemStatus.UPDATED),
+        count(items, DogBatchItemStatus.UNCHANGED),
+        items);
+  }
+
+  private static long count(List<DogBatchItemResult> items, DogBatchItemStatus status) {
+    return items.stream().filter(item -> item.status() == status).count();
+  }
+}
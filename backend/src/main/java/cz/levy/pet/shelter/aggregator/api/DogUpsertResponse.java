@@ -0,0 +1,3 @@
+package cz.levy.pet.shelter.aggregator.api;
+
+public record DogUpsertResponse(long internalId, DogBatchItemStatus status) {}
@@ -0,0 +1,80 @@
+package cz.levy.pet.shelter.aggregator.controller;
+
+import cz.levy.pet.shelter.aggregator.service.DogImageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+@RestController
+@RequestMapping("/dogs")
+public class DogImageController {
+  // Tomcat's NIO connector advertises sendfile support through these request attributes.
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  private final DogImageService dogImageService;
+  private final String cacheControl;
+
+  public DogImageController(
+      DogImageService dogImageService, @Value("${images.max-age:1d}") Duration maxAge) {
+    this.dogImageService = dogImageService;
+    this.cacheControl = CacheControl.maxAge(maxAge).cachePublic().getHeaderValue();
+  }
+
+  /**
+   * Serves image {@code index} of a dog, scaled down to width {@code w} when given. The ETag is the
+   * hash of the served bytes, so revalidation succeeds exactly as long as they are unchanged.
+   */
+  @GetMapping("/{internalId}/images/{index}")
+  public void getImage(
+      @PathVariable long internalId,
+      @PathVariable int index,
+      @RequestParam(required = false) Integer w,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    var image = dogImageService.getImage(internalId, index, w);
+    response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+    if (new ServletWebRequest(request, response).checkNotModified("\"" + image.hash() + "\"")) {
+      return;
+    }
+
+    try (var file = FileChannel.open(image.path(), StandardOpenOption.READ)) {
+      var size = file.size();
+      response.setContentType(
+          MediaTypeFactory.getMediaType(image.path().getFileName().toString())
+              .orElse(MediaType.APPLICATION_OCTET_STREAM)
+              .toString());
+      response.setContentLengthLong(size);
+      // With sendfile the container copies the file to the socket in the kernel once this method
+      // returns. Otherwise transferTo still avoids staging the file in a heap buffer of our own.
+      if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+        request.setAttribute(SENDFILE_FILENAME, image.path().toAbsolutePath().toString());
+        request.setAttribute(SENDFILE_START, 0L);
+        request.setAttribute(SENDFILE_END, size);
+        return;
+      }
+      var output = Channels.newChannel(response.getOutputStream());
+      for (long position = 0; position < size; ) {
+        position += file.transferTo(position, size - position, output);
+      }
+    }
+  }
+}
@@ -2,30 +2,92 @@ package cz.levy.pet.shelter.aggregator.controller;
 
 import static cz.levy.pet.shelter.aggregator.mapper.DogMapper.requestToDto;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemResult;
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemStatus;
+import cz.levy.pet.shelter.aggregator.api.DogFacetsResponse;
 import cz.levy.pet.shelter.aggregator.api.DogRequest;
 import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import cz.levy.pet.shelter.aggregator.api.DogSliceResponse;
+import cz.levy.pet.shelter.aggregator.api.DogUpsertBatchResponse;
+import cz.levy.pet.shelter.aggregator.api.DogUpsertResponse;
 import cz.levy.pet.shelter.aggregator.domain.DogSize;
 import cz.levy.pet.shelter.aggregator.domain.Sex;
 import cz.levy.pet.shelter.aggregator.domain.SortField;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
 import cz.levy.pet.shelter.aggregator.mapper.DogMapper;
+import cz.levy.pet.shelter.aggregator.service.DogIngestService;
 import cz.levy.pet.shelter.aggregator.service.DogSheltersService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
+import java.util.regex.Pattern;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/dogs")
 public class DogSheltersController {
+  private static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+  private static final String CBOR_SEQ_VALUE = "application/cbor-seq";
+  private static final String SMILE_VALUE = "application/x-jackson-smile";
+  private static final MediaType SMILE = MediaType.parseMediaType(SMILE_VALUE);
+  private static final List<MediaType> DOG_TYPES =
+      List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, SMILE);
+  private static final List<MediaType> EXPORT_TYPES =
+      List.of(MediaType.APPLICATION_NDJSON, MediaType.parseMediaType(CBOR_SEQ_VALUE), SMILE);
+  private static final Pattern VERSION_TAG = Pattern.compile("(\\d+)(?:-cbor|-smile)?");
 
   private final DogSheltersService dogSheltersService;
+  private final DogIngestService dogIngestService;
+  private final Validator validator;
+  private final ObjectMapper objectMapper;
+  private final ObjectWriter dogResponseWriter;
+  private final ObjectWriter cborDogWriter;
+  private final ObjectWriter smileDogWriter;
 
-  public DogSheltersController(DogSheltersService dogSheltersService) {
+  public DogSheltersController(
+      DogSheltersService dogSheltersService,
+      DogIngestService dogIngestService,
+      Validator validator,
+      ObjectMapper objectMapper) {
     this.dogSheltersService = dogSheltersService;
+    this.dogIngestService = dogIngestService;
+    this.validator = validator;
+    this.objectMapper = objectMapper;
+    this.dogResponseWriter = dogWriter(objectMapper);
+    // Configured like the mappers of Spring MVC's CBOR and Smile message converters.
+    this.cborDogWriter = dogWriter(Jackson2ObjectMapperBuilder.cbor().build());
+    this.smileDogWriter = dogWriter(Jackson2ObjectMapperBuilder.smile().build());
   }
 
   @PostMapping()
@@ -34,10 +96,76 @@ public class DogSheltersController {
     return ResponseEntity.status(HttpStatus.CREATED).body(dogEntity.getId());
   }
 
+  @PostMapping("/batch")
+  public ResponseEntity<List<DogBatchItemResult>> createDogs(@RequestBody List<DogRequest> dogs) {
+    var results = new DogBatchItemResult[dogs.size()];
+    var validDogs = validateBatch(dogs, results);
+    dogIngestService.saveDogs(validDogs).forEach(result -> results[result.index()] = result);
+    return ResponseEntity.ok(Arrays.asList(results));
+  }
+
+  @PutMapping("/by-external/{shelterId}/{externalId}")
+  public ResponseEntity<DogUpsertResponse> upsertDog(
+      @PathVariable long shelterId,
+      @PathVariable String externalId,
+      @Valid @RequestBody DogRequest dog) {
+    if (dog.getShelterId() != shelterId || !externalId.equals(dog.getExternalId())) {
+      throw new IllegalArgumentException(
+          "Path shelterId and externalId must match the request body");
+    }
+    var result = dogIngestService.upsertDog(requestToDto(dog));
+    var status =
+        result.status() == DogBatchItemStatus.INSERTED ? HttpStatus.CREATED : HttpStatus.OK;
+    return ResponseEntity.status(status)
+        .body(new DogUpsertResponse(result.internalId(), result.status()));
+  }
+
+  @PutMapping("/by-external/batch")
+  public ResponseEntity<DogUpsertBatchResponse> upsertDogs(@RequestBody List<DogRequest> dogs) {
+    var results = new DogBatchItemResult[dogs.size()];
+    var validDogs = validateBatch(dogs, results);
+    dogIngestService.upsertDogs(validDogs).forEach(result -> results[result.index()] = result);
+    return ResponseEntity.ok(DogUpsertBatchResponse.of(Arrays.asList(results)));
+  }
+
+  // An If-Match header makes the write conditional on the dog still having a version it lists.
   @PutMapping("/{internalId}")
   public ResponseEntity<Void> updateDog(
-      @PathVariable long internalId, @Valid @RequestBody DogRequest dog) {
-    dogSheltersService.updateDog(internalId, requestToDto(dog));
+      @PathVariable long internalId,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+      @Valid @RequestBody DogRequest dog) {
+    dogSheltersService.updateDog(internalId, versionsMatching(ifMatch), requestToDto(dog));
+    return ResponseEntity.noContent().build();
+  }
+
+  // Takes a JSON merge patch (RFC 7386): members set to null are cleared and absent ones are kept.
+  // The patched dog is validated like a PUT body.
+  @PatchMapping(
+      value = "/{internalId}",
+      consumes = {MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<Void> patchDog(
+      @PathVariable long internalId,
+      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+      @RequestBody ObjectNode patch) {
+    dogSheltersService.patchDog(
+        internalId,
+        versionsMatching(ifMatch),
+        dogDto -> {
+          var current = DogMapper.dtoToResponse(dogDto, internalId).dogInfo();
+          DogRequest patched;
+          try {
+            patched =
+                objectMapper.treeToValue(
+                    mergePatch(objectMapper.valueToTree(current), patch), DogRequest.class);
+          } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid patch: " + e.getOriginalMessage());
+          }
+          var violation = findViolation("dog", patched);
+          if (violation != null) {
+            throw new IllegalArgumentException(violation);
+          }
+          return requestToDto(patched);
+        });
     return ResponseEntity.noContent().build();
   }
 
@@ -47,10 +175,31 @@ public class DogSheltersController {
     return ResponseEntity.noContent().build();
   }
 
+  // The ETag is the row version, suffixed with the format for CBOR and Smile so that validators
+  // never match across formats. Revalidations read just the version and updated_at columns, so a
+  // 304 never loads the dog, its image URLs or its shelter.
   @GetMapping("/{internalId}")
-  public ResponseEntity<DogResponse> getOneDog(@PathVariable long internalId) {
-    var dogDto = dogSheltersService.getDogDto(internalId);
-    return ResponseEntity.ok(DogMapper.dtoToResponse(dogDto, internalId));
+  public ResponseEntity<DogResponse> getOneDog(
+      @PathVariable long internalId,
+      @RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE) String accept,
+      WebRequest request,
+      HttpServletResponse response) {
+    var contentType = preferredType(accept, DOG_TYPES);
+    response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+        || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+      var version = dogSheltersService.getDogVersion(internalId);
+      if (request.checkNotModified(
+          eTagOf(version.getVersion(), contentType), version.getUpdatedAt().toEpochMilli())) {
+        return null;
+      }
+    }
+    var versionedDog = dogSheltersService.getVersionedDog(internalId);
+    return ResponseEntity.ok()
+        .contentType(contentType)
+        .eTag(eTagOf(versionedDog.version(), contentType))
+        .lastModified(versionedDog.updatedAt())
+        .body(DogMapper.dtoToResponse(versionedDog.dog(), internalId));
   }
 
   @GetMapping()
@@ -64,7 +213,11 @@ public class DogSheltersController {
       @RequestParam(required = false) Sex sex,
       @RequestParam(required = false) DogSize dogSize,
       @RequestParam(required = false, defaultValue = "false") boolean randomise) {
-    if (randomise) return ResponseEntity.ok(dogSheltersService.getRandomDogs(size));
+    if (randomise) {
+      return ResponseEntity.ok()
+          .varyBy(HttpHeaders.ACCEPT)
+          .body(dogSheltersService.getRandomDogs(size));
+    }
 
     var dogResponses =
         dogSheltersService.getAllDogs(
@@ -73,6 +226,223 @@ public class DogSheltersController {
             ageMax,
             sex,
             dogSize);
-    return ResponseEntity.ok(dogResponses);
+    return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(dogResponses);
+  }
+
+  @GetMapping(params = {"cursor", "!q"})
+  public ResponseEntity<DogSliceResponse> getDogsAfterCursor(
+      @RequestParam String cursor,
+      @RequestParam(defaultValue = "100") int size,
+      @RequestParam(defaultValue = "ID") SortField sort,
+      @RequestParam(defaultValue = "ASC") Direction order,
+      @RequestParam(required = false) Float ageMin,
+      @RequestParam(required = false) Float ageMax,
+      @RequestParam(required = false) Sex sex,
+      @RequestParam(required = false) DogSize dogSize) {
+    return ResponseEntity.ok()
+        .varyBy(HttpHeaders.ACCEPT)
+        .body(
+            dogSheltersService.getDogsAfterCursor(
+                cursor, sort, order, size, ageMin, ageMax, sex, dogSize));
+  }
+
+  @GetMapping("/facets")
+  public ResponseEntity<DogFacetsResponse> getFacets(
+      @RequestParam(required = false) Float ageMin,
+      @RequestParam(required = false) Float ageMax,
+      @RequestParam(required = false) Sex sex,
+      @RequestParam(required = false) DogSize dogSize) {
+    return ResponseEntity.ok()
+        .varyBy(HttpHeaders.ACCEPT)
+        .body(dogSheltersService.getFacets(ageMin, ageMax, sex, dogSize));
+  }
+
+  @GetMapping(params = "q")
+  public ResponseEntity<DogSliceResponse> searchDogs(
+      @RequestParam String q,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(defaultValue = "100") int size,
+      @RequestParam(required = false) Float ageMin,
+      @RequestParam(required = false) Float ageMax,
+      @RequestParam(required = false) Sex sex,
+      @RequestParam(required = false) DogSize dogSize) {
+    return ResponseEntity.ok()
+        .varyBy(HttpHeaders.ACCEPT)
+        .body(dogSheltersService.searchDogs(q, cursor, size, ageMin, ageMax, sex, dogSize));
+  }
+
+  // Streams one JSON document per line straight from a database cursor, or a plain sequence of one
+  // CBOR or Smile value per dog when the client asks for those. The first dog is flushed right
+  // away, later ones whenever the response buffer fills. A single mapping serves all formats so
+  // that clients accepting anything get NDJSON rather than whichever binary mapping ranks first.
+  @GetMapping(
+      value = "/export",
+      produces = {MediaType.APPLICATION_NDJSON_VALUE, CBOR_SEQ_VALUE, SMILE_VALUE})
+  public ResponseEntity<StreamingResponseBody> exportDogs(
+      @RequestParam(required = false) Float ageMin,
+      @RequestParam(required = false) Float ageMax,
+      @RequestParam(required = false) Sex sex,
+      @RequestParam(required = false) DogSize dogSize,
+      @RequestHeader(value = HttpHeaders.ACCEPT, defaultValue = MediaType.ALL_VALUE)
+          String accept) {
+    var contentType = preferredType(accept, EXPORT_TYPES);
+    var writer =
+        switch (contentType.toString()) {
+          case CBOR_SEQ_VALUE -> cborDogWriter;
+          case SMILE_VALUE -> smileDogWriter;
+          default -> dogResponseWriter;
+        };
+    StreamingResponseBody body =
+        outputStream -> {
+          try (var dogs = new DogSequenceWriter(writer, outputStream)) {
+            dogSheltersService.exportDogs(ageMin, ageMax, sex, dogSize, dogs);
+          }
+        };
+    return ResponseEntity.ok().contentType(contentType).varyBy(HttpHeaders.ACCEPT).body(body);
+  }
+
+  // The offered type the client prefers most, concrete types winning over wildcards of the same
+  // quality. Falls back to the first offered type.
+  private static MediaType preferredType(String accept, List<MediaType> offered) {
+    var accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+    accepted.sort(
+        Comparator.comparingDouble(MediaType::getQualityValue)
+            .reversed()
+            .thenComparing(MediaType::isWildcardType)
+            .thenComparing(MediaType::isWildcardSubtype));
+    for (var type : accepted) {
+      for (var offeredType : offered) {
+        if (type.getQualityValue() > 0 && type.includes(offeredType)) {
+          return offeredType;
+        }
+      }
+    }
+    return offered.getFirst();
+  }
+
+  // Buffered: the export flushes the first dog itself and leaves the rest to the response buffer.
+  private static ObjectWriter dogWriter(ObjectMapper mapper) {
+    return mapper
+        .writerFor(DogResponse.class)
+        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE, SerializationFeature.INDENT_OUTPUT);
+  }
+
+  private static JsonNode mergePatch(JsonNode target, JsonNode patch) {
+    if (!patch.isObject()) {
+      return patch;
+    }
+    var merged =
+        target.isObject() ? (ObjectNode) target.deepCopy() : JsonNodeFactory.instance.objectNode();
+    for (var field : patch.properties()) {
+      if (field.getValue().isNull()) {
+        merged.remove(field.getKey());
+      } else {
+        merged.set(field.getKey(), mergePatch(merged.path(field.getKey()), field.getValue()));
+      }
+    }
+    return merged;
+  }
+
+  private static String eTagOf(long version, MediaType contentType) {
+    if (contentType.equals(MediaType.APPLICATION_CBOR)) {
+      return "\"" + version + "-cbor\"";
+    }
+    if (contentType.equals(SMILE)) {
+      return "\"" + version + "-smile\"";
+    }
+    return "\"" + version + "\"";
+  }
+
+  // If-Match compares strongly, so weak tags never match. The format suffix is ignored: the tags of
+  // every format of a version identify the same state of the dog.
+  private static LongPredicate versionsMatching(String ifMatch) {
+    if (ifMatch == null) {
+      return _ -> true;
+    }
+    var versions = new HashSet<Long>();
+    for (var eTag : ETag.parse(ifMatch)) {
+      if (eTag.isWildcard()) {
+        return _ -> true;
+      }
+      var matcher = VERSION_TAG.matcher(eTag.tag());
+      if (!eTag.weak() && matcher.matches()) {
+        versions.add(Long.parseLong(matcher.group(1)));
+      }
+    }
+    return versions::contains;
+  }
+
+  // Records an INVALID result for every dog failing validation and returns the remaining ones.
+  private LinkedHashMap<Integer, DogDto> validateBatch(
+      List<DogRequest> dogs, DogBatchItemResult[] results) {
+    if (dogs.size() > DogIngestService.MAX_BATCH_SIZE) {
+      throw new IllegalArgumentException(
+          "Batch must not contain more than " + DogIngestService.MAX_BATCH_SIZE + " dogs");
+    }
+    var validDogs = new LinkedHashMap<Integer, DogDto>();
+    for (int index = 0; index < dogs.size(); index++) {
+      var violation = findViolation("dogs[" + index + "]", dogs.get(index));
+      if (violation != null) {
+        results[index] = DogBatchItemResult.rejected(index, DogBatchItemStatus.INVALID, violation);
+      } else {
+        validDogs.put(index, requestToDto(dogs.get(index)));
+      }
+    }
+    return validDogs;
+  }
+
+  private String findViolation(String path, DogRequest dog) {
+    if (dog == null) {
+      return "Invalid request parameters: " + path + " must not be null";
+    }
+    return validator.validate(dog).stream()
+        .min(Comparator.comparing(violation -> violation.getPropertyPath().toString()))
+        .map(
+            violation ->
+                "Invalid request parameters: "
+                    + path
+                    + "."
+                    + violation.getPropertyPath()
+                    + " "
+                    + violation.getMessage())
+        .orElse(null);
+  }
+
+  private static class DogSequenceWriter implements Consumer<DogResponse>, Closeable {
+    private final ObjectWriter writer;
+    private final JsonGenerator generator;
+    private final boolean textual;
+    private boolean flushed;
+
+    DogSequenceWriter(ObjectWriter writer, OutputStream outputStream) throws IOException {
+      this.writer = writer;
+      this.generator = writer.createGenerator(outputStream);
+      this.textual = !writer.getFactory().canHandleBinaryNatively();
+      if (textual) {
+        // JSON lines are separated by the newline written after each dog instead of a space.
+        generator.setRootValueSeparator(null);
+      }
+    }
+
+    @Override
+    public void accept(DogResponse dog) {
+      try {
+        writer.writeValue(generator, dog);
+        if (textual) {
+          generator.writeRaw('\n');
+        }
+        if (!flushed) {
+          generator.flush();
+          flushed = true;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      generator.close();
+    }
   }
 }
@@ -0,0 +1,37 @@
+package cz.levy.pet.shelter.aggregator.domain;
+
+import lombok.Getter;
+
+/** Age ranges in years; each bracket starts at {@code from} and ends where the next one starts. */
+@Getter
+public enum AgeBracket {
+  PUPPY(0),
+  YOUNG(1),
+  ADULT(3),
+  SENIOR(8);
+
+  private final int from;
+
+  AgeBracket(int from) {
+    this.from = from;
+  }
+
+  /** The first age past the bracket, or null for the last bracket. */
+  public Integer getTo() {
+    var brackets = values();
+    return ordinal() + 1 < brackets.length ? brackets[ordinal() + 1].from : null;
+  }
+
+  /** The bracket containing {@code age}, or null when the age is unknown. */
+  public static AgeBracket of(Float age) {
+    if (age == null || age < PUPPY.from) {
+      return null;
+    }
+    var brackets = values();
+    var bracket = PUPPY;
+    for (int i = 1; i < brackets.length && age >= brackets[i].from; i++) {
+      bracket = brackets[i];
+    }
+    return bracket;
+  }
+}
@@ -6,19 +6,21 @@ import lombok.Getter;
 
 @Getter
 public enum SortField {
-  ID("id"),
-  NAME("name"),
-  ESTIMATED_AGE("estimatedAgeInYears"),
-  CURRENT_WEIGHT("currentWeight"),
-  ESTIMATED_FINAL_WEIGHT_MIN("estimatedFinalWeightMin"),
-  ESTIMATED_FINAL_WEIGHT_MAX("estimatedFinalWeightMax"),
-  SHELTER_ID("shelterId"),
+  ID("id", "id"),
+  NAME("name", "name"),
+  ESTIMATED_AGE("estimatedAgeInYears", "estimated_age_in_years"),
+  CURRENT_WEIGHT("currentWeight", "current_weight"),
+  ESTIMATED_FINAL_WEIGHT_MIN("estimatedFinalWeightMin", "estimated_final_weight_min"),
+  ESTIMATED_FINAL_WEIGHT_MAX("estimatedFinalWeightMax", "estimated_final_weight_max"),
+  SHELTER_ID("shelter.id", "shelter_id"),
   ;
 
   private final String fieldName;
+  private final String columnName;
 
-  SortField(String fieldName) {
+  SortField(String fieldName, String columnName) {
     this.fieldName = fieldName;
+    this.columnName = columnName;
   }
 
   @JsonValue
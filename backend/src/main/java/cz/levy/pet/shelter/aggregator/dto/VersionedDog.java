@@ -0,0 +1,6 @@
+package cz.levy.pet.shelter.aggregator.dto;
+
+import java.time.Instant;
+
+/** A dog together with the version and modification time of the row it was read from. */
+public record VersionedDog(DogDto dog, long version, Instant updatedAt) {}
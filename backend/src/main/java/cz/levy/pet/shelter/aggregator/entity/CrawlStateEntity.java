@@ -0,0 +1,21 @@
+package cz.levy.pet.shelter.aggregator.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/** What a scraper last saw at a detail page URL, used to skip unchanged pages on re-crawls. */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "crawl_state")
+public class CrawlStateEntity {
+  @Id private String url;
+
+  @Column private String etag;
+  @Column private String lastModified;
+
+  @Column(nullable = false)
+  private String contentHash;
+}
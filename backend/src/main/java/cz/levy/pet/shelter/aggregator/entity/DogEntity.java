@@ -3,12 +3,18 @@ package cz.levy.pet.shelter.aggregator.entity;
 import cz.levy.pet.shelter.aggregator.domain.Sex;
 import jakarta.persistence.*;
 import jakarta.persistence.Entity;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.type.SqlTypes;
 
 @Data
 @Entity
+@DynamicUpdate
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,7 +22,11 @@ import lombok.*;
 public class DogEntity {
 
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "dog_entity_id_seq")
+  @SequenceGenerator(
+      name = "dog_entity_id_seq",
+      sequenceName = "dog_entity_id_seq",
+      allocationSize = 50)
   private long id;
 
   @Column(nullable = false)
@@ -45,12 +55,19 @@ public class DogEntity {
 
   @Column private String dogAddress;
 
-  @ManyToOne(optional = false)
+  @ManyToOne(fetch = FetchType.LAZY, optional = false)
   @JoinColumn(name = "shelter_id", nullable = false)
   private ShelterEntity shelter;
 
-  @ElementCollection
-  @CollectionTable(name = "dog_image_urls", joinColumns = @JoinColumn(name = "dog_id"))
-  @Column(name = "image_url", length = 2048)
+  // A text[] column in the given order, so loading a dog reads one row and replacing its image URLs
+  // writes one column.
+  @JdbcTypeCode(SqlTypes.ARRAY)
+  @Column(nullable = false)
+  @Builder.Default
   private List<String> imageUrls = new ArrayList<>();
+
+  // Incremented by Hibernate on every change, image URLs included; the JDBC upserts bump it too.
+  @Version private long version;
+
+  @UpdateTimestamp private Instant updatedAt;
 }
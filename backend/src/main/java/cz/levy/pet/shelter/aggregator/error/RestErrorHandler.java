@@ -3,6 +3,7 @@ package cz.levy.pet.shelter.aggregator.error;
 import java.util.NoSuchElementException;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -50,6 +51,24 @@ public class RestErrorHandler {
     return createErrorResponseEntity(HttpStatus.CONFLICT, ex.getMessage());
   }
 
+  // A concurrent write, such as an upsert of the same dog, committed after this one read the row.
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  public ResponseEntity<ErrorResponse> handleOptimisticLockingFailure(
+      OptimisticLockingFailureException ex) {
+    return createErrorResponseEntity(
+        HttpStatus.CONFLICT, "The resource was modified concurrently, retry the request");
+  }
+
+  @ExceptionHandler(PreconditionFailedException.class)
+  public ResponseEntity<ErrorResponse> handlePreconditionFailed(PreconditionFailedException ex) {
+    return createErrorResponseEntity(HttpStatus.PRECONDITION_FAILED, ex.getMessage());
+  }
+
+  @ExceptionHandler(UpstreamException.class)
+  public ResponseEntity<ErrorResponse> handleUpstream(UpstreamException ex) {
+    return createErrorResponseEntity(HttpStatus.BAD_GATEWAY, ex.getMessage());
+  }
+
   private ResponseEntity<ErrorResponse> createErrorResponseEntity(
       HttpStatus status, String detail) {
     return ResponseEntity.status(status)
@@ -62,4 +81,22 @@ public class RestErrorHandler {
       super(message);
     }
   }
+
+  /** An If-Match precondition of a write did not match the current version of the resource. */
+  public static class PreconditionFailedException extends RuntimeException {
+    public PreconditionFailedException(String message) {
+      super(message);
+    }
+  }
+
+  /** A resource this service depends on, such as an origin image server, failed. */
+  public static class UpstreamException extends RuntimeException {
+    public UpstreamException(String message) {
+      super(message);
+    }
+
+    public UpstreamException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
 }
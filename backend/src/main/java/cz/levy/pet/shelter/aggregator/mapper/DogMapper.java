@@ -5,6 +5,7 @@ import cz.levy.pet.shelter.aggregator.api.DogResponse;
 import cz.levy.pet.shelter.aggregator.dto.DogDto;
 import cz.levy.pet.shelter.aggregator.entity.DogEntity;
 import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
+import java.util.ArrayList;
 
 public class DogMapper {
   public static DogDto requestToDto(DogRequest dogRequest) {
@@ -25,6 +26,24 @@ public class DogMapper {
         .build();
   }
 
+  public static DogRequest dtoToRequest(DogDto dogDto) {
+    return DogRequest.builder()
+        .shelterId(dogDto.getShelterId())
+        .externalId(dogDto.getExternalId())
+        .shelterUrl(dogDto.getShelterUrl())
+        .name(dogDto.getName())
+        .description(dogDto.getDescription())
+        .breedGuess(dogDto.getBreedGuess())
+        .sex(dogDto.getSex())
+        .estimatedAgeInYears(dogDto.getEstimatedAgeInYears())
+        .currentWeight(dogDto.getCurrentWeight())
+        .estimatedFinalWeightMin(dogDto.getEstimatedFinalWeightMin())
+        .estimatedFinalWeightMax(dogDto.getEstimatedFinalWeightMax())
+        .dogAddress(dogDto.getDogAddress())
+        .imageUrls(dogDto.getImageUrls())
+        .build();
+  }
+
   public static DogEntity dtoToEntity(DogDto dogDto, ShelterEntity shelter) {
     return DogEntity.builder()
         .externalId(dogDto.getExternalId())
@@ -39,10 +58,32 @@ public class DogMapper {
         .estimatedFinalWeightMax(dogDto.getEstimatedFinalWeightMax())
         .dogAddress(dogDto.getDogAddress())
         .shelter(shelter)
-        .imageUrls(dogDto.getImageUrls())
+        .imageUrls(copyOfImageUrls(dogDto))
         .build();
   }
 
+  // Leaves the shelter alone; setting an unchanged value does not make the managed entity dirty.
+  public static void copyToEntity(DogDto dogDto, DogEntity dogEntity) {
+    dogEntity.setExternalId(dogDto.getExternalId());
+    dogEntity.setShelterUrl(dogDto.getShelterUrl());
+    dogEntity.setName(dogDto.getName());
+    dogEntity.setDescription(dogDto.getDescription());
+    dogEntity.setBreedGuess(dogDto.getBreedGuess());
+    dogEntity.setSex(dogDto.getSex());
+    dogEntity.setEstimatedAgeInYears(dogDto.getEstimatedAgeInYears());
+    dogEntity.setCurrentWeight(dogDto.getCurrentWeight());
+    dogEntity.setEstimatedFinalWeightMin(dogDto.getEstimatedFinalWeightMin());
+    dogEntity.setEstimatedFinalWeightMax(dogDto.getEstimatedFinalWeightMax());
+    dogEntity.setDogAddress(dogDto.getDogAddress());
+    dogEntity.setImageUrls(copyOfImageUrls(dogDto));
+  }
+
+  private static ArrayList<String> copyOfImageUrls(DogDto dogDto) {
+    return dogDto.getImageUrls() == null
+        ? new ArrayList<>()
+        : new ArrayList<>(dogDto.getImageUrls());
+  }
+
   public static DogDto entityToDto(DogEntity dogEntity) {
     return DogDto.builder()
         .externalId(dogEntity.getExternalId())
@@ -57,10 +98,34 @@ public class DogMapper {
         .estimatedFinalWeightMax(dogEntity.getEstimatedFinalWeightMax())
         .dogAddress(dogEntity.getDogAddress())
         .shelterId(dogEntity.getShelter().getId())
-        .imageUrls(dogEntity.getImageUrls())
+        // Detached from the Hibernate collection so the DTO can outlive the session.
+        .imageUrls(
+            dogEntity.getImageUrls() == null ? null : new ArrayList<>(dogEntity.getImageUrls()))
         .build();
   }
 
+  // Maps straight to the response without the intermediate DogDto or any builder, as listings map
+  // every dog of a page on each request.
+  public static DogResponse entityToResponse(DogEntity dogEntity) {
+    var imageUrls = dogEntity.getImageUrls();
+    return new DogResponse(
+        dogEntity.getId(),
+        new DogRequest(
+            dogEntity.getShelter().getId(),
+            dogEntity.getExternalId(),
+            dogEntity.getShelterUrl(),
+            dogEntity.getName(),
+            dogEntity.getDescription(),
+            dogEntity.getBreedGuess(),
+            dogEntity.getSex(),
+            dogEntity.getEstimatedAgeInYears(),
+            dogEntity.getCurrentWeight(),
+            dogEntity.getEstimatedFinalWeightMin(),
+            dogEntity.getEstimatedFinalWeightMax(),
+            dogEntity.getDogAddress(),
+            imageUrls == null ? null : new ArrayList<>(imageUrls)));
+  }
+
   public static DogResponse dtoToResponse(DogDto dogDto, long internalId) {
     var dogRequest =
         DogRequest.builder()
@@ -0,0 +1,8 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import cz.levy.pet.shelter.aggregator.entity.CrawlStateEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CrawlStateRepository extends JpaRepository<CrawlStateEntity, String> {}
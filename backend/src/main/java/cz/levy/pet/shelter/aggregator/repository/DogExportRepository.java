@@ -0,0 +1,50 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class DogExportRepository {
+
+  private static final String EXPORT_DOGS =
+      "SELECT " + DogResponseRowMapper.COLUMNS + " FROM dog_entity d WHERE %s ORDER BY d.id";
+
+  private final JdbcTemplate jdbcTemplate;
+  private final int fetchSize;
+
+  public DogExportRepository(
+      JdbcTemplate jdbcTemplate, @Value("${export.fetch-size:1000}") int fetchSize) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Passes every dog matching {@code filter} to {@code action} in id order. Rows are read through a
+   * forward-only cursor {@code export.fetch-size} rows at a time, which PostgreSQL only opens
+   * inside a transaction, so callers must run in one.
+   */
+  public void forEachDog(DogFilter filter, Consumer<DogResponse> action) {
+    var parameters = new ArrayList<Object>();
+    var sql = EXPORT_DOGS.formatted(filter.toSqlCondition(parameters));
+    jdbcTemplate.query(
+        connection -> {
+          var statement =
+              connection.prepareStatement(
+                  sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+          statement.setFetchSize(fetchSize);
+          for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+          }
+          return statement;
+        },
+        (RowCallbackHandler)
+            resultSet -> action.accept(DogResponseRowMapper.INSTANCE.mapRow(resultSet, 0)));
+  }
+}
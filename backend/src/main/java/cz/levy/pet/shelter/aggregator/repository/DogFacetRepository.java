@@ -0,0 +1,95 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import cz.levy.pet.shelter.aggregator.domain.AgeBracket;
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.spec.DogFacetCounts;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Locale;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class DogFacetRepository {
+  // One pass over the filtered dogs computes every count; the facet values are fixed enums, so
+  // they are rendered as literals instead of bind parameters.
+  private static final String COUNT_FACETS = buildCountFacets();
+  // Both columns come from the one statement snapshot, so the counts are exactly those of the
+  // transactions the snapshot shows as committed.
+  private static final String COUNT_ALL_FACETS =
+      "SELECT pg_current_snapshot()::text AS snapshot, facets.*\nFROM ("
+          + COUNT_FACETS.formatted("TRUE")
+          + ") facets";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public DogFacetRepository(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /** Counts the dogs matching {@code filter} per sex, size bucket and age bracket. */
+  public DogFacetCounts countFacets(DogFilter filter) {
+    var parameters = new ArrayList<Object>();
+    var sql = COUNT_FACETS.formatted(filter.toSqlCondition(parameters));
+    return jdbcTemplate.queryForObject(
+        sql, (resultSet, _) -> toCounts(resultSet), parameters.toArray());
+  }
+
+  /**
+   * Counts all dogs like {@link #countFacets} and returns the {@code pg_current_snapshot()} the
+   * counts were taken in.
+   */
+  public SnapshotFacetCounts countAllFacets() {
+    return jdbcTemplate.queryForObject(
+        COUNT_ALL_FACETS,
+        (resultSet, _) ->
+            new SnapshotFacetCounts(toCounts(resultSet), resultSet.getString("snapshot")));
+  }
+
+  public record SnapshotFacetCounts(DogFacetCounts counts, String snapshot) {}
+
+  private static DogFacetCounts toCounts(ResultSet resultSet) throws SQLException {
+    var counts = new DogFacetCounts();
+    counts.setTotal(resultSet.getLong("total"));
+    for (var sex : Sex.values()) {
+      counts.setSex(sex, resultSet.getLong(column("sex", sex)));
+    }
+    for (var size : DogSize.values()) {
+      counts.setDogSize(size, resultSet.getLong(column("size", size)));
+    }
+    for (var bracket : AgeBracket.values()) {
+      counts.setAgeBracket(bracket, resultSet.getLong(column("age", bracket)));
+    }
+    return counts;
+  }
+
+  private static String buildCountFacets() {
+    var counts = new ArrayList<String>();
+    counts.add("count(*) AS total");
+    for (var sex : Sex.values()) {
+      counts.add(countWhere("d.sex = '" + sex.name() + "'", column("sex", sex)));
+    }
+    for (var size : DogSize.values()) {
+      counts.add(countWhere(DogFilter.sizeSqlCondition(size), column("size", size)));
+    }
+    for (var bracket : AgeBracket.values()) {
+      var condition = "d.estimated_age_in_years >= " + bracket.getFrom();
+      if (bracket.getTo() != null) {
+        condition += " AND d.estimated_age_in_years < " + bracket.getTo();
+      }
+      counts.add(countWhere(condition, column("age", bracket)));
+    }
+    return "SELECT " + String.join(",\n  ", counts) + "\nFROM dog_entity d\nWHERE %s";
+  }
+
+  private static String countWhere(String condition, String column) {
+    return "count(*) FILTER (WHERE " + condition + ") AS " + column;
+  }
+
+  private static String column(String facet, Enum<?> value) {
+    return facet + "_" + value.name().toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,17 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+public interface DogFilterView {
+  long getId();
+
+  long getShelterId();
+
+  String getSex();
+
+  Float getEstimatedAgeInYears();
+
+  Float getCurrentWeight();
+
+  Float getEstimatedFinalWeightMin();
+
+  Float getEstimatedFinalWeightMax();
+}
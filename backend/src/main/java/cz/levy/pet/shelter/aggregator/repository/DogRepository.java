@@ -1,12 +1,76 @@
 package cz.levy.pet.shelter.aggregator.repository;
 
 import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface DogRepository
     extends JpaRepository<DogEntity, Long>, JpaSpecificationExecutor<DogEntity> {
   boolean existsByExternalIdAndShelterId(String externalId, long shelterId);
+
+  @Query(
+      "select d.externalId from DogEntity d"
+          + " where d.shelter.id = :shelterId and d.externalId in :externalIds")
+  Set<String> findExistingExternalIds(long shelterId, Collection<String> externalIds);
+
+  // Selects the two columns only, for answering conditional requests without loading the dog.
+  Optional<DogVersionView> findVersionById(long id);
+
+  @Query(
+      value =
+          """
+          SELECT d.id AS "id",
+                 d.description IS NOT NULL AS "descriptionPresent",
+                 d.breed_guess IS NOT NULL AS "breedGuessPresent",
+                 d.estimated_age_in_years IS NOT NULL AS "estimatedAgePresent",
+                 d.current_weight IS NOT NULL AS "currentWeightPresent",
+                 d.estimated_final_weight_min IS NOT NULL AS "estimatedFinalWeightMinPresent",
+                 d.estimated_final_weight_max IS NOT NULL AS "estimatedFinalWeightMaxPresent",
+                 d.dog_address IS NOT NULL AS "dogAddressPresent",
+                 CAST(cardinality(d.image_urls) AS int8) AS "imageUrlCount"
+          FROM dog_entity d
+          """,
+      nativeQuery = true)
+  List<DogWeightView> findAllWeightViews();
+
+  @Query(
+      value =
+          """
+          SELECT d.id AS "id",
+                 d.shelter_id AS "shelterId",
+                 d.sex AS "sex",
+                 d.estimated_age_in_years AS "estimatedAgeInYears",
+                 d.current_weight AS "currentWeight",
+                 d.estimated_final_weight_min AS "estimatedFinalWeightMin",
+                 d.estimated_final_weight_max AS "estimatedFinalWeightMax"
+          FROM dog_entity d
+          """,
+      nativeQuery = true)
+  List<DogFilterView> findAllFilterViews();
+
+  @Query(value = "SELECT pg_current_snapshot()::text", nativeQuery = true)
+  String findCurrentSnapshot();
+
+  /**
+   * Selects all filter views like {@link #findAllFilterViews} and returns the {@code
+   * pg_current_snapshot()} they were read in. A repeatable read transaction takes its snapshot with
+   * its first statement and reads every later one in it too, so the views are exactly those of the
+   * transactions the snapshot shows as committed.
+   */
+  @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+  default SnapshotFilterViews findAllFilterViewsWithSnapshot() {
+    var snapshot = findCurrentSnapshot();
+    return new SnapshotFilterViews(findAllFilterViews(), snapshot);
+  }
+
+  record SnapshotFilterViews(List<DogFilterView> views, String snapshot) {}
 }
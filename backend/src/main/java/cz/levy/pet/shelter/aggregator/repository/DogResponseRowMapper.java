@@ -0,0 +1,42 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import cz.levy.pet.shelter.aggregator.api.DogRequest;
+import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import org.springframework.jdbc.core.RowMapper;
+
+/** Maps rows selecting {@link #COLUMNS} from {@code dog_entity} aliased {@code d} to responses. */
+class DogResponseRowMapper implements RowMapper<DogResponse> {
+  static final DogResponseRowMapper INSTANCE = new DogResponseRowMapper();
+
+  static final String COLUMNS =
+      """
+      d.id, d.shelter_id, d.external_id, d.shelter_url, d.name, d.description, d.breed_guess,
+      d.sex, d.estimated_age_in_years, d.current_weight, d.estimated_final_weight_min,
+      d.estimated_final_weight_max, d.dog_address, d.image_urls
+      """;
+
+  @Override
+  public DogResponse mapRow(ResultSet resultSet, int rowNum) throws SQLException {
+    var imageUrls = (String[]) resultSet.getArray("image_urls").getArray();
+    return new DogResponse(
+        resultSet.getLong("id"),
+        new DogRequest(
+            resultSet.getLong("shelter_id"),
+            resultSet.getString("external_id"),
+            resultSet.getString("shelter_url"),
+            resultSet.getString("name"),
+            resultSet.getString("description"),
+            resultSet.getString("breed_guess"),
+            Sex.valueOf(resultSet.getString("sex")),
+            resultSet.getObject("estimated_age_in_years", Float.class),
+            resultSet.getObject("current_weight", Float.class),
+            resultSet.getObject("estimated_final_weight_min", Float.class),
+            resultSet.getObject("estimated_final_weight_max", Float.class),
+            resultSet.getString("dog_address"),
+            Arrays.asList(imageUrls)));
+  }
+}
@@ -0,0 +1,83 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import cz.levy.pet.shelter.aggregator.spec.DogSearchCursor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class DogSearchRepository {
+  private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  // Ranks with ts_rank_cd, which rewards terms that occur close together, and orders by rank and
+  // then id so that (rank, id) is a stable keyset position. The GIN index on search_vector serves
+  // the match; only matching rows are ranked and sorted.
+  private static final String SEARCH_DOGS =
+      """
+      SELECT *
+      FROM (
+        SELECT %s, ts_rank_cd(d.search_vector, q.query) AS rank
+        FROM dog_entity d, (SELECT to_tsquery('simple', f_unaccent(?)) AS query) q
+        WHERE d.search_vector @@ q.query AND %s
+      ) ranked
+      WHERE %s
+      ORDER BY rank DESC, id
+      LIMIT ?
+      """;
+  private static final String AFTER_CURSOR = "(rank < ? OR (rank = ? AND id > ?))";
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public DogSearchRepository(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Finds dogs whose name, breed guess or description contain words starting with every word of
+   * {@code text}, ignoring case and accents. Returns null when {@code text} contains no words.
+   */
+  public List<RankedDog> search(String text, DogFilter filter, DogSearchCursor cursor, int limit) {
+    var prefixQuery = toPrefixQuery(text);
+    if (prefixQuery == null) {
+      return null;
+    }
+    var parameters = new ArrayList<Object>();
+    parameters.add(prefixQuery);
+    var filterCondition = filter.toSqlCondition(parameters);
+    if (cursor != null) {
+      parameters.add(cursor.rank());
+      parameters.add(cursor.rank());
+      parameters.add(cursor.lastId());
+    }
+    parameters.add(limit);
+    var sql =
+        SEARCH_DOGS.formatted(
+            DogResponseRowMapper.COLUMNS, filterCondition, cursor == null ? "TRUE" : AFTER_CURSOR);
+    return jdbcTemplate.query(
+        sql,
+        (resultSet, rowNum) ->
+            new RankedDog(
+                DogResponseRowMapper.INSTANCE.mapRow(resultSet, rowNum),
+                resultSet.getFloat("rank")),
+        parameters.toArray());
+  }
+
+  // Turns free text into a tsquery requiring a prefix match of every word, so that inflected Czech
+  // forms such as "labradora" are found by "labrador". Anything but letters and digits is dropped,
+  // which also keeps tsquery operators out of user input.
+  static String toPrefixQuery(String text) {
+    var terms = new ArrayList<String>();
+    for (var word : NON_WORD.split(text.toLowerCase())) {
+      if (!word.isEmpty()) {
+        terms.add(word + ":*");
+      }
+    }
+    return terms.isEmpty() ? null : String.join(" & ", terms);
+  }
+
+  public record RankedDog(DogResponse dog, float rank) {}
+}
@@ -0,0 +1,268 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.spec.DogSnapshot;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public class DogUpsertRepository {
+
+  // Locks the rows the upsert is about to write, in id order so that concurrent upserts of
+  // overlapping batches cannot deadlock. Under read committed the lock waits for concurrent writes
+  // of those rows and returns them as committed, so the rows read are the ones the upsert writes.
+  private static final String LOCK_DOGS =
+      """
+      SELECT d.id, d.external_id, d.shelter_id, d.name, d.sex, d.estimated_age_in_years,
+             d.current_weight, d.estimated_final_weight_min, d.estimated_final_weight_max
+      FROM dog_entity d
+      JOIN unnest(?::text[], ?::int8[]) AS k(external_id, shelter_id)
+        ON k.external_id = d.external_id AND k.shelter_id = d.shelter_id
+      ORDER BY d.id
+      FOR NO KEY UPDATE OF d
+      """;
+
+  // Updates the locked rows whose columns changed and inserts the dogs that had no row. Only the
+  // inserted dogs take an id from the sequence. A dog inserted concurrently after the lock is
+  // skipped by the insert and returned by neither branch.
+  private static final String UPSERT_DOGS =
+      """
+      WITH incoming AS (
+        SELECT *
+        FROM unnest(?::int8[], ?::text[], ?::int8[], ?::text[], ?::text[], ?::text[], ?::text[],
+                    ?::text[], ?::float4[], ?::float4[], ?::float4[], ?::float4[], ?::text[],
+                    ?::text[])
+          AS t(locked_id, external_id, shelter_id, shelter_url, name, description, breed_guess,
+               sex, estimated_age_in_years, current_weight, estimated_final_weight_min,
+               estimated_final_weight_max, dog_address, image_urls_literal)
+      ),
+      updated AS (
+        UPDATE dog_entity d SET
+          shelter_url = i.shelter_url,
+          name = i.name,
+          description = i.description,
+          breed_guess = i.breed_guess,
+          sex = i.sex,
+          estimated_age_in_years = i.estimated_age_in_years,
+          current_weight = i.current_weight,
+          estimated_final_weight_min = i.estimated_final_weight_min,
+          estimated_final_weight_max = i.estimated_final_weight_max,
+          dog_address = i.dog_address,
+          image_urls = i.image_urls_literal::text[],
+          version = d.version + 1,
+          updated_at = now()
+        FROM incoming i
+        WHERE d.id = i.locked_id
+          AND (d.shelter_url, d.name, d.description, d.breed_guess, d.sex,
+               d.estimated_age_in_years, d.current_weight, d.estimated_final_weight_min,
+               d.estimated_final_weight_max, d.dog_address, d.image_urls)
+            IS DISTINCT FROM
+              (i.shelter_url, i.name, i.description, i.breed_guess, i.sex,
+               i.estimated_age_in_years, i.current_weight, i.estimated_final_weight_min,
+               i.estimated_final_weight_max, i.dog_address, i.image_urls_literal::text[])
+        RETURNING d.id, d.external_id, d.shelter_id
+      ),
+      inserted AS (
+        INSERT INTO dog_entity (
+          external_id, shelter_id, shelter_url, name, description, breed_guess, sex,
+          estimated_age_in_years, current_weight, estimated_final_weight_min,
+          estimated_final_weight_max, dog_address, image_urls
+        )
+        SELECT external_id, shelter_id, shelter_url, name, description, breed_guess, sex,
+               estimated_age_in_years, current_weight, estimated_final_weight_min,
+               estimated_final_weight_max, dog_address, image_urls_literal::text[]
+        FROM incoming
+        WHERE locked_id IS NULL
+        ON CONFLICT (external_id, shelter_id) DO NOTHING
+        RETURNING id, external_id, shelter_id
+      )
+      SELECT id, external_id, shelter_id FROM updated
+      UNION ALL
+      SELECT id, external_id, shelter_id FROM inserted
+      """;
+
+  // A dog is retried only after a concurrent upsert inserted it, and is then found locked, so a
+  // second attempt settles it unless the dog is deleted and inserted again in between.
+  private static final int MAX_ATTEMPTS = 5;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  public DogUpsertRepository(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /**
+   * Upserts dogs keyed on (externalId, shelterId). The keys must be unique within the call. Every
+   * dog gets exactly one result, also when a concurrent upsert inserts or changes it meanwhile.
+   */
+  @Transactional
+  public List<UpsertedDog> upsertDogs(List<DogDto> dogDtos) {
+    var upsertedDogs = new ArrayList<UpsertedDog>(dogDtos.size());
+    var pending = dogDtos;
+    for (int attempt = 1; !pending.isEmpty(); attempt++) {
+      if (attempt > MAX_ATTEMPTS) {
+        throw new IllegalStateException(
+            "Cannot upsert " + pending.size() + " dogs, their rows keep being replaced");
+      }
+      var locked = lockDogs(pending);
+      var written = writeDogs(pending, locked);
+      var missing = new ArrayList<DogDto>();
+      for (var dogDto : pending) {
+        var key = DogKey.of(dogDto);
+        var lockedDog = locked.get(key);
+        if (lockedDog != null) {
+          upsertedDogs.add(
+              new UpsertedDog(
+                  lockedDog.id(),
+                  dogDto.getExternalId(),
+                  dogDto.getShelterId(),
+                  written.containsKey(key) ? Outcome.UPDATED : Outcome.UNCHANGED,
+                  lockedDog.before()));
+        } else if (written.containsKey(key)) {
+          upsertedDogs.add(
+              new UpsertedDog(
+                  written.get(key),
+                  dogDto.getExternalId(),
+                  dogDto.getShelterId(),
+                  Outcome.INSERTED,
+                  null));
+        } else {
+          missing.add(dogDto);
+        }
+      }
+      pending = missing;
+    }
+    return upsertedDogs;
+  }
+
+  private Map<DogKey, LockedDog> lockDogs(List<DogDto> dogDtos) {
+    var locked = new HashMap<DogKey, LockedDog>();
+    jdbcTemplate.query(
+        connection -> {
+          var statement = connection.prepareStatement(LOCK_DOGS);
+          statement.setArray(1, textArray(connection, dogDtos, DogDto::getExternalId));
+          statement.setArray(2, shelterIdArray(connection, dogDtos));
+          return statement;
+        },
+        resultSet -> {
+          var shelterId = resultSet.getLong("shelter_id");
+          var before =
+              new DogSnapshot(
+                  shelterId,
+                  resultSet.getString("name"),
+                  Sex.valueOf(resultSet.getString("sex")),
+                  resultSet.getObject("estimated_age_in_years", Float.class),
+                  resultSet.getObject("current_weight", Float.class),
+                  resultSet.getObject("estimated_final_weight_min", Float.class),
+                  resultSet.getObject("estimated_final_weight_max", Float.class));
+          locked.put(
+              new DogKey(resultSet.getString("external_id"), shelterId),
+              new LockedDog(resultSet.getLong("id"), before));
+        });
+    return locked;
+  }
+
+  // Returns the ids of the dogs updated or inserted, by key.
+  private Map<DogKey, Long> writeDogs(List<DogDto> dogDtos, Map<DogKey, LockedDog> locked) {
+    var written = new HashMap<DogKey, Long>();
+    jdbcTemplate.query(
+        connection -> {
+          var statement = connection.prepareStatement(UPSERT_DOGS);
+          statement.setArray(
+              1,
+              connection.createArrayOf(
+                  "int8",
+                  dogDtos.stream()
+                      .map(dogDto -> locked.get(DogKey.of(dogDto)))
+                      .map(lockedDog -> lockedDog == null ? null : lockedDog.id())
+                      .toArray(Long[]::new)));
+          statement.setArray(2, textArray(connection, dogDtos, DogDto::getExternalId));
+          statement.setArray(3, shelterIdArray(connection, dogDtos));
+          statement.setArray(4, textArray(connection, dogDtos, DogDto::getShelterUrl));
+          statement.setArray(5, textArray(connection, dogDtos, DogDto::getName));
+          statement.setArray(6, textArray(connection, dogDtos, DogDto::getDescription));
+          statement.setArray(7, textArray(connection, dogDtos, DogDto::getBreedGuess));
+          statement.setArray(8, textArray(connection, dogDtos, DogUpsertRepository::sexName));
+          statement.setArray(9, realArray(connection, dogDtos, DogDto::getEstimatedAgeInYears));
+          statement.setArray(10, realArray(connection, dogDtos, DogDto::getCurrentWeight));
+          statement.setArray(
+              11, realArray(connection, dogDtos, DogDto::getEstimatedFinalWeightMin));
+          statement.setArray(
+              12, realArray(connection, dogDtos, DogDto::getEstimatedFinalWeightMax));
+          statement.setArray(13, textArray(connection, dogDtos, DogDto::getDogAddress));
+          statement.setArray(
+              14, textArray(connection, dogDtos, DogUpsertRepository::imageUrlsLiteral));
+          return statement;
+        },
+        resultSet -> {
+          written.put(
+              new DogKey(resultSet.getString("external_id"), resultSet.getLong("shelter_id")),
+              resultSet.getLong("id"));
+        });
+    return written;
+  }
+
+  private static Array shelterIdArray(Connection connection, List<DogDto> dogDtos)
+      throws SQLException {
+    return connection.createArrayOf(
+        "int8", dogDtos.stream().map(DogDto::getShelterId).toArray(Long[]::new));
+  }
+
+  private static Array textArray(
+      Connection connection, List<DogDto> dogDtos, Function<DogDto, String> field)
+      throws SQLException {
+    return connection.createArrayOf("text", dogDtos.stream().map(field).toArray(String[]::new));
+  }
+
+  private static Array realArray(
+      Connection connection, List<DogDto> dogDtos, Function<DogDto, Float> field)
+      throws SQLException {
+    return connection.createArrayOf("float4", dogDtos.stream().map(field).toArray(Float[]::new));
+  }
+
+  // Postgres arrays cannot nest arrays of different lengths, so each dog's image URLs are passed as
+  // an array literal and cast per row.
+  private static String imageUrlsLiteral(DogDto dogDto) {
+    var literal = new StringBuilder("{");
+    var imageUrls = dogDto.getImageUrls() == null ? List.<String>of() : dogDto.getImageUrls();
+    for (var imageUrl : imageUrls) {
+      if (literal.length() > 1) {
+        literal.append(',');
+      }
+      literal.append('"').append(imageUrl.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+    }
+    return literal.append('}').toString();
+  }
+
+  private static String sexName(DogDto dogDto) {
+    return dogDto.getSex() == null ? Sex.UNKNOWN.name() : dogDto.getSex().name();
+  }
+
+  public enum Outcome {
+    INSERTED,
+    UPDATED,
+    UNCHANGED
+  }
+
+  /** {@code before} holds the row as it was before the upsert, or null when it was inserted. */
+  public record UpsertedDog(
+      long id, String externalId, long shelterId, Outcome outcome, DogSnapshot before) {}
+
+  private record DogKey(String externalId, long shelterId) {
+    static DogKey of(DogDto dogDto) {
+      return new DogKey(dogDto.getExternalId(), dogDto.getShelterId());
+    }
+  }
+
+  private record LockedDog(long id, DogSnapshot before) {}
+}
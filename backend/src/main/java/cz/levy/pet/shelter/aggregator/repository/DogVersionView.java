@@ -0,0 +1,9 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import java.time.Instant;
+
+public interface DogVersionView {
+  long getVersion();
+
+  Instant getUpdatedAt();
+}
@@ -0,0 +1,21 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+public interface DogWeightView {
+  long getId();
+
+  boolean getDescriptionPresent();
+
+  boolean getBreedGuessPresent();
+
+  boolean getEstimatedAgePresent();
+
+  boolean getCurrentWeightPresent();
+
+  boolean getEstimatedFinalWeightMinPresent();
+
+  boolean getEstimatedFinalWeightMaxPresent();
+
+  boolean getDogAddressPresent();
+
+  long getImageUrlCount();
+}
@@ -0,0 +1,40 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Ids of database transactions, as listed by {@code pg_current_snapshot()}. The id of a transaction
+ * is fetched on first use and remembered until the transaction completes.
+ */
+@Repository
+public class TransactionIdRepository {
+  private final JdbcTemplate jdbcTemplate;
+
+  public TransactionIdRepository(JdbcTemplate jdbcTemplate) {
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  /** Returns the id of the current transaction, or 0 outside of a transaction. */
+  public long currentTransactionId() {
+    if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+      return 0;
+    }
+    var transactionId = (Long) TransactionSynchronizationManager.getResource(this);
+    if (transactionId == null) {
+      transactionId =
+          jdbcTemplate.queryForObject("SELECT pg_current_xact_id()::text::int8", Long.class);
+      TransactionSynchronizationManager.bindResource(this, transactionId);
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+              TransactionSynchronizationManager.unbindResource(TransactionIdRepository.this);
+            }
+          });
+    }
+    return transactionId;
+  }
+}
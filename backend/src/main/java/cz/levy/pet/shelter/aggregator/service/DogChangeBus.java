@@ -0,0 +1,257 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.levy.pet.shelter.aggregator.spec.DogSnapshot;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Shares dog changes between backend nodes over Postgres LISTEN/NOTIFY. Local changes are sent with
+ * {@code pg_notify}, which joins the writing transaction and is therefore delivered only once it
+ * commits. Every node listens on a dedicated connection outside the pool and republishes changes of
+ * other nodes as remote {@link DogChangedEvent}s, so local caches evict them like their own.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(
+    name = "cache.invalidation.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+public class DogChangeBus implements SmartLifecycle {
+  private static final int POLL_TIMEOUT_MILLIS = 500;
+  private static final long RECONNECT_DELAY_MILLIS = 1_000;
+  private static final String NOTIFY =
+      "SELECT pg_notify(?, payload) FROM unnest(?::text[]) AS t(payload)";
+
+  private final String nodeId = UUID.randomUUID().toString();
+  private final JdbcTemplate jdbcTemplate;
+  private final JdbcConnectionDetails connectionDetails;
+  private final ObjectMapper objectMapper;
+  private final ApplicationEventPublisher eventPublisher;
+  private final DogQueryCache dogQueryCache;
+  private final DogFacetTotals dogFacetTotals;
+  private final ObjectProvider<DogFilterIndex> dogFilterIndex;
+  private final String channel;
+
+  private volatile boolean running;
+  private Thread listenerThread;
+
+  public DogChangeBus(
+      JdbcTemplate jdbcTemplate,
+      JdbcConnectionDetails connectionDetails,
+      ObjectMapper objectMapper,
+      ApplicationEventPublisher eventPublisher,
+      DogQueryCache dogQueryCache,
+      DogFacetTotals dogFacetTotals,
+      ObjectProvider<DogFilterIndex> dogFilterIndex,
+      @Value("${cache.invalidation.channel:dog_changes}") String channel) {
+    if (!channel.matches("[a-z_][a-z0-9_]*")) {
+      throw new IllegalArgumentException("Invalid notification channel: " + channel);
+    }
+    this.jdbcTemplate = jdbcTemplate;
+    this.connectionDetails = connectionDetails;
+    this.objectMapper = objectMapper;
+    this.eventPublisher = eventPublisher;
+    this.dogQueryCache = dogQueryCache;
+    this.dogFacetTotals = dogFacetTotals;
+    this.dogFilterIndex = dogFilterIndex;
+    this.channel = channel;
+  }
+
+  // Changes made in a transaction are sent together in one statement right before it commits.
+  @EventListener
+  public void onDogChanged(DogChangedEvent event) throws JsonProcessingException {
+    if (event.remote()) {
+      return;
+    }
+    var payload =
+        objectMapper.writeValueAsString(
+            new Notification(
+                nodeId,
+                event.id(),
+                event.before(),
+                event.after(),
+                event.randomnessWeight(),
+                event.transactionId()));
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      sendNotifications(List.of(payload));
+      return;
+    }
+    @SuppressWarnings("unchecked")
+    var pending = (List<String>) TransactionSynchronizationManager.getResource(this);
+    if (pending == null) {
+      var payloads = new ArrayList<String>();
+      TransactionSynchronizationManager.bindResource(this, payloads);
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+              sendNotifications(payloads);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+              TransactionSynchronizationManager.unbindResource(DogChangeBus.this);
+            }
+          });
+      pending = payloads;
+    }
+    pending.add(payload);
+  }
+
+  // Subscribes before the context finishes starting, so no change committed afterwards is missed.
+  @Override
+  public void start() {
+    running = true;
+    Connection connection = null;
+    try {
+      connection = listen();
+    } catch (SQLException e) {
+      log.warn("Could not listen for dog changes yet, retrying in the background", e);
+    }
+    var initialConnection = connection;
+    listenerThread =
+        Thread.ofVirtual().name("dog-change-bus").start(() -> receive(initialConnection));
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+    if (listenerThread != null) {
+      listenerThread.interrupt();
+      try {
+        listenerThread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  private void receive(Connection initialConnection) {
+    var connection = initialConnection;
+    var everConnected = connection != null;
+    while (running) {
+      try {
+        if (connection == null) {
+          connection = listen();
+          // Changes committed while disconnected were never delivered to this node.
+          if (everConnected) {
+            dogQueryCache.invalidateAll();
+            dogFacetTotals.reset();
+            dogFilterIndex.ifAvailable(DogFilterIndex::load);
+          }
+          everConnected = true;
+        }
+        var notifications =
+            connection.unwrap(PGConnection.class).getNotifications(POLL_TIMEOUT_MILLIS);
+        if (notifications != null) {
+          for (var notification : notifications) {
+            onNotification(notification.getParameter());
+          }
+        }
+      } catch (SQLException e) {
+        if (!running) {
+          break;
+        }
+        log.warn("Lost the dog change notification connection, reconnecting", e);
+        close(connection);
+        connection = null;
+        try {
+          Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException interrupted) {
+          break;
+        }
+      }
+    }
+    close(connection);
+  }
+
+  private void onNotification(String payload) {
+    Notification notification;
+    try {
+      notification = objectMapper.readValue(payload, Notification.class);
+    } catch (JsonProcessingException e) {
+      log.warn("Dropped malformed dog change notification: {}", payload, e);
+      return;
+    }
+    if (!nodeId.equals(notification.origin())) {
+      eventPublisher.publishEvent(
+          new DogChangedEvent(
+              notification.id(),
+              notification.before(),
+              notification.after(),
+              notification.randomnessWeight(),
+              notification.transactionId(),
+              true));
+    }
+  }
+
+  private void sendNotifications(List<String> payloads) {
+    jdbcTemplate.query(
+        connection -> {
+          var statement = connection.prepareStatement(NOTIFY);
+          statement.setString(1, channel);
+          statement.setArray(2, connection.createArrayOf("text", payloads.toArray(String[]::new)));
+          return statement;
+        },
+        (RowCallbackHandler) _ -> {});
+  }
+
+  private Connection listen() throws SQLException {
+    var connection =
+        DriverManager.getConnection(
+            connectionDetails.getJdbcUrl(),
+            connectionDetails.getUsername(),
+            connectionDetails.getPassword());
+    try (var statement = connection.createStatement()) {
+      statement.execute("LISTEN " + channel);
+    } catch (SQLException e) {
+      close(connection);
+      throw e;
+    }
+    return connection;
+  }
+
+  private static void close(Connection connection) {
+    if (connection == null) {
+      return;
+    }
+    try {
+      connection.close();
+    } catch (SQLException e) {
+      log.debug("Could not close the dog change notification connection", e);
+    }
+  }
+
+  record Notification(
+      String origin,
+      long id,
+      DogSnapshot before,
+      DogSnapshot after,
+      double randomnessWeight,
+      long transactionId) {}
+}
@@ -0,0 +1,91 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemStatus;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.mapper.DogMapper;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.listener.CommonErrorHandler;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the dog change events that scrapers publish to Kafka. Records are keyed by (shelterId,
+ * externalId), so all changes of one dog arrive in order on one partition, and the upsert makes
+ * redelivery after a failed batch harmless.
+ *
+ * <p>Changes are validated like dogs sent to the REST API. The changes before an invalid one are
+ * applied, and the invalid one is reported with a {@link BatchListenerFailedException}, so that the
+ * error handler commits what was applied, skips the invalid record and redelivers the rest.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ingest.kafka.enabled", havingValue = "true")
+public class DogChangeListener {
+  private final DogIngestService dogIngestService;
+  private final Validator validator;
+
+  public DogChangeListener(DogIngestService dogIngestService, Validator validator) {
+    this.dogIngestService = dogIngestService;
+    this.validator = validator;
+  }
+
+  // An invalid change fails the same way on every delivery, so it is logged and skipped at once
+  // instead of being retried.
+  @Bean
+  static CommonErrorHandler dogChangeErrorHandler() {
+    var errorHandler = new DefaultErrorHandler();
+    errorHandler.addNotRetryableExceptions(ConstraintViolationException.class);
+    return errorHandler;
+  }
+
+  @KafkaListener(topics = "${ingest.kafka.topic}", batch = "true")
+  public void onDogChanges(List<DogDto> dogChanges) {
+    var validDogs = new LinkedHashMap<Integer, DogDto>();
+    for (int index = 0; index < dogChanges.size(); index++) {
+      var dog = dogChanges.get(index);
+      // Records that failed to deserialize arrive as nulls and cannot be retried meaningfully.
+      if (dog == null) {
+        continue;
+      }
+      var violations = validator.validate(DogMapper.dtoToRequest(dog));
+      if (!violations.isEmpty()) {
+        upsert(dogChanges, validDogs);
+        var message =
+            violations.stream()
+                .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+        throw new BatchListenerFailedException(
+            "Invalid change of dog " + dog.getExternalId(),
+            new ConstraintViolationException(message, violations),
+            index);
+      }
+      validDogs.put(index, dog);
+    }
+    upsert(dogChanges, validDogs);
+  }
+
+  private void upsert(List<DogDto> dogChanges, Map<Integer, DogDto> dogsByIndex) {
+    if (dogsByIndex.isEmpty()) {
+      return;
+    }
+    dogIngestService.upsertDogs(dogsByIndex).stream()
+        .filter(result -> result.status() == DogBatchItemStatus.SHELTER_NOT_FOUND)
+        .forEach(
+            result ->
+                log.warn(
+                    "Dropped change of dog {}: {}",
+                    dogChanges.get(result.index()).getExternalId(),
+                    result.message()));
+  }
+}
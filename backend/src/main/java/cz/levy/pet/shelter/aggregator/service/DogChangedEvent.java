@@ -0,0 +1,23 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import cz.levy.pet.shelter.aggregator.spec.DogSnapshot;
+
+/**
+ * Published whenever a dog is written. {@code before} is null for a created dog and {@code after}
+ * is null for a deleted one. {@code randomnessWeight} is the weight with which randomised listings
+ * draw the dog after the write. {@code transactionId} is the id of the database transaction that
+ * wrote the dog, or 0 if it is not known. {@code remote} marks a write made by another node.
+ */
+public record DogChangedEvent(
+    long id,
+    DogSnapshot before,
+    DogSnapshot after,
+    double randomnessWeight,
+    long transactionId,
+    boolean remote) {
+
+  public DogChangedEvent(
+      long id, DogSnapshot before, DogSnapshot after, double randomnessWeight, long transactionId) {
+    this(id, before, after, randomnessWeight, transactionId, false);
+  }
+}
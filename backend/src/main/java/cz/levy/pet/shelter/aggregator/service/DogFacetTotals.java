@@ -0,0 +1,80 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import cz.levy.pet.shelter.aggregator.api.DogFacetsResponse;
+import cz.levy.pet.shelter.aggregator.repository.DogFacetRepository;
+import cz.levy.pet.shelter.aggregator.spec.DogFacetCounts;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Facet counts over all dogs. They are loaded lazily on the first read and afterwards adjusted by
+ * every {@link DogChangedEvent}, so unfiltered facet reads do not touch the database.
+ *
+ * <p>A write can commit before the counts are loaded and still deliver its event afterwards. The
+ * counts therefore remember the database snapshot they were taken in and skip the events of
+ * transactions that snapshot already saw as committed.
+ */
+@Component
+public class DogFacetTotals {
+  private final DogFacetRepository dogFacetRepository;
+  private DogFacetCounts counts;
+  private Snapshot snapshot;
+
+  public DogFacetTotals(DogFacetRepository dogFacetRepository) {
+    this.dogFacetRepository = dogFacetRepository;
+  }
+
+  public synchronized DogFacetsResponse get() {
+    if (counts == null) {
+      var loaded = dogFacetRepository.countAllFacets();
+      counts = loaded.counts();
+      snapshot = Snapshot.parse(loaded.snapshot());
+    }
+    return counts.toResponse();
+  }
+
+  // Runs after commit, like the query cache, so that rolled back writes are never counted.
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onDogChanged(DogChangedEvent event) {
+    if (counts == null || snapshot.sawCommitted(event.transactionId())) {
+      return;
+    }
+    counts.add(event.before(), -1);
+    counts.add(event.after(), 1);
+  }
+
+  /** Drops the counts so that the next read recounts them, e.g. after missed change events. */
+  public synchronized void reset() {
+    counts = null;
+    snapshot = null;
+  }
+
+  /**
+   * A {@code pg_current_snapshot()} in its text form {@code xmin:xmax:xip,...}. Transactions below
+   * xmin had finished when it was taken, those from xmax on had not started, and those listed in
+   * between were still in progress.
+   */
+  record Snapshot(long xmin, long xmax, Set<Long> inProgress) {
+
+    static Snapshot parse(String text) {
+      var parts = text.split(":", -1);
+      var inProgress =
+          parts[2].isEmpty()
+              ? Set.<Long>of()
+              : Arrays.stream(parts[2].split(",")).map(Long::valueOf).collect(Collectors.toSet());
+      return new Snapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), inProgress);
+    }
+
+    // Events only follow committed transactions, so a finished one was committed. An unknown
+    // transaction, 0, is treated as unseen.
+    boolean sawCommitted(long transactionId) {
+      if (transactionId == 0) {
+        return false;
+      }
+      return transactionId < xmin || (transactionId < xmax && !inProgress.contains(transactionId));
+    }
+  }
+}
@@ -0,0 +1,369 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.domain.SortField;
+import cz.levy.pet.shelter.aggregator.repository.DogFilterView;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Columnar in-memory copy of the attributes dog listings filter and sort on. Each dog occupies a
+ * slot in primitive arrays, its sex and size buckets are folded into one filter cell per slot, and
+ * the slots are kept in the order of every {@link SortField} as {@link SortedSlots}. A listing page
+ * is answered with the ids of its dogs, so only those dogs have to be loaded from the database.
+ *
+ * <p>The index is loaded when the application is ready and afterwards maintained from {@link
+ * DogChangedEvent}s. Until it is loaded, and for sorts it cannot reproduce, it answers nothing and
+ * callers fall back to the database. Pages are read under a shared lock, so they only wait for the
+ * writes, which update each order in place.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filter-index.enabled", havingValue = "true")
+public class DogFilterIndex {
+  static final int CHUNK_CAPACITY = 512;
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final Sex[] SEXES = Sex.values();
+  private static final DogSize[] SIZES = DogSize.values();
+  private static final SortField[] SORT_FIELDS = SortField.values();
+  // A cell is a sex together with the set of size buckets, which the buckets do not promise to
+  // keep disjoint.
+  private static final int SIZE_SETS = 1 << SIZES.length;
+  private static final int CELLS = SEXES.length * SIZE_SETS;
+
+  private final DogRepository dogRepository;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  // Both guarded by the lock. Changes delivered while a load reads the database are kept to be
+  // applied to the loaded columns as well, unless the load read them already.
+  private Columns columns;
+  private List<DogChangedEvent> changesDuringLoad;
+
+  public DogFilterIndex(DogRepository dogRepository) {
+    this.dogRepository = dogRepository;
+  }
+
+  /**
+   * Loads the index from the database. The previous contents, if any, keep answering until the new
+   * ones replace them. A write can commit before the load reads the database and still deliver its
+   * change afterwards, when replaying it would overwrite the newer loaded state. The changes kept
+   * during the load are therefore replayed only when the database snapshot of the load did not see
+   * their transactions committed, as {@link DogFacetTotals} does.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void load() {
+    lock.writeLock().lock();
+    try {
+      changesDuringLoad = new ArrayList<>();
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    Columns loaded;
+    DogFacetTotals.Snapshot snapshot;
+    try {
+      var views = dogRepository.findAllFilterViewsWithSnapshot();
+      loaded = Columns.load(views.views());
+      snapshot = DogFacetTotals.Snapshot.parse(views.snapshot());
+    } catch (RuntimeException e) {
+      lock.writeLock().lock();
+      try {
+        changesDuringLoad = null;
+      } finally {
+        lock.writeLock().unlock();
+      }
+      throw e;
+    }
+
+    lock.writeLock().lock();
+    try {
+      for (var change : changesDuringLoad) {
+        if (!snapshot.sawCommitted(change.transactionId())) {
+          loaded.apply(change);
+        }
+      }
+      changesDuringLoad = null;
+      columns = loaded;
+    } finally {
+      lock.writeLock().unlock();
+    }
+    log.info("Loaded {} dogs into the filter index", loaded.size());
+  }
+
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onDogChanged(DogChangedEvent event) {
+    lock.writeLock().lock();
+    try {
+      if (changesDuringLoad != null) {
+        changesDuringLoad.add(event);
+      }
+      if (columns != null) {
+        columns.apply(event);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the ids of the dogs on the requested page of the filtered listing, in order, or null
+   * when the index is not loaded or cannot sort as requested. Ties are broken by id.
+   */
+  public List<Long> findPage(DogFilter filter, Pageable pageable) {
+    var order = singleOrder(pageable.getSort());
+    if (order == null) {
+      return null;
+    }
+    lock.readLock().lock();
+    try {
+      return columns == null ? null : columns.findPage(filter, order, pageable);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // Accepts one sort field, optionally followed by id in the same direction as DogCursor.sortOf
+  // builds it. Names sort by database collation, which the index cannot reproduce.
+  private static SortOrder singleOrder(Sort sort) {
+    if (sort.isUnsorted()) {
+      return new SortOrder(SortField.ID, true);
+    }
+    var orders = sort.toList();
+    var order = orders.getFirst();
+    var idTieBreak =
+        orders.size() == 2
+            && orders.get(1).getProperty().equals(SortField.ID.getFieldName())
+            && orders.get(1).getDirection() == order.getDirection();
+    if (orders.size() != 1 && !idTieBreak) {
+      return null;
+    }
+    for (var sortField : SORT_FIELDS) {
+      if (sortField != SortField.NAME && sortField.getFieldName().equals(order.getProperty())) {
+        return new SortOrder(sortField, order.isAscending());
+      }
+    }
+    return null;
+  }
+
+  private static int cellOf(Sex sex, Float finalWeightMin, Float finalWeightMax) {
+    var sizes = 0;
+    for (var size : SIZES) {
+      if (DogFilter.hasSize(size, finalWeightMin, finalWeightMax)) {
+        sizes |= 1 << size.ordinal();
+      }
+    }
+    return sex.ordinal() * SIZE_SETS + sizes;
+  }
+
+  private static boolean[] cellsMatching(DogFilter filter) {
+    var cells = new boolean[CELLS];
+    for (int cell = 0; cell < CELLS; cell++) {
+      cells[cell] =
+          (filter.sex() == null || cell / SIZE_SETS == filter.sex().ordinal())
+              && (filter.dogSize() == null
+                  || (cell % SIZE_SETS & 1 << filter.dogSize().ordinal()) != 0);
+    }
+    return cells;
+  }
+
+  /** The columns of one load, with its slots in every sort order. Not thread safe. */
+  private static final class Columns {
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final SortedSlots[] sortedSlots = new SortedSlots[SORT_FIELDS.length];
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] shelterIds = new long[INITIAL_CAPACITY];
+    // Null values are stored as NaN, which fails every comparison just like SQL NULL does.
+    private float[] ages = new float[INITIAL_CAPACITY];
+    private float[] currentWeights = new float[INITIAL_CAPACITY];
+    private float[] finalWeightMins = new float[INITIAL_CAPACITY];
+    private float[] finalWeightMaxs = new float[INITIAL_CAPACITY];
+    private byte[] cells = new byte[INITIAL_CAPACITY];
+    private int usedSlots;
+
+    private Columns() {
+      for (var sortField : SORT_FIELDS) {
+        if (sortField != SortField.NAME) {
+          sortedSlots[sortField.ordinal()] =
+              new SortedSlots(order(sortField), slot -> cells[slot], CELLS, CHUNK_CAPACITY);
+        }
+      }
+    }
+
+    // Fills the columns first and sorts each order once afterwards.
+    static Columns load(List<DogFilterView> views) {
+      var columns = new Columns();
+      for (var view : views) {
+        var slot = columns.allocateSlot();
+        columns.slotsById.put(view.getId(), slot);
+        columns.ids[slot] = view.getId();
+        columns.set(
+            slot,
+            view.getShelterId(),
+            Sex.valueOf(view.getSex()),
+            view.getEstimatedAgeInYears(),
+            view.getCurrentWeight(),
+            view.getEstimatedFinalWeightMin(),
+            view.getEstimatedFinalWeightMax());
+      }
+      for (var sorted : columns.sortedSlots) {
+        if (sorted != null) {
+          var slots = new int[columns.usedSlots];
+          Arrays.setAll(slots, slot -> slot);
+          sorted.build(slots);
+        }
+      }
+      return columns;
+    }
+
+    int size() {
+      return slotsById.size();
+    }
+
+    void apply(DogChangedEvent event) {
+      var dog = event.after();
+      if (dog == null) {
+        remove(event.id());
+        return;
+      }
+      var slot = slotsById.get(event.id());
+      if (slot == null) {
+        slot = allocateSlot();
+        slotsById.put(event.id(), slot);
+        ids[slot] = event.id();
+      } else {
+        unsort(slot);
+      }
+      set(
+          slot,
+          dog.shelterId(),
+          dog.sex(),
+          dog.estimatedAgeInYears(),
+          dog.currentWeight(),
+          dog.estimatedFinalWeightMin(),
+          dog.estimatedFinalWeightMax());
+      for (var sorted : sortedSlots) {
+        if (sorted != null) {
+          sorted.insert(slot);
+        }
+      }
+    }
+
+    List<Long> findPage(DogFilter filter, SortOrder order, Pageable pageable) {
+      IntPredicate ageMatches = null;
+      if (filter.ageMin() != null || filter.ageMax() != null) {
+        var min = filter.ageMin() == null ? Float.NEGATIVE_INFINITY : filter.ageMin();
+        var max = filter.ageMax() == null ? Float.POSITIVE_INFINITY : filter.ageMax();
+        ageMatches = slot -> ages[slot] >= min && ages[slot] <= max;
+      }
+      var pageIds = new ArrayList<Long>(Math.min(pageable.getPageSize(), size()));
+      // Descending is exactly the ascending order reversed, nulls first and ids descending
+      // included, which is also how PostgreSQL orders them.
+      sortedSlots[order.sortField().ordinal()].forEachOnPage(
+          order.ascending(),
+          pageable.getOffset(),
+          pageable.getPageSize(),
+          cellsMatching(filter),
+          ageMatches,
+          slot -> pageIds.add(ids[slot]));
+      return pageIds;
+    }
+
+    // Ties are broken by id, which makes every order total.
+    private IntBinaryOperator order(SortField sortField) {
+      IntBinaryOperator byField =
+          switch (sortField) {
+            case ID -> (a, b) -> 0;
+            case SHELTER_ID -> (a, b) -> Long.compare(shelterIds[a], shelterIds[b]);
+            // Float.compare already orders NaN above every number, which puts nulls last
+            // ascending.
+            case ESTIMATED_AGE -> (a, b) -> Float.compare(ages[a], ages[b]);
+            case CURRENT_WEIGHT -> (a, b) -> Float.compare(currentWeights[a], currentWeights[b]);
+            case ESTIMATED_FINAL_WEIGHT_MIN ->
+                (a, b) -> Float.compare(finalWeightMins[a], finalWeightMins[b]);
+            case ESTIMATED_FINAL_WEIGHT_MAX ->
+                (a, b) -> Float.compare(finalWeightMaxs[a], finalWeightMaxs[b]);
+            case NAME -> throw new IllegalArgumentException("Sorting by name is not supported");
+          };
+      return (a, b) -> {
+        var compared = byField.applyAsInt(a, b);
+        return compared != 0 ? compared : Long.compare(ids[a], ids[b]);
+      };
+    }
+
+    private void set(
+        int slot,
+        long shelterId,
+        Sex sex,
+        Float age,
+        Float currentWeight,
+        Float finalWeightMin,
+        Float finalWeightMax) {
+      shelterIds[slot] = shelterId;
+      ages[slot] = orNaN(age);
+      currentWeights[slot] = orNaN(currentWeight);
+      finalWeightMins[slot] = orNaN(finalWeightMin);
+      finalWeightMaxs[slot] = orNaN(finalWeightMax);
+      cells[slot] = (byte) cellOf(sex, finalWeightMin, finalWeightMax);
+    }
+
+    private void remove(long id) {
+      var slot = slotsById.remove(id);
+      if (slot == null) {
+        return;
+      }
+      unsort(slot);
+      freeSlots.push(slot);
+    }
+
+    private void unsort(int slot) {
+      for (var sorted : sortedSlots) {
+        if (sorted != null) {
+          sorted.remove(slot);
+        }
+      }
+    }
+
+    private int allocateSlot() {
+      if (!freeSlots.isEmpty()) {
+        return freeSlots.pop();
+      }
+      if (usedSlots == ids.length) {
+        var capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        shelterIds = Arrays.copyOf(shelterIds, capacity);
+        ages = Arrays.copyOf(ages, capacity);
+        currentWeights = Arrays.copyOf(currentWeights, capacity);
+        finalWeightMins = Arrays.copyOf(finalWeightMins, capacity);
+        finalWeightMaxs = Arrays.copyOf(finalWeightMaxs, capacity);
+        cells = Arrays.copyOf(cells, capacity);
+      }
+      return usedSlots++;
+    }
+
+    private static float orNaN(Float value) {
+      return value == null ? Float.NaN : value;
+    }
+  }
+
+  private record SortOrder(SortField sortField, boolean ascending) {}
+}
@@ -0,0 +1,295 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import cz.levy.pet.shelter.aggregator.error.RestErrorHandler;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+/**
+ * Serves dog images from the local {@link DogImageStore}. An origin image is downloaded on the
+ * first request for it, and each thumbnail width is rendered from the stored original once.
+ * Requested widths are rounded up to one of {@code images.widths} so that the number of stored
+ * thumbnails stays bounded.
+ *
+ * <p>Image URLs are stored with dogs and may be written by API clients, so they are only fetched
+ * over http or https from {@code images.allowed-hosts}, and redirects are followed here, hop by
+ * hop, so that they cannot leave those hosts either. Images are only decoded once their header
+ * shows no more than {@code images.max-pixels} pixels, since a few kilobytes of compressed image
+ * can otherwise decode into gigabytes.
+ */
+@Service
+public class DogImageService {
+  private static final int HTTP_OK = 200;
+  private static final Set<Integer> REDIRECTS = Set.of(301, 302, 303, 307, 308);
+  private static final int MAX_REDIRECTS = 5;
+
+  private final DogSheltersService dogSheltersService;
+  private final DogImageStore dogImageStore;
+  private final HttpClient httpClient;
+  private final Duration fetchTimeout;
+  private final long maxOriginBytes;
+  private final long maxPixels;
+  private final Set<String> allowedHosts;
+  private final List<Integer> widths;
+  private final Map<String, CompletableFuture<DogImageStore.StoredImage>> inFlight =
+      new ConcurrentHashMap<>();
+
+  public DogImageService(
+      DogSheltersService dogSheltersService,
+      DogImageStore dogImageStore,
+      @Value("${images.fetch-timeout:10s}") Duration fetchTimeout,
+      @Value("${images.max-origin-bytes:20000000}") long maxOriginBytes,
+      @Value("${images.max-pixels:40000000}") long maxPixels,
+      @Value("${images.allowed-hosts:www.pesweb.cz}") List<String> allowedHosts,
+      @Value("${images.widths:160,320,640,1280}") List<Integer> widths) {
+    this.dogSheltersService = dogSheltersService;
+    this.dogImageStore = dogImageStore;
+    this.fetchTimeout = fetchTimeout;
+    this.maxOriginBytes = maxOriginBytes;
+    this.maxPixels = maxPixels;
+    this.allowedHosts =
+        allowedHosts.stream()
+            .map(host -> host.trim().toLowerCase(Locale.ROOT))
+            .collect(Collectors.toUnmodifiableSet());
+    this.widths = widths.stream().sorted().toList();
+    this.httpClient =
+        HttpClient.newBuilder()
+            .connectTimeout(fetchTimeout)
+            .followRedirects(HttpClient.Redirect.NEVER)
+            .build();
+  }
+
+  /**
+   * Returns image {@code index} of the dog, scaled down to the narrowest of {@code images.widths}
+   * that is at least {@code width}, or to the widest of them when {@code width} exceeds them all.
+   * The original image is returned when {@code width} is null or the original is not wider than
+   * that thumbnail width.
+   */
+  public DogImageStore.StoredImage getImage(long dogId, int index, Integer width) {
+    var imageUrls = dogSheltersService.getDogDto(dogId).getImageUrls();
+    if (index < 0 || imageUrls == null || index >= imageUrls.size()) {
+      throw new NoSuchElementException("Dog " + dogId + " has no image with index: " + index);
+    }
+    var url = imageUrls.get(index);
+    if (width == null) {
+      return once(url, () -> fetchOriginal(url));
+    }
+    if (width < 1) {
+      throw new IllegalArgumentException("Image width must be positive");
+    }
+    var thumbnailWidth =
+        widths.stream().filter(allowed -> allowed >= width).findFirst().orElse(widths.getLast());
+    return once(url + "@" + thumbnailWidth, () -> renderThumbnail(url, thumbnailWidth));
+  }
+
+  // Concurrent requests for the same missing image wait for a single download or rendering.
+  private DogImageStore.StoredImage once(String key, ImageLoader loader) {
+    try {
+      var image = dogImageStore.find(key);
+      if (image != null) {
+        return image;
+      }
+      var pending = new CompletableFuture<DogImageStore.StoredImage>();
+      var running = inFlight.putIfAbsent(key, pending);
+      if (running != null) {
+        return running.join();
+      }
+      try {
+        image = loader.load();
+        pending.complete(image);
+        return image;
+      } catch (RuntimeException | IOException e) {
+        pending.completeExceptionally(e);
+        throw e;
+      } finally {
+        inFlight.remove(key);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (CompletionException e) {
+      throw e.getCause() instanceof RuntimeException cause ? cause : e;
+    }
+  }
+
+  private DogImageStore.StoredImage fetchOriginal(String url) throws IOException {
+    var content = download(url);
+    return dogImageStore.put(url, content, extensionOf(content, url));
+  }
+
+  private DogImageStore.StoredImage renderThumbnail(String url, int width) throws IOException {
+    var original = once(url, () -> fetchOriginal(url));
+    var image = read(original.path(), url);
+    var key = url + "@" + width;
+    if (image.getWidth() <= width) {
+      return dogImageStore.link(key, original);
+    }
+    var hasAlpha = image.getColorModel().hasAlpha();
+    var thumbnail = scale(image, width, hasAlpha);
+    var output = new ByteArrayOutputStream();
+    var format = hasAlpha ? "png" : "jpg";
+    ImageIO.write(thumbnail, format, output);
+    return dogImageStore.put(key, output.toByteArray(), format);
+  }
+
+  // Halves the image with bilinear filtering until one last step reaches the target width, which
+  // looks close to an area-averaging downscale at a fraction of its cost.
+  private static BufferedImage scale(BufferedImage image, int width, boolean hasAlpha) {
+    var type = hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+    var current = image;
+    var currentWidth = image.getWidth();
+    do {
+      currentWidth = Math.max(currentWidth / 2, width);
+      var currentHeight =
+          Math.max(1, Math.round((float) image.getHeight() * currentWidth / image.getWidth()));
+      var next = new BufferedImage(currentWidth, currentHeight, type);
+      var graphics = next.createGraphics();
+      try {
+        graphics.setRenderingHint(
+            RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+      } finally {
+        graphics.dispose();
+      }
+      current = next;
+    } while (currentWidth > width);
+    return current;
+  }
+
+  private byte[] download(String url) throws IOException {
+    var uri = URI.create(url);
+    for (int redirects = 0; ; redirects++) {
+      checkAllowed(uri, url);
+      var response = send(uri, url);
+      if (!REDIRECTS.contains(response.statusCode())) {
+        return readBody(response, url);
+      }
+      response.body().close();
+      if (redirects == MAX_REDIRECTS) {
+        throw new RestErrorHandler.UpstreamException("Image " + url + " redirects too often");
+      }
+      var location =
+          response
+              .headers()
+              .firstValue(HttpHeaders.LOCATION)
+              .orElseThrow(
+                  () ->
+                      new RestErrorHandler.UpstreamException(
+                          "Image " + url + " redirects without a location"));
+      try {
+        uri = uri.resolve(location);
+      } catch (IllegalArgumentException e) {
+        throw new RestErrorHandler.UpstreamException(
+            "Image " + url + " redirects to an invalid location", e);
+      }
+    }
+  }
+
+  private void checkAllowed(URI uri, String url) {
+    var scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+    var host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+    if (!(scheme.equals("http") || scheme.equals("https")) || !allowedHosts.contains(host)) {
+      throw new RestErrorHandler.UpstreamException(
+          "Image " + url + " leads to " + uri + ", which is not an allowed image host");
+    }
+  }
+
+  private HttpResponse<InputStream> send(URI uri, String url) throws IOException {
+    var request = HttpRequest.newBuilder(uri).timeout(fetchTimeout).GET().build();
+    try {
+      return httpClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while fetching " + url, e);
+    } catch (IOException e) {
+      throw new RestErrorHandler.UpstreamException("Cannot fetch image " + url, e);
+    }
+  }
+
+  private byte[] readBody(HttpResponse<InputStream> response, String url) throws IOException {
+    try (var body = response.body()) {
+      if (response.statusCode() != HTTP_OK) {
+        throw new RestErrorHandler.UpstreamException(
+            "Image " + url + " answered with status " + response.statusCode());
+      }
+      var content = body.readNBytes((int) Math.min(maxOriginBytes + 1, Integer.MAX_VALUE - 8));
+      if (content.length > maxOriginBytes) {
+        throw new RestErrorHandler.UpstreamException("Image " + url + " is too large");
+      }
+      return content;
+    }
+  }
+
+  // Rejects images over the pixel limit before they are stored.
+  private String extensionOf(byte[] content, String url) throws IOException {
+    try (var input = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+      var reader = readerWithinPixelLimit(input, url);
+      try {
+        var format = reader.getFormatName().toLowerCase();
+        return format.equals("jpeg") ? "jpg" : format;
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  private BufferedImage read(Path path, String url) throws IOException {
+    try (var input = ImageIO.createImageInputStream(path.toFile())) {
+      var reader = readerWithinPixelLimit(input, url);
+      try {
+        return reader.read(0);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  // Reads only the image header, which states the dimensions.
+  private ImageReader readerWithinPixelLimit(Object input, String url) throws IOException {
+    var readers = input == null ? null : ImageIO.getImageReaders(input);
+    if (readers == null || !readers.hasNext()) {
+      throw new RestErrorHandler.UpstreamException("Image " + url + " has an unknown format");
+    }
+    var reader = readers.next();
+    try {
+      reader.setInput(input, true, true);
+      var pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+      if (pixels > maxPixels) {
+        throw new RestErrorHandler.UpstreamException(
+            "Image " + url + " has " + pixels + " pixels, more than " + maxPixels);
+      }
+      return reader;
+    } catch (IOException | RuntimeException e) {
+      reader.dispose();
+      throw e;
+    }
+  }
+
+  @FunctionalInterface
+  private interface ImageLoader {
+    DogImageStore.StoredImage load() throws IOException;
+  }
+}
@@ -0,0 +1,245 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Content-addressed image files on disk. Image bytes are stored once under the SHA-256 of their
+ * content, and small reference files map a lookup key, such as an origin URL and a width, to the
+ * stored image. Files are written to a temporary name and moved into place, so readers never see a
+ * partial file and a crash leaves at most an orphaned temporary file.
+ *
+ * <p>The stored images are bounded by {@code images.cache-max-size}. Every use of a reference
+ * renews its modification time, and once a write takes the images over the bound the least recently
+ * used references are deleted until they fit into nine tenths of it again, together with the images
+ * no reference is left pointing to. Images of dogs that are gone or whose image URLs changed are
+ * never used again and so are the first to go. A deleted image is fetched again on its next
+ * request.
+ */
+@Component
+public class DogImageStore {
+  private static final String TEMPORARY_PREFIX = "tmp-";
+  // Files this young may belong to a write in progress, so sweeps leave them alone.
+  private static final Duration WRITE_GRACE = Duration.ofMinutes(1);
+
+  private final Path blobs;
+  private final Path refs;
+  private final long maxBytes;
+  private final Clock clock;
+  private final AtomicLong storedBytes = new AtomicLong();
+  private final ReentrantLock sweeping = new ReentrantLock();
+
+  @Autowired
+  public DogImageStore(
+      @Value("${images.cache-dir}") Path cacheDir,
+      @Value("${images.cache-max-size:1GB}") DataSize maxSize) {
+    this(cacheDir, maxSize, Clock.systemUTC());
+  }
+
+  DogImageStore(Path cacheDir, DataSize maxSize, Clock clock) {
+    this.blobs = cacheDir.resolve("blobs");
+    this.refs = cacheDir.resolve("refs");
+    this.maxBytes = maxSize.toBytes();
+    this.clock = clock;
+    try {
+      Files.createDirectories(blobs);
+      Files.createDirectories(refs);
+      sweep();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot create image cache in " + cacheDir, e);
+    }
+  }
+
+  /** Returns the stored image the key refers to, or null when there is none. */
+  public StoredImage find(String key) throws IOException {
+    var ref = refOf(key);
+    String blob;
+    try {
+      blob = Files.readString(ref);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+    var path = blobs.resolve(blob);
+    if (!Files.exists(path)) {
+      return null;
+    }
+    touch(ref);
+    return StoredImage.of(path);
+  }
+
+  /** Stores {@code content} unless an identical image is stored already and points key at it. */
+  public StoredImage put(String key, byte[] content, String extension) throws IOException {
+    var path = blobs.resolve(sha256(content) + "." + extension);
+    if (touch(path)) {
+      return link(key, StoredImage.of(path));
+    }
+    writeAtomically(path, content);
+    // Linked before sweeping, so that the sweep counts the new image as referenced.
+    var image = link(key, StoredImage.of(path));
+    if (storedBytes.addAndGet(content.length) > maxBytes) {
+      sweepUnlessSweeping();
+    }
+    return image;
+  }
+
+  /** Points key at an image that is stored already. */
+  public StoredImage link(String key, StoredImage image) throws IOException {
+    touch(image.path());
+    writeAtomically(
+        refOf(key), image.path().getFileName().toString().getBytes(StandardCharsets.UTF_8));
+    return image;
+  }
+
+  private void sweepUnlessSweeping() throws IOException {
+    if (!sweeping.tryLock()) {
+      return;
+    }
+    try {
+      sweep();
+    } finally {
+      sweeping.unlock();
+    }
+  }
+
+  // Deletes the least recently used references until the images they point to fit, then every
+  // image and temporary file nothing points to, and recounts the bytes stored.
+  private void sweep() throws IOException {
+    var graceEnd = clock.instant().minus(WRITE_GRACE);
+    var blobSizes = new HashMap<String, Long>();
+    try (var files = Files.list(blobs)) {
+      for (var file : (Iterable<Path>) files::iterator) {
+        try {
+          blobSizes.put(file.getFileName().toString(), Files.size(file));
+        } catch (NoSuchFileException e) {
+          // A temporary file that its write removed meanwhile.
+        }
+      }
+    }
+    var references = new ArrayList<Reference>();
+    var referenceCounts = new HashMap<String, Integer>();
+    try (var files = Files.list(refs)) {
+      for (var file : (Iterable<Path>) files::iterator) {
+        if (isTemporary(file)) {
+          deleteUnlessRecent(file, graceEnd);
+          continue;
+        }
+        var blob = Files.readString(file);
+        references.add(new Reference(file, blob, Files.getLastModifiedTime(file).toInstant()));
+        referenceCounts.merge(blob, 1, Integer::sum);
+      }
+    }
+
+    var referencedBytes = referencedBytes(blobSizes, referenceCounts);
+    var target = maxBytes / 10 * 9;
+    references.sort(Comparator.comparing(Reference::lastUsed));
+    for (var i = 0; i < references.size() && referencedBytes > target; i++) {
+      var reference = references.get(i);
+      Files.deleteIfExists(reference.path());
+      if (referenceCounts.merge(reference.blob(), -1, Integer::sum) == 0) {
+        referencedBytes -= blobSizes.getOrDefault(reference.blob(), 0L);
+      }
+    }
+
+    var remainingBytes = 0L;
+    for (var blob : blobSizes.entrySet()) {
+      var path = blobs.resolve(blob.getKey());
+      var referenced = referenceCounts.getOrDefault(blob.getKey(), 0) > 0;
+      if (referenced || !deleteUnlessRecent(path, graceEnd)) {
+        remainingBytes += blob.getValue();
+      }
+    }
+    storedBytes.set(remainingBytes);
+  }
+
+  private static long referencedBytes(
+      Map<String, Long> blobSizes, Map<String, Integer> referenceCounts) {
+    var bytes = 0L;
+    for (var blob : referenceCounts.keySet()) {
+      bytes += blobSizes.getOrDefault(blob, 0L);
+    }
+    return bytes;
+  }
+
+  // Returns whether the file is gone.
+  private static boolean deleteUnlessRecent(Path file, Instant graceEnd) throws IOException {
+    try {
+      if (Files.getLastModifiedTime(file).toInstant().isAfter(graceEnd)) {
+        return false;
+      }
+    } catch (NoSuchFileException e) {
+      return true;
+    }
+    Files.deleteIfExists(file);
+    return true;
+  }
+
+  // Marks the file as just used and returns whether it exists.
+  private boolean touch(Path file) throws IOException {
+    try {
+      Files.setLastModifiedTime(file, FileTime.from(clock.instant()));
+      return true;
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+  }
+
+  private Path refOf(String key) {
+    return refs.resolve(sha256(key.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private void writeAtomically(Path target, byte[] content) throws IOException {
+    var temporary = Files.createTempFile(target.getParent(), TEMPORARY_PREFIX, null);
+    try {
+      Files.write(temporary, content);
+      Files.setLastModifiedTime(temporary, FileTime.from(clock.instant()));
+      Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static boolean isTemporary(Path file) {
+    return file.getFileName().toString().startsWith(TEMPORARY_PREFIX);
+  }
+
+  private static String sha256(byte[] content) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** An image file whose name, and so whose {@link #hash()}, is derived from its content. */
+  public record StoredImage(Path path, String hash, String extension) {
+    static StoredImage of(Path path) {
+      var fileName = path.getFileName().toString();
+      var dot = fileName.lastIndexOf('.');
+      return new StoredImage(path, fileName.substring(0, dot), fileName.substring(dot + 1));
+    }
+  }
+
+  private record Reference(Path path, String blob, Instant lastUsed) {}
+}
@@ -0,0 +1,229 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemResult;
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemStatus;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
+import cz.levy.pet.shelter.aggregator.mapper.DogMapper;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.repository.DogUpsertRepository;
+import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import cz.levy.pet.shelter.aggregator.repository.TransactionIdRepository;
+import cz.levy.pet.shelter.aggregator.spec.DogSnapshot;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+public class DogIngestService {
+  public static final int MAX_BATCH_SIZE = 10_000;
+  private static final int FLUSH_SIZE = 500;
+
+  private final DogRepository dogRepository;
+  private final ShelterRepository shelterRepository;
+  private final DogUpsertRepository dogUpsertRepository;
+  private final TransactionIdRepository transactionIdRepository;
+  private final EntityManager entityManager;
+  private final ApplicationEventPublisher eventPublisher;
+
+  public DogIngestService(
+      DogRepository dogRepository,
+      ShelterRepository shelterRepository,
+      DogUpsertRepository dogUpsertRepository,
+      TransactionIdRepository transactionIdRepository,
+      EntityManager entityManager,
+      ApplicationEventPublisher eventPublisher) {
+    this.dogRepository = dogRepository;
+    this.shelterRepository = shelterRepository;
+    this.dogUpsertRepository = dogUpsertRepository;
+    this.transactionIdRepository = transactionIdRepository;
+    this.entityManager = entityManager;
+    this.eventPublisher = eventPublisher;
+  }
+
+  /**
+   * Inserts new dogs keyed by their position in the client's batch. Dogs whose shelter does not
+   * exist or whose (externalId, shelterId) pair is already taken are reported instead of failing
+   * the whole batch.
+   */
+  @Transactional
+  public List<DogBatchItemResult> saveDogs(Map<Integer, DogDto> dogDtosByIndex) {
+    if (dogDtosByIndex.size() > MAX_BATCH_SIZE) {
+      throw new IllegalArgumentException(
+          "Batch must not contain more than " + MAX_BATCH_SIZE + " dogs");
+    }
+
+    var sheltersById = findShelters(dogDtosByIndex.values());
+    var takenExternalIds = findTakenExternalIds(dogDtosByIndex.values());
+    var results = new ArrayList<DogBatchItemResult>(dogDtosByIndex.size());
+    var pendingDogs = new LinkedHashMap<Integer, DogEntity>();
+
+    dogDtosByIndex.forEach(
+        (index, dogDto) -> {
+          var shelter = sheltersById.get(dogDto.getShelterId());
+          if (shelter == null) {
+            results.add(
+                DogBatchItemResult.rejected(
+                    index,
+                    DogBatchItemStatus.SHELTER_NOT_FOUND,
+                    "Shelter not found with id: " + dogDto.getShelterId()));
+          } else if (!takenExternalIds
+              .computeIfAbsent(dogDto.getShelterId(), _ -> new HashSet<>())
+              .add(dogDto.getExternalId())) {
+            results.add(
+                DogBatchItemResult.rejected(
+                    index,
+                    DogBatchItemStatus.DUPLICATE,
+                    "Dog already exists with externalId: "
+                        + dogDto.getExternalId()
+                        + " and shelterId: "
+                        + dogDto.getShelterId()));
+          } else {
+            pendingDogs.put(index, DogMapper.dtoToEntity(dogDto, shelter));
+          }
+        });
+
+    var unflushed = 0;
+    for (var pendingDog : pendingDogs.entrySet()) {
+      var savedDogEntity = dogRepository.save(pendingDog.getValue());
+      results.add(DogBatchItemResult.created(pendingDog.getKey(), savedDogEntity.getId()));
+      eventPublisher.publishEvent(
+          new DogChangedEvent(
+              savedDogEntity.getId(),
+              null,
+              DogSnapshot.of(savedDogEntity),
+              DogSheltersService.RandomnessWeight.computeWeight(savedDogEntity),
+              transactionIdRepository.currentTransactionId()));
+
+      // Flush in chunks so Hibernate sends JDBC batches and the persistence context stays small.
+      if (++unflushed == FLUSH_SIZE) {
+        entityManager.flush();
+        entityManager.clear();
+        unflushed = 0;
+      }
+    }
+    entityManager.flush();
+    return results;
+  }
+
+  /**
+   * Inserts or updates dogs keyed on (externalId, shelterId), locking their rows first and then
+   * rewriting only rows that actually changed, image URLs included. When a key occurs more than
+   * once in the batch the last occurrence wins.
+   */
+  @Transactional
+  public List<DogBatchItemResult> upsertDogs(Map<Integer, DogDto> dogDtosByIndex) {
+    if (dogDtosByIndex.size() > MAX_BATCH_SIZE) {
+      throw new IllegalArgumentException(
+          "Batch must not contain more than " + MAX_BATCH_SIZE + " dogs");
+    }
+
+    var sheltersById = findShelters(dogDtosByIndex.values());
+    var results = new ArrayList<DogBatchItemResult>(dogDtosByIndex.size());
+    var indexesByKey = new LinkedHashMap<DogKey, Integer>();
+    dogDtosByIndex.forEach(
+        (index, dogDto) -> {
+          if (!sheltersById.containsKey(dogDto.getShelterId())) {
+            results.add(
+                DogBatchItemResult.rejected(
+                    index,
+                    DogBatchItemStatus.SHELTER_NOT_FOUND,
+                    "Shelter not found with id: " + dogDto.getShelterId()));
+            return;
+          }
+          var supersededIndex = indexesByKey.put(DogKey.of(dogDto), index);
+          if (supersededIndex != null) {
+            results.add(
+                DogBatchItemResult.rejected(
+                    supersededIndex,
+                    DogBatchItemStatus.DUPLICATE,
+                    "Superseded by dogs[" + index + "] with the same externalId and shelterId"));
+          }
+        });
+    if (indexesByKey.isEmpty()) {
+      return results;
+    }
+
+    var upsertedDogs =
+        dogUpsertRepository.upsertDogs(
+            indexesByKey.values().stream().map(dogDtosByIndex::get).toList());
+    for (var upsertedDog : upsertedDogs) {
+      var index = indexesByKey.get(DogKey.of(upsertedDog));
+      var status =
+          switch (upsertedDog.outcome()) {
+            case INSERTED -> DogBatchItemStatus.INSERTED;
+            case UPDATED -> DogBatchItemStatus.UPDATED;
+            case UNCHANGED -> DogBatchItemStatus.UNCHANGED;
+          };
+      results.add(new DogBatchItemResult(index, status, upsertedDog.id(), null));
+      if (status != DogBatchItemStatus.UNCHANGED) {
+        var dogDto = dogDtosByIndex.get(index);
+        eventPublisher.publishEvent(
+            new DogChangedEvent(
+                upsertedDog.id(),
+                upsertedDog.before(),
+                DogSnapshot.of(dogDto),
+                DogSheltersService.RandomnessWeight.computeWeight(dogDto),
+                transactionIdRepository.currentTransactionId()));
+      }
+    }
+    results.sort(Comparator.comparingInt(DogBatchItemResult::index));
+    return results;
+  }
+
+  @Transactional
+  public DogBatchItemResult upsertDog(DogDto dogDto) {
+    var result = upsertDogs(Map.of(0, dogDto)).getFirst();
+    if (result.status() == DogBatchItemStatus.SHELTER_NOT_FOUND) {
+      throw new NoSuchElementException(result.message());
+    }
+    return result;
+  }
+
+  private Map<Long, ShelterEntity> findShelters(Iterable<DogDto> dogDtos) {
+    var shelterIds = new HashSet<Long>();
+    dogDtos.forEach(dogDto -> shelterIds.add(dogDto.getShelterId()));
+    return shelterRepository.findAllById(shelterIds).stream()
+        .collect(Collectors.toMap(ShelterEntity::getId, Function.identity()));
+  }
+
+  private Map<Long, Set<String>> findTakenExternalIds(Iterable<DogDto> dogDtos) {
+    var externalIdsByShelter = new HashMap<Long, Set<String>>();
+    dogDtos.forEach(
+        dogDto ->
+            externalIdsByShelter
+                .computeIfAbsent(dogDto.getShelterId(), _ -> new HashSet<>())
+                .add(dogDto.getExternalId()));
+
+    var takenExternalIds = new HashMap<Long, Set<String>>();
+    externalIdsByShelter.forEach(
+        (shelterId, externalIds) ->
+            takenExternalIds.put(
+                shelterId,
+                new HashSet<>(dogRepository.findExistingExternalIds(shelterId, externalIds))));
+    return takenExternalIds;
+  }
+
+  private record DogKey(long shelterId, String externalId) {
+    static DogKey of(DogDto dogDto) {
+      return new DogKey(dogDto.getShelterId(), dogDto.getExternalId());
+    }
+
+    static DogKey of(DogUpsertRepository.UpsertedDog upsertedDog) {
+      return new DogKey(upsertedDog.shelterId(), upsertedDog.externalId());
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import cz.levy.pet.shelter.aggregator.dto.VersionedDog;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Read-through cache of single dogs and of listing pages. A write evicts the written dog and only
+ * those listings whose filter matches the dog before or after the write, since no other listing can
+ * contain it.
+ *
+ * <p>A listing still loading when a write commits may have read the state before the write, but the
+ * cache's own key views do not show loads in flight. Loading keys are therefore tracked separately,
+ * and invalidating one waits for its load and discards the result. Listings also expire after
+ * {@code cache.dog-lists.expire-after-write} in case an eviction is missed anyway.
+ */
+@Component
+public class DogQueryCache {
+  private final Cache<Long, VersionedDog> dogs;
+  private final Cache<DogListKey, List<DogResponse>> dogLists;
+  private final Map<DogListKey, Integer> loadingDogLists = new ConcurrentHashMap<>();
+
+  public DogQueryCache(
+      MeterRegistry meterRegistry,
+      @Value("${cache.dogs.maximum-size:10000}") long dogsMaximumSize,
+      @Value("${cache.dog-lists.maximum-size:1000}") long dogListsMaximumSize,
+      @Value("${cache.dog-lists.expire-after-write:5m}") Duration dogListsExpireAfterWrite) {
+    dogs = Caffeine.newBuilder().maximumSize(dogsMaximumSize).recordStats().build();
+    dogLists =
+        Caffeine.newBuilder()
+            .maximumSize(dogListsMaximumSize)
+            .expireAfterWrite(dogListsExpireAfterWrite)
+            .recordStats()
+            .build();
+    CaffeineCacheMetrics.monitor(meterRegistry, dogs, "dogs");
+    CaffeineCacheMetrics.monitor(meterRegistry, dogLists, "dogLists");
+  }
+
+  VersionedDog getDog(long id, Function<Long, VersionedDog> loader) {
+    return dogs.get(id, loader);
+  }
+
+  List<DogResponse> getDogList(DogListKey key, Function<DogListKey, List<DogResponse>> loader) {
+    // A load stays counted until the cache has published its result, so that an invalidation
+    // always finds it either counted or in the cache.
+    var loaded = new AtomicBoolean();
+    try {
+      return dogLists.get(
+          key,
+          loading -> {
+            loadingDogLists.merge(loading, 1, Integer::sum);
+            loaded.set(true);
+            return loader.apply(loading);
+          });
+    } finally {
+      if (loaded.get()) {
+        loadingDogLists.computeIfPresent(key, (_, count) -> count == 1 ? null : count - 1);
+      }
+    }
+  }
+
+  // Runs after commit so that a concurrent miss cannot reload the pre-write state.
+  @TransactionalEventListener(fallbackExecution = true)
+  public void onDogChanged(DogChangedEvent event) {
+    dogs.invalidate(event.id());
+    // Invalidating a key whose load is in flight blocks until the load completes, then removes it.
+    var affected = new ArrayList<DogListKey>();
+    for (var keys : List.of(loadingDogLists.keySet(), dogLists.asMap().keySet())) {
+      for (var key : keys) {
+        if (key.filter().matches(event.before()) || key.filter().matches(event.after())) {
+          affected.add(key);
+        }
+      }
+    }
+    dogLists.invalidateAll(affected);
+  }
+
+  public void invalidateAll() {
+    dogs.invalidateAll();
+    dogLists.invalidateAll();
+  }
+
+  record DogListKey(Pageable pageable, DogFilter filter) {}
+}
@@ -0,0 +1,125 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemStatus;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads seed files in the format written by the scraper's {@code DogExporter}: a JSON array of
+ * {@link DogDto}s, or one DTO per line. The file is parsed incrementally and written in batches
+ * through the single-statement upsert, so memory use does not depend on the file size and loading
+ * the same file again only rewrites dogs that changed.
+ */
+@Slf4j
+@Component
+public class DogSeedLoader {
+  private static final int PROGRESS_BATCHES = 100;
+
+  private final DogIngestService dogIngestService;
+  private final ObjectReader dogReader;
+  private final int batchSize;
+
+  public DogSeedLoader(
+      DogIngestService dogIngestService,
+      ObjectMapper objectMapper,
+      @Value("${seed.batch-size:1000}") int batchSize) {
+    if (batchSize < 1 || batchSize > DogIngestService.MAX_BATCH_SIZE) {
+      throw new IllegalArgumentException(
+          "seed.batch-size must be between 1 and " + DogIngestService.MAX_BATCH_SIZE);
+    }
+    this.dogIngestService = dogIngestService;
+    this.dogReader = objectMapper.readerFor(DogDto.class);
+    this.batchSize = batchSize;
+  }
+
+  public Result load(Path file) throws IOException {
+    try (var inputStream = Files.newInputStream(file)) {
+      return load(inputStream);
+    }
+  }
+
+  public Result load(InputStream inputStream) throws IOException {
+    var progress = new Progress(System.nanoTime());
+    var batch = new LinkedHashMap<Integer, DogDto>(batchSize * 4 / 3 + 1);
+    try (var dogs = dogReader.<DogDto>readValues(inputStream)) {
+      while (dogs.hasNextValue()) {
+        var dog = dogs.nextValue();
+        progress.read++;
+        if (dog == null
+            || dog.getShelterId() == null
+            || dog.getExternalId() == null
+            || dog.getName() == null) {
+          progress.skipped++;
+          continue;
+        }
+        batch.put(batch.size(), dog);
+        if (batch.size() == batchSize) {
+          write(batch, progress);
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      write(batch, progress);
+    }
+
+    var result = progress.toResult();
+    log.info(
+        "Seeded {} of {} dogs ({} skipped) in {} ms, {} rows/s",
+        result.written(),
+        result.read(),
+        result.skipped(),
+        result.elapsed().toMillis(),
+        Math.round(result.rowsPerSecond()));
+    return result;
+  }
+
+  private void write(LinkedHashMap<Integer, DogDto> batch, Progress progress) {
+    for (var itemResult : dogIngestService.upsertDogs(batch)) {
+      if (itemResult.status() == DogBatchItemStatus.SHELTER_NOT_FOUND
+          || itemResult.status() == DogBatchItemStatus.DUPLICATE) {
+        progress.skipped++;
+      } else {
+        progress.written++;
+      }
+    }
+    batch.clear();
+    if (++progress.batches % PROGRESS_BATCHES == 0) {
+      var result = progress.toResult();
+      log.info(
+          "Seeded {} dogs so far, {} rows/s", result.written(), Math.round(result.rowsPerSecond()));
+    }
+  }
+
+  public record Result(long read, long written, long skipped, Duration elapsed) {
+    public double rowsPerSecond() {
+      var nanos = elapsed.toNanos();
+      return nanos == 0 ? 0 : written * 1e9 / nanos;
+    }
+  }
+
+  private static class Progress {
+    private final long startNanos;
+    private long read;
+    private long written;
+    private long skipped;
+    private long batches;
+
+    Progress(long startNanos) {
+      this.startNanos = startNanos;
+    }
+
+    Result toResult() {
+      return new Result(read, written, skipped, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+  }
+}
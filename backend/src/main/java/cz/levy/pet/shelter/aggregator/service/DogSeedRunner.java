@@ -0,0 +1,25 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/** Loads the seed file given by {@code seed.file} once the application has started. */
+@Component
+@ConditionalOnProperty(name = "seed.file")
+public class DogSeedRunner implements CommandLineRunner {
+  private final DogSeedLoader dogSeedLoader;
+  private final Path seedFile;
+
+  public DogSeedRunner(DogSeedLoader dogSeedLoader, @Value("${seed.file}") Path seedFile) {
+    this.dogSeedLoader = dogSeedLoader;
+    this.seedFile = seedFile;
+  }
+
+  @Override
+  public void run(String... args) throws Exception {
+    dogSeedLoader.load(seedFile);
+  }
+}
@@ -1,113 +1,355 @@
 package cz.levy.pet.shelter.aggregator.service;
 
+import cz.levy.pet.shelter.aggregator.api.DogFacetsResponse;
 import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import cz.levy.pet.shelter.aggregator.api.DogSliceResponse;
 import cz.levy.pet.shelter.aggregator.domain.DogSize;
 import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.domain.SortField;
 import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.dto.VersionedDog;
 import cz.levy.pet.shelter.aggregator.entity.DogEntity;
 import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
 import cz.levy.pet.shelter.aggregator.error.RestErrorHandler;
 import cz.levy.pet.shelter.aggregator.mapper.DogMapper;
+import cz.levy.pet.shelter.aggregator.repository.DogExportRepository;
+import cz.levy.pet.shelter.aggregator.repository.DogFacetRepository;
 import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.repository.DogSearchRepository;
+import cz.levy.pet.shelter.aggregator.repository.DogVersionView;
+import cz.levy.pet.shelter.aggregator.repository.DogWeightView;
 import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import cz.levy.pet.shelter.aggregator.repository.TransactionIdRepository;
+import cz.levy.pet.shelter.aggregator.spec.DogCursor;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import cz.levy.pet.shelter.aggregator.spec.DogSearchCursor;
+import cz.levy.pet.shelter.aggregator.spec.DogSnapshot;
 import cz.levy.pet.shelter.aggregator.spec.DogSpec;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import org.apache.commons.math3.distribution.EnumeratedDistribution;
 import org.apache.commons.math3.util.Pair;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class DogSheltersService {
   private final DogRepository dogRepository;
+  private final DogExportRepository dogExportRepository;
+  private final DogSearchRepository dogSearchRepository;
   private final ShelterRepository shelterRepository;
+  private final WeightedDogSampler weightedDogSampler;
+  private final DogQueryCache dogQueryCache;
+  private final DogFacetTotals dogFacetTotals;
+  private final DogFacetRepository dogFacetRepository;
+  private final DogFilterIndex dogFilterIndex;
+  private final ApplicationEventPublisher eventPublisher;
+  private final TransactionIdRepository transactionIdRepository;
+  private final TransactionTemplate readOnlyTransaction;
 
-  public DogSheltersService(DogRepository dogRepository, ShelterRepository shelterRepository) {
+  public DogSheltersService(
+      DogRepository dogRepository,
+      DogExportRepository dogExportRepository,
+      DogSearchRepository dogSearchRepository,
+      ShelterRepository shelterRepository,
+      WeightedDogSampler weightedDogSampler,
+      DogQueryCache dogQueryCache,
+      DogFacetTotals dogFacetTotals,
+      DogFacetRepository dogFacetRepository,
+      ObjectProvider<DogFilterIndex> dogFilterIndex,
+      ApplicationEventPublisher eventPublisher,
+      TransactionIdRepository transactionIdRepository,
+      PlatformTransactionManager transactionManager) {
     this.dogRepository = dogRepository;
+    this.dogExportRepository = dogExportRepository;
+    this.dogSearchRepository = dogSearchRepository;
     this.shelterRepository = shelterRepository;
+    this.weightedDogSampler = weightedDogSampler;
+    this.dogQueryCache = dogQueryCache;
+    this.dogFacetTotals = dogFacetTotals;
+    this.dogFacetRepository = dogFacetRepository;
+    this.dogFilterIndex = dogFilterIndex.getIfAvailable();
+    this.eventPublisher = eventPublisher;
+    this.transactionIdRepository = transactionIdRepository;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
   }
 
   private boolean dogExists(String externalId, long shelterId) {
     return dogRepository.existsByExternalIdAndShelterId(externalId, shelterId);
   }
 
+  @Transactional
   public DogEntity saveDog(DogDto dogDto) {
     assert dogDto != null : "Request body cannot be null";
     validateDogDoesNotExist(dogDto);
     ShelterEntity shelter = getShelterById(dogDto.getShelterId());
     DogEntity dogEntity = DogMapper.dtoToEntity(dogDto, shelter);
-    return dogRepository.save(dogEntity);
+    var savedDogEntity = dogRepository.save(dogEntity);
+    eventPublisher.publishEvent(
+        new DogChangedEvent(
+            savedDogEntity.getId(),
+            null,
+            DogSnapshot.of(savedDogEntity),
+            RandomnessWeight.computeWeight(savedDogEntity),
+            transactionIdRepository.currentTransactionId()));
+    return savedDogEntity;
   }
 
+  @Transactional
   public void updateDog(long internalId, DogDto dogDto) {
+    updateDog(internalId, _ -> true, dogDto);
+  }
+
+  @Transactional
+  public void updateDog(long internalId, LongPredicate versionMatches, DogDto dogDto) {
     assert dogDto != null : "Request body cannot be null";
+    patchDog(internalId, versionMatches, _ -> dogDto);
+  }
 
+  @Transactional
+  public void patchDog(long internalId, UnaryOperator<DogDto> patch) {
+    patchDog(internalId, _ -> true, patch);
+  }
+
+  /**
+   * Applies {@code patch} to the current state of the dog if {@code versionMatches} accepts its
+   * version. Only the columns it changes are written, in a single row update that also checks the
+   * version, so a write that raced this one fails with an optimistic locking failure instead of
+   * being overwritten. The shelter of a dog never changes.
+   */
+  @Transactional
+  public void patchDog(long internalId, LongPredicate versionMatches, UnaryOperator<DogDto> patch) {
     var dogEntity = getDogByInternalId(internalId);
-    var updatedDogEntity = DogMapper.dtoToEntity(dogDto, dogEntity.getShelter());
-    updatedDogEntity.setId(internalId);
-    dogRepository.save(updatedDogEntity);
+    if (!versionMatches.test(dogEntity.getVersion())) {
+      throw new RestErrorHandler.PreconditionFailedException(
+          "Dog with id " + internalId + " is at version " + dogEntity.getVersion());
+    }
+    var before = DogSnapshot.of(dogEntity);
+    var patchedDto = patch.apply(DogMapper.entityToDto(dogEntity));
+
+    DogMapper.copyToEntity(patchedDto, dogEntity);
+    eventPublisher.publishEvent(
+        new DogChangedEvent(
+            internalId,
+            before,
+            DogSnapshot.of(dogEntity),
+            RandomnessWeight.computeWeight(dogEntity),
+            transactionIdRepository.currentTransactionId()));
   }
 
+  @Transactional
   public void deleteDog(long internalId) {
     DogEntity dogEntity = getDogByInternalId(internalId);
     dogRepository.delete(dogEntity);
+    eventPublisher.publishEvent(
+        new DogChangedEvent(
+            internalId,
+            DogSnapshot.of(dogEntity),
+            null,
+            0,
+            transactionIdRepository.currentTransactionId()));
   }
 
   public DogDto getDogDto(long internalId) {
-    DogEntity dogEntity = getDogByInternalId(internalId);
-    return DogMapper.entityToDto(dogEntity);
+    return getVersionedDog(internalId).dog();
+  }
+
+  // Cached reads open their transaction only on a miss, so hits never take a connection.
+  public VersionedDog getVersionedDog(long internalId) {
+    return dogQueryCache.getDog(
+        internalId,
+        _ ->
+            readOnlyTransaction.execute(
+                _ -> {
+                  DogEntity dogEntity =
+                      dogRepository
+                          .findById(internalId)
+                          .orElseThrow(
+                              () ->
+                                  new NoSuchElementException(
+                                      "Dog not found with id: " + internalId));
+                  return new VersionedDog(
+                      DogMapper.entityToDto(dogEntity),
+                      dogEntity.getVersion(),
+                      dogEntity.getUpdatedAt());
+                }));
+  }
+
+  public DogVersionView getDogVersion(long internalId) {
+    return dogRepository
+        .findVersionById(internalId)
+        .orElseThrow(() -> new NoSuchElementException("Dog not found with id: " + internalId));
   }
 
   public List<DogResponse> getAllDogs(
       Pageable pageable, Float ageMin, Float ageMax, Sex sex, DogSize size) {
-    Page<DogEntity> dogEntities = paginateAndFilterDogs(pageable, ageMin, ageMax, sex, size);
+    var filter = new DogFilter(ageMin, ageMax, sex, size);
+    return dogQueryCache.getDogList(
+        new DogQueryCache.DogListKey(pageable, filter),
+        _ -> {
+          var pageIds = dogFilterIndex == null ? null : dogFilterIndex.findPage(filter, pageable);
+          return readOnlyTransaction.execute(
+              _ ->
+                  dogEntitiesToResponses(
+                      pageIds != null
+                          ? findDogsInOrder(pageIds)
+                          : paginateAndFilterDogs(pageable, ageMin, ageMax, sex, size).toList()));
+        });
+  }
+
+  private List<DogEntity> findDogsInOrder(List<Long> ids) {
+    var dogsById =
+        dogRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(DogEntity::getId, Function.identity()));
+    // A dog deleted after the index answered is simply missing from the page.
+    return ids.stream().map(dogsById::get).filter(Objects::nonNull).toList();
+  }
 
-    return dogEntitiesToResponses(dogEntities.toList());
+  @Transactional(readOnly = true)
+  public void exportDogs(
+      Float ageMin, Float ageMax, Sex sex, DogSize size, Consumer<DogResponse> action) {
+    dogExportRepository.forEachDog(new DogFilter(ageMin, ageMax, sex, size), action);
+  }
+
+  // Unfiltered counts are kept in memory; filtered ones take a single aggregate query.
+  public DogFacetsResponse getFacets(Float ageMin, Float ageMax, Sex sex, DogSize size) {
+    var filter = new DogFilter(ageMin, ageMax, sex, size);
+    if (filter.isEmpty()) {
+      return dogFacetTotals.get();
+    }
+    return dogFacetRepository.countFacets(filter).toResponse();
   }
 
   Page<DogEntity> paginateAndFilterDogs(
       Pageable pageable, Float ageMin, Float ageMax, Sex sex, DogSize size) {
-    var spec = buildDogSpecification(ageMin, ageMax, sex, size);
+    var spec = new DogFilter(ageMin, ageMax, sex, size).toSpecification();
     return dogRepository.findAll(spec, pageable);
   }
 
-  public List<DogResponse> getRandomDogs(int listSize) {
-    var randomDogs = RandomnessWeight.getRandomWeightedSelection(dogRepository.findAll(), listSize);
-    return dogEntitiesToResponses(randomDogs);
-  }
+  @Transactional(readOnly = true)
+  public DogSliceResponse getDogsAfterCursor(
+      String cursorToken,
+      SortField sort,
+      Direction order,
+      int size,
+      Float ageMin,
+      Float ageMax,
+      Sex sex,
+      DogSize dogSize) {
+    var cursor =
+        cursorToken == null || cursorToken.isBlank() ? null : DogCursor.decode(cursorToken);
+    if (cursor != null && (cursor.sort() != sort || cursor.order() != order)) {
+      throw new IllegalArgumentException(
+          "Cursor was issued for sort " + cursor.sort() + " " + cursor.order());
+    }
 
-  private List<DogResponse> dogEntitiesToResponses(List<DogEntity> dogEntities) {
-    return dogEntities.stream()
-        .map(
-            dogEntity -> {
-              var dogDto = DogMapper.entityToDto(dogEntity);
-              return DogMapper.dtoToResponse(dogDto, dogEntity.getId());
-            })
-        .toList();
+    var dogEntities = sliceAndFilterDogs(cursor, sort, order, size, ageMin, ageMax, sex, dogSize);
+    var nextCursor =
+        dogEntities.hasNext()
+            ? DogCursor.of(sort, order, dogEntities.getContent().getLast()).encode()
+            : null;
+    return new DogSliceResponse(dogEntitiesToResponses(dogEntities.getContent()), nextCursor);
   }
 
-  private Specification<DogEntity> buildDogSpecification(
-      Float ageMin, Float ageMax, Sex sex, DogSize size) {
+  @Transactional(readOnly = true)
+  public DogSliceResponse searchDogs(
+      String text,
+      String cursorToken,
+      int size,
+      Float ageMin,
+      Float ageMax,
+      Sex sex,
+      DogSize dogSize) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Page size must not be less than one");
+    }
+    var cursor =
+        cursorToken == null || cursorToken.isBlank() ? null : DogSearchCursor.decode(cursorToken);
+    var rankedDogs =
+        dogSearchRepository.search(
+            text, new DogFilter(ageMin, ageMax, sex, dogSize), cursor, size + 1);
+    if (rankedDogs == null) {
+      throw new IllegalArgumentException("Search text must contain at least one word");
+    }
 
-    Specification<DogEntity> spec = (_, _, cb) -> cb.conjunction();
-    if (ageMin != null) {
-      spec = spec.and(DogSpec.ageGte(ageMin));
+    var hasNext = rankedDogs.size() > size;
+    var page = hasNext ? rankedDogs.subList(0, size) : rankedDogs;
+    String nextCursor = null;
+    if (hasNext) {
+      var last = page.getLast();
+      nextCursor = new DogSearchCursor(last.rank(), last.dog().internalId()).encode();
     }
-    if (ageMax != null) {
-      spec = spec.and(DogSpec.ageLte(ageMax));
+    return new DogSliceResponse(
+        page.stream().map(DogSearchRepository.RankedDog::dog).toList(), nextCursor);
+  }
+
+  Slice<DogEntity> sliceAndFilterDogs(
+      DogCursor cursor,
+      SortField sort,
+      Direction order,
+      int size,
+      Float ageMin,
+      Float ageMax,
+      Sex sex,
+      DogSize dogSize) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Page size must not be less than one");
     }
-    if (sex != null) {
-      spec = spec.and(DogSpec.hasSex(sex));
+    var spec = new DogFilter(ageMin, ageMax, sex, dogSize).toSpecification();
+    if (cursor != null) {
+      spec = spec.and(DogSpec.after(cursor));
     }
-    if (size != null) {
-      spec = spec.and(DogSpec.hasSize(size));
+    var sortOrder = DogCursor.sortOf(sort, order);
+
+    // Fetch one extra row to learn whether there is a next slice without running count(*).
+    var dogEntities =
+        dogRepository.findBy(spec, query -> query.sortBy(sortOrder).limit(size + 1).all());
+    var hasNext = dogEntities.size() > size;
+    var content = hasNext ? dogEntities.subList(0, size) : dogEntities;
+    return new SliceImpl<>(content, PageRequest.of(0, size, sortOrder), hasNext);
+  }
+
+  @Transactional(readOnly = true)
+  public List<DogResponse> getRandomDogs(int listSize) {
+    var randomIds = weightedDogSampler.sample(listSize);
+    var dogsById =
+        dogRepository.findAllById(randomIds).stream()
+            .collect(Collectors.toMap(DogEntity::getId, Function.identity()));
+
+    var randomDogs = new ArrayList<DogEntity>(randomIds.size());
+    for (var id : randomIds) {
+      var dogEntity = dogsById.get(id);
+      if (dogEntity != null) {
+        randomDogs.add(dogEntity);
+      } else {
+        // Deleted behind the service's back, drop it so it is not drawn again.
+        weightedDogSampler.remove(id);
+      }
     }
-    return spec;
+    return dogEntitiesToResponses(randomDogs);
+  }
+
+  private List<DogResponse> dogEntitiesToResponses(List<DogEntity> dogEntities) {
+    return dogEntities.stream().map(DogMapper::entityToResponse).toList();
   }
 
   private void validateDogDoesNotExist(DogDto dogDto) {
@@ -147,16 +389,60 @@ public class DogSheltersService {
       return Arrays.stream(raw).map(o -> (DogEntity) o).toList();
     }
 
-    private static double computeWeight(DogEntity dog) {
+    static double computeWeight(DogEntity dog) {
+      return computeWeight(
+          dog.getDescription() != null,
+          dog.getBreedGuess() != null,
+          dog.getEstimatedAgeInYears() != null,
+          dog.getCurrentWeight() != null,
+          dog.getEstimatedFinalWeightMin() != null,
+          dog.getEstimatedFinalWeightMax() != null,
+          dog.getDogAddress() != null,
+          dog.getImageUrls() == null ? 0 : dog.getImageUrls().size());
+    }
+
+    static double computeWeight(DogDto dog) {
+      return computeWeight(
+          dog.getDescription() != null,
+          dog.getBreedGuess() != null,
+          dog.getEstimatedAgeInYears() != null,
+          dog.getCurrentWeight() != null,
+          dog.getEstimatedFinalWeightMin() != null,
+          dog.getEstimatedFinalWeightMax() != null,
+          dog.getDogAddress() != null,
+          dog.getImageUrls() == null ? 0 : dog.getImageUrls().size());
+    }
+
+    static double computeWeight(DogWeightView dog) {
+      return computeWeight(
+          dog.getDescriptionPresent(),
+          dog.getBreedGuessPresent(),
+          dog.getEstimatedAgePresent(),
+          dog.getCurrentWeightPresent(),
+          dog.getEstimatedFinalWeightMinPresent(),
+          dog.getEstimatedFinalWeightMaxPresent(),
+          dog.getDogAddressPresent(),
+          dog.getImageUrlCount());
+    }
+
+    private static double computeWeight(
+        boolean hasDescription,
+        boolean hasBreedGuess,
+        boolean hasEstimatedAge,
+        boolean hasCurrentWeight,
+        boolean hasEstimatedFinalWeightMin,
+        boolean hasEstimatedFinalWeightMax,
+        boolean hasDogAddress,
+        long imageUrlCount) {
       int points = 0;
-      if (dog.getDescription() == null) points += 5;
-      if (dog.getBreedGuess() == null) points += 6;
-      if (dog.getEstimatedAgeInYears() == null) points += 4;
-      if (dog.getCurrentWeight() == null) points += 2;
-      if (dog.getEstimatedFinalWeightMin() == null) points += 1;
-      if (dog.getEstimatedFinalWeightMax() == null) points += 2;
-      if (dog.getDogAddress() == null) points += 1;
-      if (dog.getImageUrls() == null || dog.getImageUrls().size() <= 2) points += 3;
+      if (!hasDescription) points += 5;
+      if (!hasBreedGuess) points += 6;
+      if (!hasEstimatedAge) points += 4;
+      if (!hasCurrentWeight) points += 2;
+      if (!hasEstimatedFinalWeightMin) points += 1;
+      if (!hasEstimatedFinalWeightMax) points += 2;
+      if (!hasDogAddress) points += 1;
+      if (imageUrlCount <= 2) points += 3;
 
       double frac = points / (double) MAX_POINTS;
       return MIN_WEIGHT + frac * (MAX_WEIGHT - MIN_WEIGHT);
@@ -0,0 +1,229 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The slots of {@link DogFilterIndex} in the order of one sort field, kept sorted as slots are
+ * inserted and removed. The order is split into chunks of limited capacity, so a write shifts at
+ * most one chunk, and every chunk counts its slots per filter cell, so a page deep into a listing
+ * skips whole chunks instead of walking every slot before it.
+ *
+ * <p>The order must be total, and a slot must be removed before the values it is ordered by or its
+ * cell change and inserted again afterwards.
+ */
+final class SortedSlots {
+  private final IntBinaryOperator order;
+  private final IntUnaryOperator cellOf;
+  private final int cellCount;
+  private final int chunkCapacity;
+  private final List<Chunk> chunks = new ArrayList<>();
+
+  SortedSlots(IntBinaryOperator order, IntUnaryOperator cellOf, int cellCount, int chunkCapacity) {
+    this.order = order;
+    this.cellOf = cellOf;
+    this.cellCount = cellCount;
+    this.chunkCapacity = chunkCapacity;
+  }
+
+  /** Replaces the contents with the given slots, which are sorted in place. */
+  void build(int[] slots) {
+    sort(slots, new int[slots.length], 0, slots.length, order);
+    chunks.clear();
+    // Chunks start three quarters full so that the first writes into them do not split them.
+    var fill = Math.max(1, chunkCapacity * 3 / 4);
+    for (int from = 0; from < slots.length; from += fill) {
+      var chunk = new Chunk();
+      for (int i = from; i < Math.min(from + fill, slots.length); i++) {
+        chunk.insert(chunk.size, slots[i]);
+      }
+      chunks.add(chunk);
+    }
+  }
+
+  void insert(int slot) {
+    if (chunks.isEmpty()) {
+      chunks.add(new Chunk());
+    }
+    var index = Math.min(chunkIndexOf(slot), chunks.size() - 1);
+    var chunk = chunks.get(index);
+    var position = -chunk.search(slot) - 1;
+    if (chunk.size == chunkCapacity) {
+      var upper = chunk.splitUpperHalf();
+      chunks.add(index + 1, upper);
+      if (position > chunk.size) {
+        position -= chunk.size;
+        chunk = upper;
+      }
+    }
+    chunk.insert(position, slot);
+  }
+
+  void remove(int slot) {
+    var index = chunkIndexOf(slot);
+    if (index == chunks.size()) {
+      return;
+    }
+    var chunk = chunks.get(index);
+    var position = chunk.search(slot);
+    if (position < 0) {
+      return;
+    }
+    chunk.remove(position);
+    if (chunk.size == 0) {
+      chunks.remove(index);
+    } else if (index + 1 < chunks.size()
+        && chunk.size + chunks.get(index + 1).size <= chunkCapacity / 2) {
+      chunk.append(chunks.remove(index + 1));
+    }
+  }
+
+  int size() {
+    var size = 0;
+    for (var chunk : chunks) {
+      size += chunk.size;
+    }
+    return size;
+  }
+
+  /**
+   * Passes the slots of one page to {@code action}, in order. A slot matches when its cell is one
+   * of {@code cells} and, unless {@code alsoMatches} is null, it passes {@code alsoMatches} too.
+   * Chunks without a slot in those cells are always skipped, and without {@code alsoMatches} so are
+   * all chunks that lie wholly before the offset.
+   */
+  void forEachOnPage(
+      boolean ascending,
+      long offset,
+      int limit,
+      boolean[] cells,
+      IntPredicate alsoMatches,
+      IntConsumer action) {
+    var skip = offset;
+    var left = limit;
+    for (int c = 0; c < chunks.size() && left > 0; c++) {
+      var chunk = chunks.get(ascending ? c : chunks.size() - 1 - c);
+      var candidates = chunk.countIn(cells);
+      if (candidates == 0) {
+        continue;
+      }
+      if (alsoMatches == null && skip >= candidates) {
+        skip -= candidates;
+        continue;
+      }
+      for (int i = 0; i < chunk.size && left > 0; i++) {
+        var slot = chunk.slots[ascending ? i : chunk.size - 1 - i];
+        if (cells[cellOf.applyAsInt(slot)]
+            && (alsoMatches == null || alsoMatches.test(slot))
+            && skip-- <= 0) {
+          action.accept(slot);
+          left--;
+        }
+      }
+    }
+  }
+
+  // Index of the first chunk whose last slot does not order before the slot, or the chunk count.
+  private int chunkIndexOf(int slot) {
+    int low = 0;
+    int high = chunks.size();
+    while (low < high) {
+      var mid = (low + high) >>> 1;
+      var chunk = chunks.get(mid);
+      if (order.applyAsInt(chunk.slots[chunk.size - 1], slot) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  // A merge sort, so that sorting neither boxes the slots nor allocates per comparison.
+  private static void sort(int[] slots, int[] buffer, int from, int to, IntBinaryOperator order) {
+    if (to - from < 2) {
+      return;
+    }
+    var mid = (from + to) >>> 1;
+    sort(slots, buffer, from, mid, order);
+    sort(slots, buffer, mid, to, order);
+    if (order.applyAsInt(slots[mid - 1], slots[mid]) <= 0) {
+      return;
+    }
+    System.arraycopy(slots, from, buffer, from, to - from);
+    for (int i = from, left = from, right = mid; i < to; i++) {
+      slots[i] =
+          right == to || (left < mid && order.applyAsInt(buffer[left], buffer[right]) <= 0)
+              ? buffer[left++]
+              : buffer[right++];
+    }
+  }
+
+  private final class Chunk {
+    private final int[] slots = new int[chunkCapacity];
+    private final int[] countsByCell = new int[cellCount];
+    private int size;
+
+    // Position of the slot, or -(insertion point) - 1 like Arrays.binarySearch.
+    int search(int slot) {
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+        var mid = (low + high) >>> 1;
+        var compared = order.applyAsInt(slots[mid], slot);
+        if (compared < 0) {
+          low = mid + 1;
+        } else if (compared > 0) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -low - 1;
+    }
+
+    void insert(int position, int slot) {
+      System.arraycopy(slots, position, slots, position + 1, size - position);
+      slots[position] = slot;
+      size++;
+      countsByCell[cellOf.applyAsInt(slot)]++;
+    }
+
+    void remove(int position) {
+      countsByCell[cellOf.applyAsInt(slots[position])]--;
+      System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+      size--;
+    }
+
+    Chunk splitUpperHalf() {
+      var upper = new Chunk();
+      var half = size / 2;
+      for (int i = half; i < size; i++) {
+        upper.insert(upper.size, slots[i]);
+        countsByCell[cellOf.applyAsInt(slots[i])]--;
+      }
+      size = half;
+      return upper;
+    }
+
+    void append(Chunk next) {
+      for (int i = 0; i < next.size; i++) {
+        insert(size, next.slots[i]);
+      }
+    }
+
+    int countIn(boolean[] cells) {
+      var count = 0;
+      for (int cell = 0; cell < cellCount; cell++) {
+        if (cells[cell]) {
+          count += countsByCell[cell];
+        }
+      }
+      return count;
+    }
+  }
+}
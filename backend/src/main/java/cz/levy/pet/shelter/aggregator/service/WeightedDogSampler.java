@@ -0,0 +1,192 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Weighted sampler over dog ids backed by a Fenwick tree of {@code RandomnessWeight} scores.
+ * Updates and draws are O(log n); only ids and weights are kept in memory. The tree is loaded
+ * lazily on the first draw and afterwards maintained from {@link DogChangedEvent}s.
+ */
+@Component
+public class WeightedDogSampler {
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int MAX_DRAW_ATTEMPTS = 3;
+
+  private final DogRepository dogRepository;
+  private final Map<Long, Integer> slotsById = new HashMap<>();
+  private final Deque<Integer> freeSlots = new ArrayDeque<>();
+  private long[] ids = new long[INITIAL_CAPACITY];
+  private double[] weights = new double[INITIAL_CAPACITY];
+  private double[] tree = new double[INITIAL_CAPACITY + 1];
+  private int usedSlots;
+  private boolean loaded;
+
+  public WeightedDogSampler(DogRepository dogRepository) {
+    this.dogRepository = dogRepository;
+  }
+
+  // Runs after commit, like the facet totals, so that rolled back writes are never drawn.
+  @TransactionalEventListener(fallbackExecution = true)
+  public synchronized void onDogChanged(DogChangedEvent event) {
+    if (event.after() == null) {
+      remove(event.id());
+    } else {
+      put(event.id(), event.randomnessWeight());
+    }
+  }
+
+  public synchronized void put(long id, double weight) {
+    if (!loaded) {
+      return;
+    }
+    putLoaded(id, weight);
+  }
+
+  public synchronized void remove(long id) {
+    if (!loaded) {
+      return;
+    }
+    Integer slot = slotsById.remove(id);
+    if (slot == null) {
+      return;
+    }
+    add(slot, -weights[slot]);
+    weights[slot] = 0;
+    freeSlots.push(slot);
+  }
+
+  public synchronized int size() {
+    ensureLoaded();
+    return slotsById.size();
+  }
+
+  /** Draws up to {@code size} distinct ids, each with probability proportional to its weight. */
+  public synchronized List<Long> sample(int size) {
+    ensureLoaded();
+    int count = Math.min(size, slotsById.size());
+    List<Long> sampled = new ArrayList<>(count);
+    BitSet drawn = new BitSet(usedSlots);
+
+    for (int i = 0; i < count; i++) {
+      int slot = drawSlot(drawn);
+      if (slot < 0) {
+        break;
+      }
+      drawn.set(slot);
+      sampled.add(ids[slot]);
+      // Take the drawn dog out of the tree so that it cannot be drawn again in this call.
+      add(slot, -weights[slot]);
+    }
+
+    drawn.stream().forEach(slot -> add(slot, weights[slot]));
+    return sampled;
+  }
+
+  private int drawSlot(BitSet drawn) {
+    for (int attempt = 0; attempt < MAX_DRAW_ATTEMPTS; attempt++) {
+      double total = prefixSum(usedSlots);
+      if (total <= 0) {
+        return -1;
+      }
+      int slot = find(ThreadLocalRandom.current().nextDouble() * total);
+      if (isDrawable(slot, drawn)) {
+        return slot;
+      }
+    }
+    // Floating point drift can make the tree descent land on an empty slot; fall back to a scan.
+    for (int slot = 0; slot < usedSlots; slot++) {
+      if (isDrawable(slot, drawn)) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private boolean isDrawable(int slot, BitSet drawn) {
+    return slot < usedSlots && weights[slot] > 0 && !drawn.get(slot);
+  }
+
+  private void ensureLoaded() {
+    if (loaded) {
+      return;
+    }
+    dogRepository
+        .findAllWeightViews()
+        .forEach(
+            view ->
+                putLoaded(view.getId(), DogSheltersService.RandomnessWeight.computeWeight(view)));
+    loaded = true;
+  }
+
+  private void putLoaded(long id, double weight) {
+    Integer slot = slotsById.get(id);
+    if (slot == null) {
+      slot = allocateSlot();
+      slotsById.put(id, slot);
+      ids[slot] = id;
+    }
+    add(slot, weight - weights[slot]);
+    weights[slot] = weight;
+  }
+
+  private int allocateSlot() {
+    if (!freeSlots.isEmpty()) {
+      return freeSlots.pop();
+    }
+    if (usedSlots == weights.length) {
+      grow();
+    }
+    return usedSlots++;
+  }
+
+  private void grow() {
+    int capacity = weights.length * 2;
+    ids = Arrays.copyOf(ids, capacity);
+    weights = Arrays.copyOf(weights, capacity);
+    tree = new double[capacity + 1];
+    for (int i = 1; i <= capacity; i++) {
+      tree[i] += weights[i - 1];
+      int parent = i + (i & -i);
+      if (parent <= capacity) {
+        tree[parent] += tree[i];
+      }
+    }
+  }
+
+  private void add(int slot, double delta) {
+    for (int i = slot + 1; i < tree.length; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+
+  private double prefixSum(int slotCount) {
+    double sum = 0;
+    for (int i = slotCount; i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+
+  private int find(double target) {
+    int position = 0;
+    for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+      int next = position + step;
+      if (next < tree.length && tree[next] <= target) {
+        position = next;
+        target -= tree[next];
+      }
+    }
+    return position;
+  }
+}
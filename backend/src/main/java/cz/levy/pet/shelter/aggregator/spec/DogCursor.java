@@ -0,0 +1,78 @@
+package cz.levy.pet.shelter.aggregator.spec;
+
+import cz.levy.pet.shelter.aggregator.domain.SortField;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+
+/**
+ * Opaque keyset position: the sort value and id of the last dog of a slice. Encoded as URL-safe
+ * base64 so clients treat it as a token rather than something to construct themselves.
+ */
+public record DogCursor(SortField sort, Direction order, Comparable<?> value, long lastId) {
+  private static final String SEPARATOR = "|";
+  private static final String NULL_VALUE = "N";
+  private static final String PRESENT_VALUE = "V";
+
+  public static DogCursor of(SortField sort, Direction order, DogEntity lastDog) {
+    return new DogCursor(sort, order, sortValue(sort, lastDog), lastDog.getId());
+  }
+
+  public static Sort sortOf(SortField sort, Direction order) {
+    var primary = Sort.by(order, sort.getFieldName());
+    return sort == SortField.ID
+        ? primary
+        : primary.and(Sort.by(order, SortField.ID.getFieldName()));
+  }
+
+  public String encode() {
+    var raw =
+        String.join(
+            SEPARATOR,
+            sort.name(),
+            order.name(),
+            String.valueOf(lastId),
+            value == null ? NULL_VALUE : PRESENT_VALUE + value);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static DogCursor decode(String token) {
+    try {
+      var raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      var parts = raw.split("\\" + SEPARATOR, 4);
+      var sort = SortField.valueOf(parts[0]);
+      var order = Direction.valueOf(parts[1]);
+      var lastId = Long.parseLong(parts[2]);
+      Comparable<?> value =
+          parts[3].equals(NULL_VALUE) ? null : parseValue(sort, parts[3].substring(1));
+      return new DogCursor(sort, order, value, lastId);
+    } catch (RuntimeException ex) {
+      throw new IllegalArgumentException("Invalid cursor '" + token + "'");
+    }
+  }
+
+  private static Comparable<?> sortValue(SortField sort, DogEntity dog) {
+    return switch (sort) {
+      case ID -> dog.getId();
+      case NAME -> dog.getName();
+      case ESTIMATED_AGE -> dog.getEstimatedAgeInYears();
+      case CURRENT_WEIGHT -> dog.getCurrentWeight();
+      case ESTIMATED_FINAL_WEIGHT_MIN -> dog.getEstimatedFinalWeightMin();
+      case ESTIMATED_FINAL_WEIGHT_MAX -> dog.getEstimatedFinalWeightMax();
+      case SHELTER_ID -> dog.getShelter().getId();
+    };
+  }
+
+  private static Comparable<?> parseValue(SortField sort, String value) {
+    return switch (sort) {
+      case ID, SHELTER_ID -> Long.parseLong(value);
+      case NAME -> value;
+      case ESTIMATED_AGE, CURRENT_WEIGHT, ESTIMATED_FINAL_WEIGHT_MIN, ESTIMATED_FINAL_WEIGHT_MAX ->
+          Float.parseFloat(value);
+    };
+  }
+}
@@ -0,0 +1,67 @@
+package cz.levy.pet.shelter.aggregator.spec;
+
+import cz.levy.pet.shelter.aggregator.api.DogFacetsResponse;
+import cz.levy.pet.shelter.aggregator.domain.AgeBracket;
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/** Mutable dog counts per facet value, indexed by enum ordinal. */
+public class DogFacetCounts {
+  private long total;
+  private final long[] bySex = new long[Sex.values().length];
+  private final long[] bySize = new long[DogSize.values().length];
+  private final long[] byAgeBracket = new long[AgeBracket.values().length];
+
+  public void setTotal(long total) {
+    this.total = total;
+  }
+
+  public void setSex(Sex sex, long count) {
+    bySex[sex.ordinal()] = count;
+  }
+
+  public void setDogSize(DogSize size, long count) {
+    bySize[size.ordinal()] = count;
+  }
+
+  public void setAgeBracket(AgeBracket bracket, long count) {
+    byAgeBracket[bracket.ordinal()] = count;
+  }
+
+  /** Counts {@code dog} {@code delta} more times in every facet value it has; null is ignored. */
+  public void add(DogSnapshot dog, int delta) {
+    if (dog == null) {
+      return;
+    }
+    total += delta;
+    bySex[dog.sex().ordinal()] += delta;
+    for (var size : DogSize.values()) {
+      if (DogFilter.hasSize(size, dog.estimatedFinalWeightMin(), dog.estimatedFinalWeightMax())) {
+        bySize[size.ordinal()] += delta;
+      }
+    }
+    var bracket = AgeBracket.of(dog.estimatedAgeInYears());
+    if (bracket != null) {
+      byAgeBracket[bracket.ordinal()] += delta;
+    }
+  }
+
+  public DogFacetsResponse toResponse() {
+    return new DogFacetsResponse(
+        total,
+        toMap(Sex.class, i -> bySex[i]),
+        toMap(DogSize.class, i -> bySize[i]),
+        toMap(AgeBracket.class, i -> byAgeBracket[i]));
+  }
+
+  private static <E extends Enum<E>> Map<E, Long> toMap(Class<E> type, IntFunction<Long> count) {
+    var counts = new EnumMap<E, Long>(type);
+    for (var value : type.getEnumConstants()) {
+      counts.put(value, count.apply(value.ordinal()));
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,115 @@
+package cz.levy.pet.shelter.aggregator.spec;
+
+import static cz.levy.pet.shelter.aggregator.domain.DogSize.LARGE;
+import static cz.levy.pet.shelter.aggregator.domain.DogSize.MEDIUM;
+
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.data.jpa.domain.Specification;
+
+/** The filters of a dog listing; null components do not filter. */
+public record DogFilter(Float ageMin, Float ageMax, Sex sex, DogSize dogSize) {
+
+  public Specification<DogEntity> toSpecification() {
+    Specification<DogEntity> spec = (_, _, cb) -> cb.conjunction();
+    if (ageMin != null) {
+      spec = spec.and(DogSpec.ageGte(ageMin));
+    }
+    if (ageMax != null) {
+      spec = spec.and(DogSpec.ageLte(ageMax));
+    }
+    if (sex != null) {
+      spec = spec.and(DogSpec.hasSex(sex));
+    }
+    if (dogSize != null) {
+      spec = spec.and(DogSpec.hasSize(dogSize));
+    }
+    return spec;
+  }
+
+  /**
+   * Renders the filter as an SQL condition on {@code dog_entity} aliased {@code d}, with the same
+   * semantics as {@link #toSpecification()}. Bind values are appended to {@code parameters}; size
+   * bounds stay literals so that the partial size bucket indexes apply.
+   */
+  public String toSqlCondition(List<Object> parameters) {
+    var conditions = new ArrayList<String>();
+    if (ageMin != null) {
+      conditions.add("d.estimated_age_in_years IS NOT NULL AND d.estimated_age_in_years >= ?");
+      parameters.add(ageMin);
+    }
+    if (ageMax != null) {
+      conditions.add("d.estimated_age_in_years IS NOT NULL AND d.estimated_age_in_years <= ?");
+      parameters.add(ageMax);
+    }
+    if (sex != null) {
+      conditions.add("d.sex = ?");
+      parameters.add(sex.name());
+    }
+    if (dogSize != null) {
+      conditions.add(sizeSqlCondition(dogSize));
+    }
+    return conditions.isEmpty() ? "TRUE" : String.join(" AND ", conditions);
+  }
+
+  /** Whether no component filters, so that the filter matches every dog. */
+  public boolean isEmpty() {
+    return ageMin == null && ageMax == null && sex == null && dogSize == null;
+  }
+
+  /** The SQL condition on {@code dog_entity} aliased {@code d} selecting the size bucket. */
+  public static String sizeSqlCondition(DogSize size) {
+    return switch (size) {
+      case SMALL ->
+          "d.estimated_final_weight_max IS NOT NULL"
+              + " AND d.estimated_final_weight_max <= "
+              + MEDIUM.getFrom();
+      case MEDIUM ->
+          "d.estimated_final_weight_min IS NOT NULL"
+              + " AND d.estimated_final_weight_max IS NOT NULL"
+              + " AND d.estimated_final_weight_max > "
+              + MEDIUM.getFrom()
+              + " AND d.estimated_final_weight_max <= "
+              + LARGE.getFrom();
+      case LARGE ->
+          "d.estimated_final_weight_min IS NOT NULL"
+              + " AND d.estimated_final_weight_min > "
+              + LARGE.getFrom();
+    };
+  }
+
+  /** Evaluates the filter in memory with the same semantics as {@link #toSpecification()}. */
+  public boolean matches(DogSnapshot dog) {
+    if (dog == null) {
+      return false;
+    }
+    var age = dog.estimatedAgeInYears();
+    if (ageMin != null && (age == null || age < ageMin)) {
+      return false;
+    }
+    if (ageMax != null && (age == null || age > ageMax)) {
+      return false;
+    }
+    if (sex != null && sex != dog.sex()) {
+      return false;
+    }
+    return dogSize == null
+        || hasSize(dogSize, dog.estimatedFinalWeightMin(), dog.estimatedFinalWeightMax());
+  }
+
+  /** In-memory counterpart of {@link DogSpec#hasSize}. */
+  public static boolean hasSize(DogSize size, Float finalWeightMin, Float finalWeightMax) {
+    return switch (size) {
+      case SMALL -> finalWeightMax != null && finalWeightMax <= MEDIUM.getFrom();
+      case MEDIUM ->
+          finalWeightMin != null
+              && finalWeightMax != null
+              && finalWeightMax > MEDIUM.getFrom()
+              && finalWeightMax <= LARGE.getFrom();
+      case LARGE -> finalWeightMin != null && finalWeightMin > LARGE.getFrom();
+    };
+  }
+}
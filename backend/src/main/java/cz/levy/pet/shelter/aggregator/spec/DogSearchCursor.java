@@ -0,0 +1,29 @@
+package cz.levy.pet.shelter.aggregator.spec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/** Opaque keyset position in search results: the rank and id of the last dog of a slice. */
+public record DogSearchCursor(float rank, long lastId) {
+  private static final String PREFIX = "SEARCH|";
+
+  public String encode() {
+    var raw = PREFIX + rank + "|" + lastId;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static DogSearchCursor decode(String token) {
+    try {
+      var raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      if (!raw.startsWith(PREFIX)) {
+        throw new IllegalArgumentException();
+      }
+      var parts = raw.substring(PREFIX.length()).split("\\|", 2);
+      return new DogSearchCursor(Float.parseFloat(parts[0]), Long.parseLong(parts[1]));
+    } catch (RuntimeException ex) {
+      throw new IllegalArgumentException("Invalid cursor '" + token + "'");
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package cz.levy.pet.shelter.aggregator.spec;
+
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+
+/** The attributes of a dog that listings filter and sort on, as of one point in time. */
+public record DogSnapshot(
+    long shelterId,
+    String name,
+    Sex sex,
+    Float estimatedAgeInYears,
+    Float currentWeight,
+    Float estimatedFinalWeightMin,
+    Float estimatedFinalWeightMax) {
+
+  public static DogSnapshot of(DogEntity dog) {
+    return new DogSnapshot(
+        dog.getShelter().getId(),
+        dog.getName(),
+        dog.getSex(),
+        dog.getEstimatedAgeInYears(),
+        dog.getCurrentWeight(),
+        dog.getEstimatedFinalWeightMin(),
+        dog.getEstimatedFinalWeightMax());
+  }
+
+  public static DogSnapshot of(DogDto dog) {
+    return new DogSnapshot(
+        dog.getShelterId(),
+        dog.getName(),
+        dog.getSex() == null ? Sex.UNKNOWN : dog.getSex(),
+        dog.getEstimatedAgeInYears(),
+        dog.getCurrentWeight(),
+        dog.getEstimatedFinalWeightMin(),
+        dog.getEstimatedFinalWeightMax());
+  }
+}
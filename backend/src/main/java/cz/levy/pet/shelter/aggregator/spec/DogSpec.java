@@ -5,7 +5,10 @@ import static cz.levy.pet.shelter.aggregator.domain.DogSize.MEDIUM;
 
 import cz.levy.pet.shelter.aggregator.domain.DogSize;
 import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.domain.SortField;
 import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 
 public class DogSpec {
@@ -28,25 +31,57 @@ public class DogSpec {
     return (root, query, cb) -> cb.equal(root.get("sex"), sex);
   }
 
+  // Bucket bounds are rendered as SQL literals, not bind parameters, so that PostgreSQL can match
+  // the queries against the partial size bucket indexes.
   public static Specification<DogEntity> hasSize(DogSize size) {
     return switch (size) {
       case SMALL ->
           (root, query, cb) ->
               cb.and(
                   cb.isNotNull(root.get("estimatedFinalWeightMax")),
-                  cb.le(root.get("estimatedFinalWeightMax"), MEDIUM.getFrom()));
+                  cb.le(root.get("estimatedFinalWeightMax"), cb.literal(MEDIUM.getFrom())));
       case MEDIUM ->
           (root, query, cb) ->
               cb.and(
                   cb.isNotNull(root.get("estimatedFinalWeightMin")),
                   cb.isNotNull(root.get("estimatedFinalWeightMax")),
-                  cb.gt(root.get("estimatedFinalWeightMax"), MEDIUM.getFrom()),
-                  cb.le(root.get("estimatedFinalWeightMax"), LARGE.getFrom()));
+                  cb.gt(root.get("estimatedFinalWeightMax"), cb.literal(MEDIUM.getFrom())),
+                  cb.le(root.get("estimatedFinalWeightMax"), cb.literal(LARGE.getFrom())));
       case LARGE ->
           (root, query, cb) ->
               cb.and(
                   cb.isNotNull(root.get("estimatedFinalWeightMin")),
-                  cb.gt(root.get("estimatedFinalWeightMin"), LARGE.getFrom()));
+                  cb.gt(root.get("estimatedFinalWeightMin"), cb.literal(LARGE.getFrom())));
+    };
+  }
+
+  /**
+   * Keyset predicate selecting the dogs that come after {@code cursor} in its ordering. Mirrors
+   * PostgreSQL's default null placement: nulls sort last ascending and first descending.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public static Specification<DogEntity> after(DogCursor cursor) {
+    return (root, query, cb) -> {
+      boolean ascending = cursor.order().isAscending();
+      Path<Long> id = root.get("id");
+      Predicate idAfter = ascending ? cb.gt(id, cursor.lastId()) : cb.lt(id, cursor.lastId());
+      if (cursor.sort() == SortField.ID) {
+        return idAfter;
+      }
+
+      Path field = root;
+      for (var attribute : cursor.sort().getFieldName().split("\\.")) {
+        field = field.get(attribute);
+      }
+      Comparable value = cursor.value();
+      if (value == null) {
+        var nullAfter = cb.and(cb.isNull(field), idAfter);
+        return ascending ? nullAfter : cb.or(nullAfter, cb.isNotNull(field));
+      }
+
+      var beyond = ascending ? cb.greaterThan(field, value) : cb.lessThan(field, value);
+      var tieAfter = cb.and(cb.equal(field, value), idAfter);
+      return ascending ? cb.or(beyond, tieAfter, cb.isNull(field)) : cb.or(beyond, tieAfter);
     };
   }
 }
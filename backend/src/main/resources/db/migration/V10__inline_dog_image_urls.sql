@@ -0,0 +1,15 @@
+-- Image URLs move onto the dog row, so reading a dog needs no join or second query and replacing
+-- its images rewrites one column. The old table had no order column; existing URLs keep the order
+-- in which they were stored, which is the order they were read back in.
+ALTER TABLE dog_entity ADD COLUMN image_urls TEXT[] NOT NULL DEFAULT '{}';
+
+UPDATE dog_entity d
+SET image_urls = i.image_urls
+FROM (
+  SELECT dog_id, array_agg(image_url ORDER BY ctid) AS image_urls
+  FROM dog_image_urls
+  GROUP BY dog_id
+) i
+WHERE i.dog_id = d.id;
+
+DROP TABLE dog_image_urls;
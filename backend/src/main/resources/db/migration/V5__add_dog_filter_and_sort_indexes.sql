@@ -0,0 +1,22 @@
+-- Sort orderings. Every ordering is tie-broken by id, which keyset pagination relies on.
+CREATE INDEX ix_dog_entity_name_id ON dog_entity (name, id);
+CREATE INDEX ix_dog_entity_estimated_age_id ON dog_entity (estimated_age_in_years, id);
+CREATE INDEX ix_dog_entity_current_weight_id ON dog_entity (current_weight, id);
+CREATE INDEX ix_dog_entity_final_weight_min_id ON dog_entity (estimated_final_weight_min, id);
+CREATE INDEX ix_dog_entity_final_weight_max_id ON dog_entity (estimated_final_weight_max, id);
+CREATE INDEX ix_dog_entity_shelter_id_id ON dog_entity (shelter_id, id);
+
+-- Sex filter, alone or combined with the age range filters.
+CREATE INDEX ix_dog_entity_sex_id ON dog_entity (sex, id);
+CREATE INDEX ix_dog_entity_sex_estimated_age_id ON dog_entity (sex, estimated_age_in_years, id);
+
+-- Size buckets as defined by DogSpec.hasSize, in the default id ordering.
+CREATE INDEX ix_dog_entity_size_small_id ON dog_entity (id)
+  WHERE estimated_final_weight_max IS NOT NULL
+    AND estimated_final_weight_max <= 12;
+CREATE INDEX ix_dog_entity_size_medium_id ON dog_entity (id)
+  WHERE estimated_final_weight_min IS NOT NULL
+    AND estimated_final_weight_max > 12
+    AND estimated_final_weight_max <= 24;
+CREATE INDEX ix_dog_entity_size_large_id ON dog_entity (id)
+  WHERE estimated_final_weight_min > 24;
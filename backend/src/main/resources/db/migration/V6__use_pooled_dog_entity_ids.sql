@@ -0,0 +1,8 @@
+-- Hibernate's pooled optimizer reserves blocks of 50 ids per sequence call, which lets it batch
+-- dog inserts. The column default still works for plain SQL inserts, but each of them calls the
+-- sequence too and so skips the other 49 ids of its block. Ids are therefore spent 50 times faster
+-- than dogs are inserted, which would exhaust an integer within about 43 million inserts, so the
+-- ids and the columns referencing them become bigint.
+ALTER TABLE dog_entity ALTER COLUMN id TYPE BIGINT;
+ALTER TABLE dog_image_urls ALTER COLUMN dog_id TYPE BIGINT;
+ALTER SEQUENCE dog_entity_id_seq AS BIGINT INCREMENT BY 50;
@@ -0,0 +1,6 @@
+CREATE TABLE crawl_state (
+  url           TEXT PRIMARY KEY,
+  etag          TEXT,
+  last_modified TEXT,
+  content_hash  TEXT NOT NULL
+);
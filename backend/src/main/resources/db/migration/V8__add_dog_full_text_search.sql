@@ -0,0 +1,19 @@
+CREATE EXTENSION IF NOT EXISTS unaccent;
+
+-- unaccent() is only STABLE because its dictionary could change, which rules it out for generated
+-- columns and indexes. Pinning the dictionary makes the wrapper safe to declare IMMUTABLE.
+CREATE OR REPLACE FUNCTION f_unaccent(text) RETURNS text
+  LANGUAGE sql IMMUTABLE PARALLEL SAFE STRICT
+  AS $$ SELECT public.unaccent('public.unaccent'::regdictionary, $1) $$;
+
+-- PostgreSQL ships no Czech stemmer, so words are indexed as they are, without accents, and
+-- searches match them by prefix. Name matches rank above breed matches, which rank above
+-- description matches.
+ALTER TABLE dog_entity
+  ADD COLUMN search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', f_unaccent(coalesce(name, ''))), 'A') ||
+    setweight(to_tsvector('simple', f_unaccent(coalesce(breed_guess, ''))), 'B') ||
+    setweight(to_tsvector('simple', f_unaccent(coalesce(description, ''))), 'C')
+  ) STORED;
+
+CREATE INDEX ix_dog_entity_search_vector ON dog_entity USING GIN (search_vector);
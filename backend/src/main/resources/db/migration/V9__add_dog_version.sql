@@ -0,0 +1,5 @@
+-- Bumped by every write of a dog, including changes to its image URLs; the ETag of a dog is its
+-- version, so conditional requests are answered without reading the row itself.
+ALTER TABLE dog_entity
+  ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+  ADD COLUMN updated_at TIMESTAMPTZ NOT NULL DEFAULT now();
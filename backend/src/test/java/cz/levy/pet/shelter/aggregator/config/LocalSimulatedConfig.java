@@ -1,22 +1,15 @@
 package cz.levy.pet.shelter.aggregator.config;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zaxxer.hikari.HikariDataSource;
-import cz.levy.pet.shelter.aggregator.dto.DogDto;
-import cz.levy.pet.shelter.aggregator.entity.DogEntity;
 import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
-import cz.levy.pet.shelter.aggregator.mapper.DogMapper;
-import cz.levy.pet.shelter.aggregator.repository.DogRepository;
 import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import cz.levy.pet.shelter.aggregator.service.DogSeedLoader;
 import java.awt.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
-import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
@@ -136,26 +129,18 @@ public class LocalSimulatedConfig implements WebMvcConfigurer {
   @Bean
   @DependsOn("dataSource")
   public CommandLineRunner loadSampleData(
-      DogRepository dogRepository, ShelterRepository shelterRepository) {
+      ShelterRepository shelterRepository, DogSeedLoader dogSeedLoader) {
     return args -> {
-      var shelter =
-          shelterRepository.save(
-              ShelterEntity.builder()
-                  .name("PesWeb.cz")
-                  .url("https://www.pesweb.cz/cz/psi-k-adopci")
-                  .isNonProfit(true)
-                  .build());
-      ObjectMapper mapper = new ObjectMapper();
+      // The first shelter of the fresh database gets id 1, which all dogs in dogs.json refer to.
+      shelterRepository.save(
+          ShelterEntity.builder()
+              .name("PesWeb.cz")
+              .url("https://www.pesweb.cz/cz/psi-k-adopci")
+              .isNonProfit(true)
+              .build());
       try (InputStream is = getClass().getResourceAsStream("/dogs.json")) {
-        List<DogDto> dtos = mapper.readValue(is, new TypeReference<>() {});
-
-        List<DogEntity> entities =
-            dtos.stream()
-                .map(dogDto -> DogMapper.dtoToEntity(dogDto, shelter))
-                .collect(Collectors.toList());
-
-        dogRepository.saveAll(entities);
-        System.out.println("Loaded " + entities.size() + " dogs from JSON");
+        var result = dogSeedLoader.load(is);
+        System.out.println("Loaded " + result.written() + " dogs from JSON");
       }
     };
   }
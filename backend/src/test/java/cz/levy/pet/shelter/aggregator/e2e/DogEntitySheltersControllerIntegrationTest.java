@@ -3,10 +3,29 @@ package cz.levy.pet.shelter.aggregator.e2e;
 import static cz.levy.pet.shelter.aggregator.utils.ResponseExtensions.performGetRequest;
 import static cz.levy.pet.shelter.aggregator.utils.ResponseExtensions.performRequest;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
-
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemResult;
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemStatus;
+import cz.levy.pet.shelter.aggregator.api.DogFacetsResponse;
 import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import cz.levy.pet.shelter.aggregator.api.DogSliceResponse;
+import cz.levy.pet.shelter.aggregator.api.DogUpsertBatchResponse;
+import cz.levy.pet.shelter.aggregator.api.DogUpsertResponse;
 import cz.levy.pet.shelter.aggregator.config.TestContainerConfig;
+import cz.levy.pet.shelter.aggregator.domain.AgeBracket;
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
 import cz.levy.pet.shelter.aggregator.entity.DogEntity;
 import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
 import cz.levy.pet.shelter.aggregator.error.RestErrorHandler;
@@ -15,16 +34,25 @@ import cz.levy.pet.shelter.aggregator.fixtures.builders.DogEntityTestFixtureBuil
 import cz.levy.pet.shelter.aggregator.fixtures.builders.DogRequestTestFixtureBuilder;
 import cz.levy.pet.shelter.aggregator.fixtures.builders.DogResponseTestFixtureBuilder;
 import cz.levy.pet.shelter.aggregator.fixtures.builders.ShelterEntityTestFixtureBuilder;
+import cz.levy.pet.shelter.aggregator.mapper.DogMapper;
 import cz.levy.pet.shelter.aggregator.repository.DogRepository;
 import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import cz.levy.pet.shelter.aggregator.service.DogFacetTotals;
+import cz.levy.pet.shelter.aggregator.service.DogIngestService;
+import cz.levy.pet.shelter.aggregator.service.DogQueryCache;
+import cz.levy.pet.shelter.aggregator.service.DogSheltersService;
 import cz.levy.pet.shelter.aggregator.utils.ResponseExtensions;
 import io.restassured.http.Method;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
+import jakarta.persistence.EntityManagerFactory;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 import lombok.Builder;
 import lombok.Data;
 import lombok.experimental.ExtensionMethod;
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -33,9 +61,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @Import(TestContainerConfig.class)
@@ -52,11 +89,25 @@ public class DogEntitySheltersControllerIntegrationTest {
 
   @Autowired private DogRepository dogRepository;
 
+  @Autowired private EntityManagerFactory entityManagerFactory;
+
+  @Autowired private DogQueryCache dogQueryCache;
+
+  @Autowired private DogFacetTotals dogFacetTotals;
+
+  @Autowired private DogSheltersService dogSheltersService;
+
+  @Autowired private DogIngestService dogIngestService;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
   @BeforeEach
   void setup() {
     RestAssuredMockMvc.mockMvc(mockMvc);
     dogRepository.deleteAll();
     shelterRepository.deleteAll();
+    dogQueryCache.invalidateAll();
+    dogFacetTotals.reset();
   }
 
   @Test
@@ -71,6 +122,133 @@ public class DogEntitySheltersControllerIntegrationTest {
     assertThat(dogRepository.findAll().size()).isEqualTo(1);
   }
 
+  @Test
+  public void createDogsCreatesValidDogsAndReportsEveryRejectedItem() {
+    var savedShelter = prepareSavedShelterEntity();
+    var existingDog = prepareSavedDogEntity(savedShelter);
+    var unknownShelterId = savedShelter.getId() + 1000;
+
+    var batchRequest =
+        List.of(
+            DogRequestTestFixtureBuilder.builder()
+                .withExternalId("batch dog")
+                .build()
+                .toDogRequest(savedShelter.getId()),
+            DogRequestTestFixtureBuilder.builder()
+                .withExternalId("invalid batch dog")
+                .withCurrentWeight(-10F)
+                .build()
+                .toDogRequest(savedShelter.getId()),
+            DogRequestTestFixtureBuilder.builder()
+                .withExternalId(existingDog.getExternalId())
+                .build()
+                .toDogRequest(savedShelter.getId()),
+            DogRequestTestFixtureBuilder.builder()
+                .withExternalId("homeless batch dog")
+                .build()
+                .toDogRequest(unknownShelterId));
+
+    var expectedResponse =
+        List.of(
+            new DogBatchItemResult(0, DogBatchItemStatus.CREATED, null, null),
+            new DogBatchItemResult(
+                1,
+                DogBatchItemStatus.INVALID,
+                null,
+                "Invalid request parameters: dogs[1].currentWeight must be greater than 0"),
+            new DogBatchItemResult(
+                2,
+                DogBatchItemStatus.DUPLICATE,
+                null,
+                "Dog already exists with externalId: "
+                    + existingDog.getExternalId()
+                    + " and shelterId: "
+                    + savedShelter.getId()),
+            new DogBatchItemResult(
+                3,
+                DogBatchItemStatus.SHELTER_NOT_FOUND,
+                null,
+                "Shelter not found with id: " + unknownShelterId));
+
+    performRequest(batchRequest, HttpStatus.OK, Method.POST, "/dogs/batch")
+        .assertThatResponseEqualsRecursive(expectedResponse, "internalId");
+
+    assertThat(dogRepository.findAll().size()).isEqualTo(2);
+  }
+
+  @Test
+  public void upsertDogsInsertsUpdatesAndSkipsUnchangedDogs() {
+    var savedShelter = prepareSavedShelterEntity();
+    var unchangedDog =
+        DogRequestTestFixtureBuilder.builder()
+            .withExternalId("unchanged dog")
+            .build()
+            .toDogRequest(savedShelter.getId());
+    var renamedDog = DogRequestTestFixtureBuilder.builder().withExternalId("renamed dog").build();
+    var reimagedDog = DogRequestTestFixtureBuilder.builder().withExternalId("reimaged dog").build();
+    performRequest(
+        List.of(
+            unchangedDog,
+            renamedDog.toDogRequest(savedShelter.getId()),
+            reimagedDog.toDogRequest(savedShelter.getId())),
+        HttpStatus.OK,
+        Method.PUT,
+        "/dogs/by-external/batch");
+
+    renamedDog.setName("new name");
+    reimagedDog.setImageUrls(List.of("some-image.jpg", "other-image.jpg"));
+    var batchRequest =
+        List.of(
+            unchangedDog,
+            renamedDog.toDogRequest(savedShelter.getId()),
+            reimagedDog.toDogRequest(savedShelter.getId()),
+            DogRequestTestFixtureBuilder.builder()
+                .withExternalId("new dog")
+                .build()
+                .toDogRequest(savedShelter.getId()));
+
+    var response =
+        performRequest(batchRequest, HttpStatus.OK, Method.PUT, "/dogs/by-external/batch")
+            .extract()
+            .as(DogUpsertBatchResponse.class);
+
+    assertThat(response.inserted()).isEqualTo(1);
+    assertThat(response.updated()).isEqualTo(2);
+    assertThat(response.unchanged()).isEqualTo(1);
+    assertThat(response.items().stream().map(DogBatchItemResult::status).toList())
+        .isEqualTo(
+            List.of(
+                DogBatchItemStatus.UNCHANGED,
+                DogBatchItemStatus.UPDATED,
+                DogBatchItemStatus.UPDATED,
+                DogBatchItemStatus.INSERTED));
+    assertThat(dogRepository.findAll().size()).isEqualTo(4);
+  }
+
+  @Test
+  public void upsertDogReturns201WhenInsertingAnd200WhenUpdating() {
+    var savedShelter = prepareSavedShelterEntity();
+    var request =
+        DogRequestTestFixtureBuilder.builder()
+            .withExternalId("upserted dog")
+            .build()
+            .toDogRequest(savedShelter.getId());
+    var url = "/dogs/by-external/{shelterId}/{externalId}";
+
+    performRequest(
+        request, HttpStatus.CREATED, Method.PUT, url, savedShelter.getId(), "upserted dog");
+    var response =
+        performRequest(
+                request, HttpStatus.OK, Method.PUT, url, savedShelter.getId(), "upserted dog")
+            .extract()
+            .as(DogUpsertResponse.class);
+    assertThat(response.status()).isEqualTo(DogBatchItemStatus.UNCHANGED);
+    performRequest(
+        request, HttpStatus.BAD_REQUEST, Method.PUT, url, savedShelter.getId(), "other dog");
+
+    assertThat(dogRepository.findAll().size()).isEqualTo(1);
+  }
+
   @ParameterizedTest(name = "{0}")
   @MethodSource("invalidCreateDogCases")
   public void createDogWithInvalidInputReturnsAppropriateError(InvalidCreateDogCase caseData) {
@@ -137,6 +315,54 @@ public class DogEntitySheltersControllerIntegrationTest {
                 caseData.expectedStatus.name(), expectedErrorMessage));
   }
 
+  @Test
+  public void patchDogChangesOnlyThePatchedFields() {
+    var savedShelter = prepareSavedShelterEntity();
+    var savedDog = prepareSavedDogEntity(savedShelter);
+    var patch =
+        """
+        {"name": "patched name", "description": null, "imageUrls": ["new.jpg", "some-image.jpg"]}
+        """;
+
+    performRequest(
+        patch, HttpStatus.NO_CONTENT, Method.PATCH, "/dogs/{internalId}", savedDog.getId());
+
+    var expectedResponse =
+        DogResponseTestFixtureBuilder.builder()
+            .withInternalId(savedDog.getId())
+            .withDogRequest(
+                DogRequestTestFixtureBuilder.builder()
+                    .withName("patched name")
+                    .withDescription(null)
+                    .withImageUrls(List.of("new.jpg", "some-image.jpg"))
+                    .build()
+                    .toDogRequest(savedShelter.getId()))
+            .build()
+            .toDogResponse();
+    performGetRequest(HttpStatus.OK, "/dogs/{internalId}", savedDog.getId())
+        .assertThatResponseEqualsRecursive(expectedResponse);
+  }
+
+  @Test
+  public void patchDogRejectsPatchesLeavingAnInvalidDog() {
+    var savedShelter = prepareSavedShelterEntity();
+    var savedDog = prepareSavedDogEntity(savedShelter);
+
+    performRequest(
+            """
+            {"sex": null}
+            """,
+            HttpStatus.BAD_REQUEST,
+            Method.PATCH,
+            "/dogs/{internalId}",
+            savedDog.getId())
+        .assertThatResponseEqualsRecursive(
+            new RestErrorHandler.ErrorResponse(
+                HttpStatus.BAD_REQUEST.name(),
+                "Invalid request parameters: dog.sex must not be null"));
+    assertThat(dogRepository.findById(savedDog.getId()).orElseThrow().getSex()).isEqualTo(Sex.MALE);
+  }
+
   @Test
   public void deleteDogDeletesADogEntityFromDogRepositoryAndReturnsStatusCode200() {
     var savedShelter = prepareSavedShelterEntity();
@@ -201,6 +427,481 @@ public class DogEntitySheltersControllerIntegrationTest {
         .assertThatResponseEqualsRecursive(expectedResponse);
   }
 
+  @Test
+  public void getAllDogsReadsThePageWithItsImageUrlsInOneQuery() {
+    var savedShelter = prepareSavedShelterEntity();
+    for (int i = 0; i < 5; i++) {
+      prepareSavedDogEntity(
+          savedShelter,
+          DogEntityTestFixtureBuilder.builder()
+              .withExternalId("external id " + i)
+              .withImageUrls(List.of("first-" + i + ".jpg", "second-" + i + ".jpg"))
+              .build()
+              .toDogEntity(savedShelter));
+    }
+    var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    performRequest(null, HttpStatus.OK, Method.GET, "/dogs");
+
+    // Image URLs are a column of the dog row and shelters are not loaded.
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void getOneDogLoadsTheDogAndItsImageUrlsInOneQuery() {
+    var savedShelter = prepareSavedShelterEntity();
+    var savedDog = prepareSavedDogEntity(savedShelter);
+    var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    performGetRequest(HttpStatus.OK, "/dogs/{internalId}", savedDog.getId());
+
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void getOneDogAnswersRevalidationsFromTheVersionAlone() throws Exception {
+    var savedShelter = prepareSavedShelterEntity();
+    var savedDog = prepareSavedDogEntity(savedShelter);
+    var firstResponse =
+        mockMvc
+            .perform(get("/dogs/{internalId}", savedDog.getId()))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse();
+    var eTag = firstResponse.getHeader(HttpHeaders.ETAG);
+    var lastModified = firstResponse.getHeader(HttpHeaders.LAST_MODIFIED);
+    var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    mockMvc
+        .perform(
+            get("/dogs/{internalId}", savedDog.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+        .andExpect(status().isNotModified());
+    mockMvc
+        .perform(
+            get("/dogs/{internalId}", savedDog.getId())
+                .header(HttpHeaders.IF_MODIFIED_SINCE, lastModified))
+        .andExpect(status().isNotModified());
+
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+    performRequest(
+        DogRequestTestFixtureBuilder.builder()
+            .withName("renamed")
+            .build()
+            .toDogRequest(savedShelter.getId()),
+        HttpStatus.NO_CONTENT,
+        Method.PUT,
+        "/dogs/{internalId}",
+        savedDog.getId());
+    var newETag =
+        mockMvc
+            .perform(
+                get("/dogs/{internalId}", savedDog.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+    assertThat(newETag).isNotEqualTo(eTag);
+  }
+
+  @Test
+  public void writesHonourIfMatchAndConflictWithConcurrentUpserts() throws Exception {
+    var savedShelter = prepareSavedShelterEntity();
+    var savedDog = prepareSavedDogEntity(savedShelter);
+    var eTag =
+        mockMvc
+            .perform(get("/dogs/{internalId}", savedDog.getId()))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+    var renamed =
+        objectMapper.writeValueAsString(
+            DogRequestTestFixtureBuilder.builder()
+                .withName("renamed")
+                .build()
+                .toDogRequest(savedShelter.getId()));
+
+    mockMvc
+        .perform(
+            put("/dogs/{internalId}", savedDog.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "W/" + eTag)
+                .content(renamed))
+        .andExpect(status().isPreconditionFailed());
+    mockMvc
+        .perform(
+            put("/dogs/{internalId}", savedDog.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .content(renamed))
+        .andExpect(status().isNoContent());
+    mockMvc
+        .perform(
+            put("/dogs/{internalId}", savedDog.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .content(renamed))
+        .andExpect(status().isPreconditionFailed());
+
+    var cborETag =
+        mockMvc
+            .perform(get("/dogs/{internalId}", savedDog.getId()).accept(MediaType.APPLICATION_CBOR))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+    mockMvc
+        .perform(
+            patch("/dogs/{internalId}", savedDog.getId())
+                .contentType("application/merge-patch+json")
+                .header(HttpHeaders.IF_MATCH, "\"41\", " + cborETag)
+                .content(
+                    """
+                    {"name": "patched"}
+                    """))
+        .andExpect(status().isNoContent());
+    assertThat(dogRepository.findById(savedDog.getId()).orElseThrow().getName())
+        .isEqualTo("patched");
+
+    // An upsert committing between the read and the write of an update must not be overwritten.
+    var upsert =
+        DogMapper.requestToDto(
+            DogRequestTestFixtureBuilder.builder()
+                .withName("upserted")
+                .build()
+                .toDogRequest(savedShelter.getId()));
+    var requiresNew = new TransactionTemplate(transactionManager);
+    requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    assertThatThrownBy(
+            () ->
+                dogSheltersService.patchDog(
+                    savedDog.getId(),
+                    dogDto -> {
+                      requiresNew.executeWithoutResult(_ -> dogIngestService.upsertDog(upsert));
+                      dogDto.setName("lost update");
+                      return dogDto;
+                    }))
+        .isInstanceOf(OptimisticLockingFailureException.class);
+    assertThat(dogRepository.findById(savedDog.getId()).orElseThrow().getName())
+        .isEqualTo("upserted");
+  }
+
+  @Test
+  public void updateDogEvictsOnlyCachedQueriesThatCanContainTheDog() {
+    var savedShelter = prepareSavedShelterEntity();
+    var maleDog = prepareSavedDogEntity(savedShelter);
+    prepareSavedDogEntity(
+        savedShelter,
+        DogEntityTestFixtureBuilder.builder()
+            .withExternalId("female dog")
+            .withSex(Sex.FEMALE)
+            .build()
+            .toDogEntity(savedShelter));
+    performGetRequest(HttpStatus.OK, "/dogs/{internalId}", maleDog.getId());
+    performGetRequest(HttpStatus.OK, "/dogs?sex=MALE");
+    performGetRequest(HttpStatus.OK, "/dogs?sex=FEMALE");
+
+    performRequest(
+        DogRequestTestFixtureBuilder.builder()
+            .withName("renamed dog")
+            .build()
+            .toDogRequest(savedShelter.getId()),
+        HttpStatus.NO_CONTENT,
+        Method.PUT,
+        "/dogs/{internalId}",
+        maleDog.getId());
+    var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+
+    performGetRequest(HttpStatus.OK, "/dogs?sex=FEMALE");
+    assertThat(statistics.getPrepareStatementCount()).isEqualTo(0);
+
+    var maleDogs =
+        performGetRequest(HttpStatus.OK, "/dogs?sex=MALE").extract().as(DogResponse[].class);
+    assertThat(maleDogs[0].dogInfo().getName()).isEqualTo("renamed dog");
+    var dog =
+        performGetRequest(HttpStatus.OK, "/dogs/{internalId}", maleDog.getId())
+            .extract()
+            .as(DogResponse.class);
+    assertThat(dog.dogInfo().getName()).isEqualTo("renamed dog");
+  }
+
+  @Test
+  public void exportDogsStreamsMatchingDogsAsNdjsonInIdOrder() throws Exception {
+    var savedShelter = prepareSavedShelterEntity();
+    var firstDog = prepareSavedDogEntity(savedShelter);
+    prepareSavedDogEntity(
+        savedShelter,
+        DogEntityTestFixtureBuilder.builder()
+            .withExternalId("female dog")
+            .withSex(Sex.FEMALE)
+            .build()
+            .toDogEntity(savedShelter));
+    var secondDog =
+        prepareSavedDogEntity(
+            savedShelter,
+            DogEntityTestFixtureBuilder.builder()
+                .withExternalId("second male dog")
+                .withImageUrls(List.of())
+                .build()
+                .toDogEntity(savedShelter));
+
+    var asyncResult =
+        mockMvc
+            .perform(get("/dogs/export").param("sex", "MALE"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    var body =
+        mockMvc
+            .perform(asyncDispatch(asyncResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    var exportedDogs = new ArrayList<DogResponse>();
+    for (var line : body.split("\n")) {
+      exportedDogs.add(objectMapper.readValue(line, DogResponse.class));
+    }
+    assertThat(exportedDogs)
+        .usingRecursiveComparison()
+        .isEqualTo(
+            List.of(DogMapper.entityToResponse(firstDog), DogMapper.entityToResponse(secondDog)));
+  }
+
+  @Test
+  public void dogEndpointsNegotiateCborAndSmileWithFormatSpecificValidators() throws Exception {
+    var savedShelter = prepareSavedShelterEntity();
+    var expectedDogs = List.of(DogMapper.entityToResponse(prepareSavedDogEntity(savedShelter)));
+    var cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+    var smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+
+    var cborPage =
+        mockMvc
+            .perform(get("/dogs").accept(MediaType.APPLICATION_CBOR))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+    var smilePage =
+        mockMvc
+            .perform(get("/dogs").accept("application/x-jackson-smile"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-jackson-smile"))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+    var asyncResult =
+        mockMvc
+            .perform(get("/dogs/export").accept("application/cbor-seq"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    var cborExport =
+        mockMvc
+            .perform(asyncDispatch(asyncResult))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/cbor-seq"))
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+
+    var internalId = expectedDogs.getFirst().internalId();
+    var jsonETag =
+        mockMvc
+            .perform(get("/dogs/{internalId}", internalId))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+    var cborDog =
+        mockMvc
+            .perform(
+                get("/dogs/{internalId}", internalId)
+                    .accept(MediaType.APPLICATION_CBOR)
+                    .header(HttpHeaders.IF_NONE_MATCH, jsonETag))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+            .andReturn()
+            .getResponse();
+    mockMvc
+        .perform(
+            get("/dogs/{internalId}", internalId)
+                .accept(MediaType.APPLICATION_CBOR)
+                .header(HttpHeaders.IF_NONE_MATCH, cborDog.getHeader(HttpHeaders.ETAG)))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+
+    assertThat(cborDog.getHeader(HttpHeaders.ETAG)).isNotEqualTo(jsonETag);
+    assertThat(cborMapper.readValue(cborDog.getContentAsByteArray(), DogResponse.class))
+        .usingRecursiveComparison()
+        .isEqualTo(expectedDogs.getFirst());
+    assertThat(cborMapper.readValue(cborPage, new TypeReference<List<DogResponse>>() {}))
+        .usingRecursiveComparison()
+        .isEqualTo(expectedDogs);
+    assertThat(smileMapper.readValue(smilePage, new TypeReference<List<DogResponse>>() {}))
+        .usingRecursiveComparison()
+        .isEqualTo(expectedDogs);
+    assertThat(cborMapper.readerFor(DogResponse.class).readValues(cborExport).readAll())
+        .usingRecursiveComparison()
+        .isEqualTo(expectedDogs);
+  }
+
+  @Test
+  public void searchDogsMatchesAccentInsensitivePrefixesAndPagesByRank() {
+    var savedShelter = prepareSavedShelterEntity();
+    var rex =
+        prepareSavedDogEntity(
+            savedShelter,
+            DogEntityTestFixtureBuilder.builder()
+                .withExternalId("rex")
+                .withName("Rex")
+                .withDescription("Kamarád pro čerta i anděla")
+                .build()
+                .toDogEntity(savedShelter));
+    var cert =
+        prepareSavedDogEntity(
+            savedShelter,
+            DogEntityTestFixtureBuilder.builder()
+                .withExternalId("cert")
+                .withName("Čert")
+                .withBreedGuess("kříženec")
+                .build()
+                .toDogEntity(savedShelter));
+    prepareSavedDogEntity(
+        savedShelter,
+        DogEntityTestFixtureBuilder.builder()
+            .withExternalId("certice")
+            .withName("Čertice")
+            .withSex(Sex.FEMALE)
+            .build()
+            .toDogEntity(savedShelter));
+
+    var firstSlice =
+        performGetRequest(HttpStatus.OK, "/dogs?q=CERT&sex=MALE&size=1")
+            .extract()
+            .as(DogSliceResponse.class);
+    var secondSlice =
+        performGetRequest(
+                HttpStatus.OK,
+                "/dogs?q=CERT&sex=MALE&size=1&cursor={cursor}",
+                firstSlice.nextCursor())
+            .extract()
+            .as(DogSliceResponse.class);
+
+    assertThat(firstSlice.dogs())
+        .usingRecursiveComparison()
+        .isEqualTo(List.of(DogMapper.entityToResponse(cert)));
+    assertThat(secondSlice.dogs())
+        .usingRecursiveComparison()
+        .isEqualTo(List.of(DogMapper.entityToResponse(rex)));
+    assertThat(secondSlice.nextCursor()).isNull();
+    assertThat(
+            performGetRequest(HttpStatus.OK, "/dogs?q=krizen")
+                .extract()
+                .as(DogSliceResponse.class)
+                .dogs()
+                .size())
+        .isEqualTo(1);
+    performGetRequest(HttpStatus.BAD_REQUEST, "/dogs?q=!!");
+  }
+
+  @Test
+  public void getFacetsCountsFilteredDogsAndKeepsTotalsUpToDateOnWrites() {
+    var savedShelter = prepareSavedShelterEntity();
+    var maleDog = prepareSavedDogEntity(savedShelter);
+    prepareSavedDogEntity(
+        savedShelter,
+        DogEntityTestFixtureBuilder.builder()
+            .withExternalId("female puppy")
+            .withSex(Sex.FEMALE)
+            .withEstimatedAgeInYears(0.5F)
+            .withEstimatedFinalWeightMin(25F)
+            .withEstimatedFinalWeightMax(30F)
+            .build()
+            .toDogEntity(savedShelter));
+
+    var facets =
+        performGetRequest(HttpStatus.OK, "/dogs/facets").extract().as(DogFacetsResponse.class);
+    assertThat(facets)
+        .isEqualTo(
+            new DogFacetsResponse(
+                2,
+                Map.of(Sex.MALE, 1L, Sex.FEMALE, 1L, Sex.UNKNOWN, 0L),
+                Map.of(DogSize.SMALL, 1L, DogSize.MEDIUM, 0L, DogSize.LARGE, 1L),
+                Map.of(
+                    AgeBracket.PUPPY, 1L,
+                    AgeBracket.YOUNG, 0L,
+                    AgeBracket.ADULT, 0L,
+                    AgeBracket.SENIOR, 1L)));
+
+    performRequest(
+        DogRequestTestFixtureBuilder.builder()
+            .withSex(Sex.FEMALE)
+            .build()
+            .toDogRequest(savedShelter.getId()),
+        HttpStatus.NO_CONTENT,
+        Method.PUT,
+        "/dogs/{internalId}",
+        maleDog.getId());
+
+    var totals =
+        performGetRequest(HttpStatus.OK, "/dogs/facets").extract().as(DogFacetsResponse.class);
+    assertThat(totals.sex()).isEqualTo(Map.of(Sex.MALE, 0L, Sex.FEMALE, 2L, Sex.UNKNOWN, 0L));
+    var smallDogs =
+        performGetRequest(HttpStatus.OK, "/dogs/facets?dogSize=SMALL")
+            .extract()
+            .as(DogFacetsResponse.class);
+    assertThat(smallDogs.total()).isEqualTo(1);
+    assertThat(smallDogs.ageBracket().get(AgeBracket.SENIOR)).isEqualTo(1L);
+    assertThat(smallDogs.ageBracket().get(AgeBracket.PUPPY)).isEqualTo(0L);
+
+    performRequest(
+        null, HttpStatus.NO_CONTENT, Method.DELETE, "/dogs/{internalId}", maleDog.getId());
+    assertThat(
+            performGetRequest(HttpStatus.OK, "/dogs/facets")
+                .extract()
+                .as(DogFacetsResponse.class)
+                .total())
+        .isEqualTo(1);
+  }
+
+  @Test
+  public void facetTotalsLoadedBetweenACommitAndItsEventCountTheWriteOnce() {
+    var savedShelter = prepareSavedShelterEntity();
+    prepareSavedDogEntity(savedShelter);
+
+    // The totals are first loaded after the write commits but before its event is delivered.
+    var secondDog =
+        new TransactionTemplate(transactionManager)
+            .execute(
+                _ -> {
+                  TransactionSynchronizationManager.registerSynchronization(
+                      new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                          dogFacetTotals.get();
+                        }
+                      });
+                  return dogSheltersService.saveDog(
+                      DogMapper.requestToDto(
+                          DogRequestTestFixtureBuilder.builder()
+                              .withExternalId("second dog")
+                              .build()
+                              .toDogRequest(savedShelter.getId())));
+                });
+
+    assertThat(dogFacetTotals.get().total()).isEqualTo(2);
+    dogSheltersService.deleteDog(secondDog.getId());
+    assertThat(dogFacetTotals.get().total()).isEqualTo(1);
+  }
+
   private ShelterEntity prepareSavedShelterEntity() {
     var shelter = ShelterEntityTestFixtureBuilder.builder().build().toShelterEntity();
     return shelterRepository.save(shelter);
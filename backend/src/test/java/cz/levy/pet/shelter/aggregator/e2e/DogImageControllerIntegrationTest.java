@@ -0,0 +1,212 @@
+package cz.levy.pet.shelter.aggregator.e2e;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import cz.levy.pet.shelter.aggregator.config.TestContainerConfig;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.fixtures.builders.DogEntityTestFixtureBuilder;
+import cz.levy.pet.shelter.aggregator.fixtures.builders.ShelterEntityTestFixtureBuilder;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import cz.levy.pet.shelter.aggregator.service.DogQueryCache;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(TestContainerConfig.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class DogImageControllerIntegrationTest {
+  @TempDir static Path imageCacheDir;
+
+  @Autowired private MockMvc mockMvc;
+  @Autowired private DogRepository dogRepository;
+  @Autowired private ShelterRepository shelterRepository;
+  @Autowired private DogQueryCache dogQueryCache;
+
+  private final AtomicInteger originRequests = new AtomicInteger();
+  private HttpServer origin;
+  private byte[] originImage;
+
+  @DynamicPropertySource
+  static void imageProperties(DynamicPropertyRegistry registry) {
+    registry.add("images.cache-dir", () -> imageCacheDir.toString());
+    registry.add("images.widths", () -> "100,300");
+    registry.add("images.allowed-hosts", () -> "localhost");
+    registry.add("images.max-pixels", () -> "100000");
+  }
+
+  @BeforeEach
+  void setup() throws IOException {
+    dogRepository.deleteAll();
+    shelterRepository.deleteAll();
+    dogQueryCache.invalidateAll();
+
+    originImage = png(400, 200);
+    origin = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    origin.createContext("/", this::serveOrigin);
+    origin.start();
+  }
+
+  @AfterEach
+  void stopOrigin() {
+    origin.stop(0);
+  }
+
+  @Test
+  public void getImageFetchesTheOriginOnceAndServesCachedThumbnails() throws Exception {
+    var dog = prepareSavedDog("/dog.png");
+
+    var thumbnail =
+        mockMvc
+            .perform(get("/dogs/{internalId}/images/0", dog.getId()).param("w", "80"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/jpeg"))
+            .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=86400, public"))
+            .andReturn()
+            .getResponse();
+    var etag = thumbnail.getHeader(HttpHeaders.ETAG);
+    assertThat(ImageIO.read(new ByteArrayInputStream(thumbnail.getContentAsByteArray())).getWidth())
+        .isEqualTo(100);
+
+    mockMvc
+        .perform(get("/dogs/{internalId}/images/0", dog.getId()).param("w", "100"))
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, etag));
+    mockMvc
+        .perform(
+            get("/dogs/{internalId}/images/0", dog.getId())
+                .param("w", "100")
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+        .andExpect(status().isNotModified());
+    var original =
+        mockMvc
+            .perform(get("/dogs/{internalId}/images/0", dog.getId()))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "image/png"))
+            .andReturn()
+            .getResponse();
+
+    assertThat(original.getContentAsByteArray()).isEqualTo(originImage);
+    assertThat(originRequests.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void getImageReportsMissingImagesAndFailingOrigins() throws Exception {
+    var dog = prepareSavedDog("/missing.png");
+
+    mockMvc
+        .perform(get("/dogs/{internalId}/images/1", dog.getId()))
+        .andExpect(status().isNotFound());
+    mockMvc
+        .perform(get("/dogs/{internalId}/images/0", dog.getId()))
+        .andExpect(status().isBadGateway());
+  }
+
+  @Test
+  public void getImageOnlyFetchesFromAllowedHostsAcrossRedirects() throws Exception {
+    var allowedRedirect = prepareSavedDog("/redirect-to-dog.png");
+    var otherHost = prepareSavedDog("127.0.0.1", "/dog.png");
+    var redirectToOtherHost = prepareSavedDog("/redirect-elsewhere.png");
+
+    mockMvc
+        .perform(get("/dogs/{internalId}/images/0", allowedRedirect.getId()))
+        .andExpect(status().isOk());
+    mockMvc
+        .perform(get("/dogs/{internalId}/images/0", otherHost.getId()))
+        .andExpect(status().isBadGateway());
+    mockMvc
+        .perform(get("/dogs/{internalId}/images/0", redirectToOtherHost.getId()))
+        .andExpect(status().isBadGateway());
+
+    // The redirect, the image it leads to, and the redirect away from localhost.
+    assertThat(originRequests.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void getImageRefusesImagesWithTooManyPixelsBeforeDecodingThem() throws Exception {
+    var dog = prepareSavedDog("/huge.png");
+
+    mockMvc
+        .perform(get("/dogs/{internalId}/images/0", dog.getId()).param("w", "100"))
+        .andExpect(status().isBadGateway());
+    mockMvc
+        .perform(get("/dogs/{internalId}/images/0", dog.getId()))
+        .andExpect(status().isBadGateway());
+  }
+
+  private DogEntity prepareSavedDog(String imagePath) {
+    return prepareSavedDog("localhost", imagePath);
+  }
+
+  private DogEntity prepareSavedDog(String host, String imagePath) {
+    var shelter =
+        shelterRepository.save(ShelterEntityTestFixtureBuilder.builder().build().toShelterEntity());
+    var imageUrl = "http://" + host + ":" + origin.getAddress().getPort() + imagePath;
+    return dogRepository.save(
+        DogEntityTestFixtureBuilder.builder()
+            .withImageUrls(List.of(imageUrl))
+            .build()
+            .toDogEntity(shelter));
+  }
+
+  private void serveOrigin(HttpExchange exchange) throws IOException {
+    originRequests.incrementAndGet();
+    try (exchange) {
+      var port = origin.getAddress().getPort();
+      var image =
+          switch (exchange.getRequestURI().getPath()) {
+            case "/dog.png" -> originImage;
+            case "/huge.png" -> png(1000, 1000);
+            case "/redirect-to-dog.png" -> redirect(exchange, "/dog.png");
+            case "/redirect-elsewhere.png" ->
+                redirect(exchange, "http://127.0.0.1:" + port + "/dog.png");
+            default -> null;
+          };
+      if (image == null) {
+        exchange.sendResponseHeaders(404, -1);
+      } else if (image.length > 0) {
+        exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, "image/png");
+        exchange.sendResponseHeaders(200, image.length);
+        exchange.getResponseBody().write(image);
+      }
+    }
+  }
+
+  private static byte[] redirect(HttpExchange exchange, String location) throws IOException {
+    exchange.getResponseHeaders().set(HttpHeaders.LOCATION, location);
+    exchange.sendResponseHeaders(302, -1);
+    return new byte[0];
+  }
+
+  private static byte[] png(int width, int height) throws IOException {
+    var output = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", output);
+    return output.toByteArray();
+  }
+}
@@ -0,0 +1,243 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cz.levy.pet.shelter.aggregator.config.TestContainerConfig;
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.domain.SortField;
+import cz.levy.pet.shelter.aggregator.service.DogSheltersService;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+            + "cz.levy.pet.shelter.aggregator.repository.DogIndexUsageIntegrationTest$CapturedSql")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(TestContainerConfig.class)
+@ActiveProfiles("test")
+public class DogIndexUsageIntegrationTest {
+  private static final int PAGE_SIZE = 100;
+  private static final List<DogFilter> FILTERS =
+      List.of(
+          new DogFilter(null, null, null, null),
+          new DogFilter(3F, null, null, null),
+          new DogFilter(null, 2F, null, null),
+          new DogFilter(3F, 5F, null, null),
+          new DogFilter(null, null, Sex.FEMALE, null),
+          new DogFilter(8F, null, Sex.MALE, null),
+          new DogFilter(null, null, null, DogSize.SMALL),
+          new DogFilter(null, null, null, DogSize.MEDIUM),
+          new DogFilter(null, null, null, DogSize.LARGE),
+          new DogFilter(null, null, Sex.MALE, DogSize.SMALL));
+
+  @Autowired private JdbcTemplate jdbcTemplate;
+  @Autowired private DogSheltersService dogSheltersService;
+  @Autowired private DogRepository dogRepository;
+  @Autowired private ShelterRepository shelterRepository;
+
+  @BeforeAll
+  void seedDatabase() {
+    dogRepository.deleteAll();
+    shelterRepository.deleteAll();
+
+    jdbcTemplate.update("INSERT INTO shelter_entity (name) VALUES ('Index Shelter')");
+    jdbcTemplate.update(
+        """
+        INSERT INTO dog_entity (
+          external_id, name, sex, estimated_age_in_years, current_weight,
+          estimated_final_weight_min, estimated_final_weight_max, shelter_id
+        )
+        SELECT
+          'index-dog-' || i,
+          'Dog ' || md5(i::text),
+          (ARRAY['MALE', 'FEMALE', 'UNKNOWN'])[1 + i % 3],
+          CASE WHEN i % 10 = 0 THEN NULL ELSE (i % 150) / 10.0 END,
+          CASE WHEN i % 7 = 0 THEN NULL ELSE (i % 60) END,
+          CASE WHEN i % 9 = 0 THEN NULL ELSE (i % 50) END,
+          CASE WHEN i % 9 = 0 THEN NULL ELSE (i % 50) + 5 END,
+          (SELECT id FROM shelter_entity WHERE name = 'Index Shelter')
+        FROM generate_series(1, 20000) AS s(i)
+        """);
+    jdbcTemplate.execute("ANALYZE dog_entity");
+  }
+
+  @AfterAll
+  void cleanDatabase() {
+    dogRepository.deleteAll();
+    shelterRepository.deleteAll();
+  }
+
+  @ParameterizedTest(name = "{0}")
+  @MethodSource("filterAndSortCases")
+  void filterAndSortCombinationUsesItsIndex(QueryCase queryCase) {
+    var sql = listingSql(queryCase);
+    var plan = explain(sql);
+    var expectedIndexes = queryCase.expectedIndexes();
+
+    assertThat(plan)
+        .as(sql + "\n" + String.join("\n", plan))
+        .noneMatch(line -> line.contains("Seq Scan"))
+        .as("one of " + expectedIndexes + " in\n" + sql + "\n" + String.join("\n", plan))
+        .anyMatch(line -> expectedIndexes.stream().anyMatch(index -> line.contains(" " + index)));
+  }
+
+  // The size bucket indexes are partial, so only bucket bounds rendered as literals match them.
+  @ParameterizedTest
+  @EnumSource(DogSize.class)
+  void sizeFilterUsesItsBucketIndex(DogSize size) {
+    var sql =
+        listingSql(
+            new QueryCase(new DogFilter(null, null, null, size), SortField.ID, Sort.Direction.ASC));
+    var plan = explain(sql);
+
+    assertThat(plan)
+        .as(sql + "\n" + String.join("\n", plan))
+        .anyMatch(line -> line.contains("ix_dog_entity_size_" + size.name().toLowerCase() + "_id"));
+  }
+
+  static Stream<QueryCase> filterAndSortCases() {
+    var cases = new ArrayList<QueryCase>();
+    for (var filter : FILTERS) {
+      for (var sort : SortField.values()) {
+        for (var order : Sort.Direction.values()) {
+          cases.add(new QueryCase(filter, sort, order));
+        }
+      }
+    }
+    return cases.stream();
+  }
+
+  // Lists the first page the way GET /dogs/cursor does and returns the statement Hibernate
+  // generated for it.
+  private String listingSql(QueryCase queryCase) {
+    var filter = queryCase.filter();
+    CapturedSql.STATEMENTS.clear();
+    dogSheltersService.getDogsAfterCursor(
+        null,
+        queryCase.sort(),
+        queryCase.order(),
+        PAGE_SIZE,
+        filter.ageMin(),
+        filter.ageMax(),
+        filter.sex(),
+        filter.dogSize());
+    return CapturedSql.STATEMENTS.stream()
+        .filter(sql -> sql.contains("from dog_entity") && sql.contains("order by"))
+        .findFirst()
+        .orElseThrow();
+  }
+
+  // With sequential scans disabled the planner still picks one when no index can serve the query,
+  // so a "Seq Scan" node in the plan means the query is missing an index. The plan is the generic
+  // one that PostgreSQL caches for prepared statements, which cannot depend on the bound values,
+  // so that values bound as parameters can be told apart from literals.
+  private List<String> explain(String sql) {
+    var parameters = 0;
+    var numbered = new StringBuilder();
+    for (var character : sql.toCharArray()) {
+      if (character == '?') {
+        numbered.append('$').append(++parameters);
+      } else {
+        numbered.append(character);
+      }
+    }
+    var nulls = String.join(", ", Collections.nCopies(parameters, "NULL"));
+    return jdbcTemplate.execute(
+        (ConnectionCallback<List<String>>)
+            connection -> {
+              try (var statement = connection.createStatement()) {
+                statement.execute("SET enable_seqscan = off");
+                statement.execute("SET plan_cache_mode = force_generic_plan");
+                statement.execute("PREPARE listing AS " + numbered);
+                var plan = new ArrayList<String>();
+                try (ResultSet resultSet =
+                    statement.executeQuery("EXPLAIN EXECUTE listing(" + nulls + ")")) {
+                  while (resultSet.next()) {
+                    plan.add(resultSet.getString(1));
+                  }
+                }
+                statement.execute("DEALLOCATE listing");
+                statement.execute("RESET plan_cache_mode");
+                statement.execute("RESET enable_seqscan");
+                return plan;
+              }
+            });
+  }
+
+  /** Keeps the statements Hibernate prepares. */
+  public static class CapturedSql implements StatementInspector {
+    static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+      STATEMENTS.add(sql);
+      return sql;
+    }
+  }
+
+  record QueryCase(DogFilter filter, SortField sort, Sort.Direction order) {
+    // The planner may walk the index of the sort ordering and filter the rows it reads, or read the
+    // rows matching a filter through the filter's index and sort them, so either index is expected.
+    // A plan that walks the primary key for any other ordering means an index is missing.
+    Set<String> expectedIndexes() {
+      var indexes = new HashSet<String>();
+      indexes.add(sortIndex());
+      if (filter.ageMin() != null || filter.ageMax() != null) {
+        indexes.add(
+            filter.sex() == null
+                ? "ix_dog_entity_estimated_age_id"
+                : "ix_dog_entity_sex_estimated_age_id");
+      } else if (filter.sex() != null) {
+        indexes.add("ix_dog_entity_sex_id");
+      }
+      if (filter.dogSize() != null) {
+        indexes.add("ix_dog_entity_size_" + filter.dogSize().name().toLowerCase() + "_id");
+      }
+      return indexes;
+    }
+
+    private String sortIndex() {
+      return switch (sort) {
+        case ID -> "dog_entity_pkey";
+        case NAME -> "ix_dog_entity_name_id";
+        case ESTIMATED_AGE ->
+            filter.sex() == null
+                ? "ix_dog_entity_estimated_age_id"
+                : "ix_dog_entity_sex_estimated_age_id";
+        case CURRENT_WEIGHT -> "ix_dog_entity_current_weight_id";
+        case ESTIMATED_FINAL_WEIGHT_MIN -> "ix_dog_entity_final_weight_min_id";
+        case ESTIMATED_FINAL_WEIGHT_MAX -> "ix_dog_entity_final_weight_max_id";
+        case SHELTER_ID -> "ix_dog_entity_shelter_id_id";
+      };
+    }
+
+    @Override
+    public String toString() {
+      return filter + ", sort by " + sort + " " + order;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package cz.levy.pet.shelter.aggregator.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemResult;
+import cz.levy.pet.shelter.aggregator.api.DogBatchItemStatus;
+import cz.levy.pet.shelter.aggregator.config.TestContainerConfig;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
+import cz.levy.pet.shelter.aggregator.service.DogIngestService;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(TestContainerConfig.class)
+@ActiveProfiles("test")
+public class DogUpsertRepositoryIntegrationTest {
+  @Autowired private DogUpsertRepository dogUpsertRepository;
+  @Autowired private DogIngestService dogIngestService;
+  @Autowired private DogRepository dogRepository;
+  @Autowired private ShelterRepository shelterRepository;
+  @Autowired private TransactionTemplate transactionTemplate;
+  @Autowired private JdbcTemplate jdbcTemplate;
+
+  private long shelterId;
+
+  @BeforeEach
+  void setup() {
+    dogRepository.deleteAll();
+    shelterRepository.deleteAll();
+    shelterId =
+        shelterRepository.save(ShelterEntity.builder().name("Race Shelter").build()).getId();
+  }
+
+  @Test
+  public void upsertingExistingDogsTakesNoIdsFromTheSequence() {
+    dogUpsertRepository.upsertDogs(List.of(dog("Rex", 4F)));
+    var lastId = lastSequenceValue();
+
+    var unchanged = dogUpsertRepository.upsertDogs(List.of(dog("Rex", 4F)));
+    var updated = dogUpsertRepository.upsertDogs(List.of(dog("Rex", 5F)));
+
+    assertThat(unchanged.getFirst().outcome()).isEqualTo(DogUpsertRepository.Outcome.UNCHANGED);
+    assertThat(updated.getFirst().outcome()).isEqualTo(DogUpsertRepository.Outcome.UPDATED);
+    assertThat(lastSequenceValue()).isEqualTo(lastId);
+  }
+
+  @Test
+  public void aDogInsertedByAConcurrentUpsertOfTheSameBodyIsReportedUnchanged() throws Exception {
+    var race = race(dog("Rex", 4F), () -> dogIngestService.upsertDog(dog("Rex", 4F)));
+
+    assertThat(race.loser().status()).isEqualTo(DogBatchItemStatus.UNCHANGED);
+    assertThat(race.loser().internalId()).isEqualTo(race.winner().internalId());
+  }
+
+  @Test
+  public void aDogInsertedByAConcurrentUpsertIsUpdatedFromTheCommittedRow() throws Exception {
+    var race =
+        race(
+            dog("Rex", 4F),
+            () -> dogUpsertRepository.upsertDogs(List.of(dog("Max", 6F))).getFirst());
+
+    var upserted = race.loser();
+    assertThat(upserted.outcome()).isEqualTo(DogUpsertRepository.Outcome.UPDATED);
+    assertThat(upserted.id()).isEqualTo(race.winner().internalId());
+    assertThat(upserted.before().name()).isEqualTo("Rex");
+    assertThat(upserted.before().sex()).isEqualTo(Sex.MALE);
+    assertThat(upserted.before().currentWeight()).isEqualTo(4F);
+    assertThat(dogRepository.findAll())
+        .singleElement()
+        .satisfies(
+            dog -> {
+              assertThat(dog.getName()).isEqualTo("Max");
+              assertThat(dog.getId()).isEqualTo(upserted.id());
+            });
+  }
+
+  // Upserts the first dog in a transaction that stays open until the second upsert waits for its
+  // uncommitted row, so the second upsert cannot have seen the dog before it inserts it too.
+  private <T> Race<T> race(DogDto first, Supplier<T> second) throws Exception {
+    var loser = new CompletableFuture<T>();
+    var winner =
+        transactionTemplate.execute(
+            _ -> {
+              var result = dogIngestService.upsertDog(first);
+              Thread.ofPlatform()
+                  .start(
+                      () -> {
+                        try {
+                          loser.complete(second.get());
+                        } catch (RuntimeException e) {
+                          loser.completeExceptionally(e);
+                        }
+                      });
+              awaitAnUpsertWaitingForALock();
+              return result;
+            });
+    return new Race<>(winner, loser.get(30, TimeUnit.SECONDS));
+  }
+
+  private void awaitAnUpsertWaitingForALock() {
+    var deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+    while (jdbcTemplate.queryForObject(
+            "SELECT count(*) FROM pg_stat_activity"
+                + " WHERE datname = current_database() AND wait_event_type = 'Lock'",
+            Long.class)
+        == 0) {
+      assertThat(System.nanoTime()).as("an upsert waiting for a lock").isLessThan(deadline);
+      Thread.onSpinWait();
+    }
+  }
+
+  private long lastSequenceValue() {
+    return jdbcTemplate.queryForObject("SELECT last_value FROM dog_entity_id_seq", Long.class);
+  }
+
+  private DogDto dog(String name, float currentWeight) {
+    return DogDto.builder()
+        .shelterId(shelterId)
+        .externalId("race")
+        .name(name)
+        .sex(Sex.MALE)
+        .currentWeight(currentWeight)
+        .build();
+  }
+
+  private record Race<T>(DogBatchItemResult winner, T loser) {}
+}
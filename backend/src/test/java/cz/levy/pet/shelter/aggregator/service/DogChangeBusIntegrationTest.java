@@ -0,0 +1,138 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import cz.levy.pet.shelter.aggregator.Application;
+import cz.levy.pet.shelter.aggregator.config.TestContainerConfig;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.JdbcConnectionDetails;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(TestContainerConfig.class)
+@ActiveProfiles("test")
+public class DogChangeBusIntegrationTest {
+  @Autowired private DogSheltersService dogSheltersService;
+  @Autowired private DogRepository dogRepository;
+  @Autowired private ShelterRepository shelterRepository;
+  @Autowired private JdbcConnectionDetails connectionDetails;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private ConfigurableApplicationContext otherNode;
+
+  // A second backend node sharing the database of this test's node. The settings are passed as
+  // arguments because default properties would lose to application.yml.
+  @BeforeAll
+  void startOtherNode() {
+    otherNode =
+        new SpringApplicationBuilder(Application.class)
+            .profiles("test")
+            .run(
+                "--server.port=0",
+                "--spring.datasource.url=" + connectionDetails.getJdbcUrl(),
+                "--spring.datasource.username=" + connectionDetails.getUsername(),
+                "--spring.datasource.password=" + connectionDetails.getPassword());
+  }
+
+  @AfterAll
+  void stopOtherNode() {
+    otherNode.close();
+    dogRepository.deleteAll();
+    shelterRepository.deleteAll();
+  }
+
+  @Test
+  public void updateOnOneNodeEvictsCachedQueriesOnTheOtherNode() {
+    var shelter = shelterRepository.save(ShelterEntity.builder().name("Bus Shelter").build());
+    var dog = dogSheltersService.saveDog(dog(shelter.getId(), "Rex"));
+    var otherService = otherNode.getBean(DogSheltersService.class);
+    var page = PageRequest.of(0, 100);
+    assertThat(otherService.getDogDto(dog.getId()).getName()).isEqualTo("Rex");
+    assertThat(otherService.getAllDogs(page, null, null, Sex.FEMALE, null)).hasSize(1);
+
+    dogSheltersService.updateDog(dog.getId(), dog(shelter.getId(), "Rex Junior"));
+
+    await()
+        .atMost(Duration.ofSeconds(10))
+        .untilAsserted(
+            () -> {
+              assertThat(otherService.getDogDto(dog.getId()).getName()).isEqualTo("Rex Junior");
+              assertThat(otherService.getAllDogs(page, null, null, Sex.FEMALE, null))
+                  .extracting(response -> response.dogInfo().getName())
+                  .containsExactly("Rex Junior");
+            });
+  }
+
+  @Test
+  public void everyChangeOfOneTransactionReachesTheOtherNode() {
+    var shelter = shelterRepository.save(ShelterEntity.builder().name("Batch Shelter").build());
+    var ids =
+        IntStream.range(0, 5)
+            .mapToObj(i -> dogSheltersService.saveDog(batchDog(shelter.getId(), i, "Dog")))
+            .map(DogEntity::getId)
+            .toList();
+    var otherService = otherNode.getBean(DogSheltersService.class);
+    ids.forEach(id -> assertThat(otherService.getDogDto(id).getName()).isEqualTo("Dog"));
+
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            _ ->
+                ids.forEach(
+                    id ->
+                        dogSheltersService.updateDog(
+                            id, batchDog(shelter.getId(), ids.indexOf(id), "Renamed " + id))));
+
+    await()
+        .atMost(Duration.ofSeconds(10))
+        .untilAsserted(
+            () ->
+                assertThat(ids)
+                    .allSatisfy(
+                        id ->
+                            assertThat(otherService.getDogDto(id).getName())
+                                .isEqualTo("Renamed " + id)));
+  }
+
+  private static DogDto dog(long shelterId, String name) {
+    return DogDto.builder()
+        .shelterId(shelterId)
+        .externalId("rex")
+        .name(name)
+        .sex(Sex.FEMALE)
+        .imageUrls(List.of("rex.jpg"))
+        .build();
+  }
+
+  // Male, so that these dogs stay out of the female listing the other test counts.
+  private static DogDto batchDog(long shelterId, int index, String name) {
+    return DogDto.builder()
+        .shelterId(shelterId)
+        .externalId("batch-" + index)
+        .name(name)
+        .sex(Sex.MALE)
+        .imageUrls(List.of("batch.jpg"))
+        .build();
+  }
+}
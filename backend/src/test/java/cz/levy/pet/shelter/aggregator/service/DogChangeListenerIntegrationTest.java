@@ -0,0 +1,125 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import cz.levy.pet.shelter.aggregator.config.TestContainerConfig;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+      "ingest.kafka.enabled=true",
+      "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}"
+    })
+@EmbeddedKafka(partitions = 2, topics = "${ingest.kafka.topic}")
+@Import(TestContainerConfig.class)
+@ActiveProfiles("test")
+public class DogChangeListenerIntegrationTest {
+  @Autowired private EmbeddedKafkaBroker embeddedKafkaBroker;
+  @Autowired private DogRepository dogRepository;
+  @Autowired private ShelterRepository shelterRepository;
+
+  @Value("${ingest.kafka.topic}")
+  private String topic;
+
+  @BeforeEach
+  void setup() {
+    dogRepository.deleteAll();
+    shelterRepository.deleteAll();
+  }
+
+  @Test
+  public void dogChangeEventsAreUpsertedWithTheLatestChangePerDogWinning() {
+    var shelter = shelterRepository.save(ShelterEntity.builder().name("Kafka Shelter").build());
+    var template = kafkaTemplate();
+
+    send(template, dog(shelter.getId(), "rex", "Rex"));
+    send(template, dog(shelter.getId(), "bella", "Bella"));
+    send(template, dog(shelter.getId(), "rex", "Rex Junior"));
+    send(template, dog(shelter.getId(), "rex", "Rex Junior"));
+    template.flush();
+
+    await()
+        .atMost(Duration.ofSeconds(30))
+        .untilAsserted(
+            () ->
+                assertThat(dogRepository.findAll())
+                    .extracting(DogEntity::getName)
+                    .containsExactlyInAnyOrder("Rex Junior", "Bella"));
+  }
+
+  @Test
+  public void anInvalidChangeIsSkippedAndTheRestOfItsBatchApplied() {
+    var shelter = shelterRepository.save(ShelterEntity.builder().name("Kafka Shelter").build());
+    var template = kafkaTemplate();
+    var nameless = dog(shelter.getId(), "nameless", " ");
+    nameless.setCurrentWeight(-1F);
+
+    // One partition keeps the invalid change between the two valid ones.
+    for (var dog :
+        List.of(
+            dog(shelter.getId(), "rex", "Rex"), nameless, dog(shelter.getId(), "bella", "Bella"))) {
+      template.send(topic, 0, dog.getShelterId() + ":" + dog.getExternalId(), dog);
+    }
+    template.flush();
+
+    await()
+        .atMost(Duration.ofSeconds(30))
+        .untilAsserted(
+            () ->
+                assertThat(dogRepository.findAll())
+                    .extracting(DogEntity::getName)
+                    .containsExactlyInAnyOrder("Rex", "Bella"));
+  }
+
+  private KafkaTemplate<String, DogDto> kafkaTemplate() {
+    Map<String, Object> properties =
+        Map.of(
+            ProducerConfig.BOOTSTRAP_SERVERS_CONFIG,
+            embeddedKafkaBroker.getBrokersAsString(),
+            ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG,
+            StringSerializer.class,
+            ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+            JsonSerializer.class,
+            JsonSerializer.ADD_TYPE_INFO_HEADERS,
+            false);
+    return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(properties));
+  }
+
+  private void send(KafkaTemplate<String, DogDto> template, DogDto dog) {
+    template.send(topic, dog.getShelterId() + ":" + dog.getExternalId(), dog);
+  }
+
+  private static DogDto dog(long shelterId, String externalId, String name) {
+    return DogDto.builder()
+        .shelterId(shelterId)
+        .externalId(externalId)
+        .name(name)
+        .sex(Sex.FEMALE)
+        .imageUrls(List.of(externalId + ".jpg"))
+        .build();
+  }
+}
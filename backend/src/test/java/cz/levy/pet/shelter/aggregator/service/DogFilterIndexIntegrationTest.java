@@ -0,0 +1,160 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cz.levy.pet.shelter.aggregator.config.TestContainerConfig;
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.domain.SortField;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import cz.levy.pet.shelter.aggregator.spec.DogCursor;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "filter-index.enabled=true")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Import(TestContainerConfig.class)
+@ActiveProfiles("test")
+public class DogFilterIndexIntegrationTest {
+  private static final List<DogFilter> FILTERS =
+      List.of(
+          new DogFilter(null, null, null, null),
+          new DogFilter(3F, null, null, null),
+          new DogFilter(null, 2.5F, null, null),
+          new DogFilter(2F, 9F, Sex.FEMALE, null),
+          new DogFilter(null, null, Sex.UNKNOWN, null),
+          new DogFilter(null, null, null, DogSize.SMALL),
+          new DogFilter(null, null, Sex.MALE, DogSize.MEDIUM),
+          new DogFilter(1F, null, null, DogSize.LARGE));
+
+  @Autowired private DogFilterIndex dogFilterIndex;
+  @Autowired private DogSheltersService dogSheltersService;
+  @Autowired private DogRepository dogRepository;
+  @Autowired private ShelterRepository shelterRepository;
+
+  private ShelterEntity shelter;
+
+  @BeforeAll
+  void seedDatabase() {
+    dogRepository.deleteAll();
+    shelterRepository.deleteAll();
+    var shelters =
+        shelterRepository.saveAll(
+            List.of(
+                ShelterEntity.builder().name("First Index Shelter").build(),
+                ShelterEntity.builder().name("Second Index Shelter").build()));
+    shelter = shelters.getFirst();
+
+    // Few distinct values and plenty of nulls, so that ties and null placement are exercised.
+    var dogs = new ArrayList<DogEntity>();
+    for (int i = 0; i < 150; i++) {
+      dogs.add(
+          DogEntity.builder()
+              .externalId("index-dog-" + i)
+              .name("Dog " + i)
+              .sex(Sex.values()[i % 3])
+              .estimatedAgeInYears(i % 11 == 0 ? null : (i % 23) / 2F)
+              .currentWeight(i % 7 == 0 ? null : (float) (i % 13))
+              .estimatedFinalWeightMin(i % 9 == 0 ? null : (float) (i % 31))
+              .estimatedFinalWeightMax(i % 9 == 0 ? null : (float) (i % 31 + 4))
+              .shelter(shelters.get(i % 2))
+              .build());
+    }
+    dogRepository.saveAll(dogs);
+    dogFilterIndex.load();
+  }
+
+  @AfterAll
+  void cleanDatabase() {
+    dogRepository.deleteAll();
+    shelterRepository.deleteAll();
+  }
+
+  @ParameterizedTest(name = "{0}")
+  @MethodSource("queryCases")
+  void findPageReturnsTheSameDogsAsTheDatabase(QueryCase queryCase) {
+    for (var page = 0; page < 3; page++) {
+      var pageable = PageRequest.of(page, 7, DogCursor.sortOf(queryCase.sort(), queryCase.order()));
+      var filter = queryCase.filter();
+
+      var databaseIds =
+          dogSheltersService
+              .paginateAndFilterDogs(
+                  pageable, filter.ageMin(), filter.ageMax(), filter.sex(), filter.dogSize())
+              .map(DogEntity::getId)
+              .toList();
+
+      assertThat(dogFilterIndex.findPage(filter, pageable)).isEqualTo(databaseIds);
+    }
+  }
+
+  @Test
+  void findPageFollowsWrites() {
+    var savedDog =
+        dogSheltersService.saveDog(
+            DogDto.builder()
+                .shelterId(shelter.getId())
+                .externalId("new index dog")
+                .name("New dog")
+                .sex(Sex.UNKNOWN)
+                .estimatedAgeInYears(100F)
+                .build());
+    var oldestFirst = PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "estimatedAgeInYears"));
+    var hasAge = new DogFilter(0F, null, null, null);
+
+    assertThat(dogFilterIndex.findPage(hasAge, oldestFirst)).containsExactly(savedDog.getId());
+
+    dogSheltersService.deleteDog(savedDog.getId());
+
+    assertThat(dogFilterIndex.findPage(hasAge, oldestFirst)).doesNotContain(savedDog.getId());
+  }
+
+  @Test
+  void findPageDoesNotAnswerSortsByName() {
+    var byName = PageRequest.of(0, 10, Sort.by("name"));
+
+    assertThat(dogFilterIndex.findPage(FILTERS.getFirst(), byName)).isNull();
+  }
+
+  static Stream<QueryCase> queryCases() {
+    var cases = new ArrayList<QueryCase>();
+    for (var filter : FILTERS) {
+      for (var sort : SortField.values()) {
+        if (sort == SortField.NAME) {
+          continue;
+        }
+        for (var order : Sort.Direction.values()) {
+          cases.add(new QueryCase(filter, sort, order));
+        }
+      }
+    }
+    return cases.stream();
+  }
+
+  record QueryCase(DogFilter filter, SortField sort, Sort.Direction order) {
+    @Override
+    public String toString() {
+      return filter + ", sort by " + sort + " " + order;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.repository.DogFilterView;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import cz.levy.pet.shelter.aggregator.spec.DogSnapshot;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+public class DogFilterIndexTest {
+  // Transactions below 10 had finished when the load read the database, 11 was in progress.
+  private static final String LOAD_SNAPSHOT = "10:12:11";
+  private static final DogFilter ALL = new DogFilter(null, null, null, null);
+  private static final PageRequest LIGHTEST_FIRST =
+      PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "currentWeight"));
+
+  private DogFilterIndex index;
+
+  @Test
+  public void aChangeTheLoadSawIsNotReplayedOverTheLoadedDog() {
+    index = new DogFilterIndex(dogRepository(() -> index.onDogChanged(rexWeighing(5F, 9))));
+
+    index.load();
+
+    assertThat(index.findPage(ALL, LIGHTEST_FIRST)).containsExactly(2L, 1L);
+  }
+
+  @Test
+  public void aChangeTheLoadDidNotSeeIsReplayed() {
+    index = new DogFilterIndex(dogRepository(() -> index.onDogChanged(rexWeighing(5F, 11))));
+
+    index.load();
+
+    assertThat(index.findPage(ALL, LIGHTEST_FIRST)).containsExactly(1L, 2L);
+  }
+
+  // Rex, dog 1, was loaded weighing 10 and Bella, dog 2, weighing 7.
+  private static DogChangedEvent rexWeighing(float currentWeight, long transactionId) {
+    return new DogChangedEvent(
+        1,
+        new DogSnapshot(1, "Rex", Sex.MALE, null, 8F, null, null),
+        new DogSnapshot(1, "Rex", Sex.MALE, null, currentWeight, null, null),
+        1,
+        transactionId);
+  }
+
+  // Delivers the changes while the load reads the database.
+  private static DogRepository dogRepository(Runnable changesDuringLoad) {
+    return (DogRepository)
+        Proxy.newProxyInstance(
+            DogRepository.class.getClassLoader(),
+            new Class<?>[] {DogRepository.class},
+            (_, method, _) -> {
+              if (method.getName().equals("findAllFilterViewsWithSnapshot")) {
+                changesDuringLoad.run();
+                return new DogRepository.SnapshotFilterViews(
+                    List.of(filterView(1, 10F), filterView(2, 7F)), LOAD_SNAPSHOT);
+              }
+              throw new UnsupportedOperationException(method.getName());
+            });
+  }
+
+  private static DogFilterView filterView(long id, Float currentWeight) {
+    return new DogFilterView() {
+      @Override
+      public long getId() {
+        return id;
+      }
+
+      @Override
+      public long getShelterId() {
+        return 1;
+      }
+
+      @Override
+      public String getSex() {
+        return Sex.MALE.name();
+      }
+
+      @Override
+      public Float getEstimatedAgeInYears() {
+        return null;
+      }
+
+      @Override
+      public Float getCurrentWeight() {
+        return currentWeight;
+      }
+
+      @Override
+      public Float getEstimatedFinalWeightMin() {
+        return null;
+      }
+
+      @Override
+      public Float getEstimatedFinalWeightMax() {
+        return null;
+      }
+    };
+  }
+}
@@ -0,0 +1,109 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+public class DogImageStoreTest {
+  private static final DataSize MAX_SIZE = DataSize.ofBytes(1000);
+
+  @TempDir private Path cacheDir;
+  private final SteppingClock clock = new SteppingClock();
+
+  @Test
+  public void writesOverTheBoundEvictTheLeastRecentlyUsedImages() throws IOException {
+    var store = new DogImageStore(cacheDir, MAX_SIZE, clock);
+    store.put("a", image(1), "jpg");
+    clock.step();
+    store.put("b", image(2), "jpg");
+    clock.step();
+    assertThat(store.find("a")).isNotNull();
+    clock.step();
+
+    store.put("c", image(3), "jpg");
+
+    assertThat(store.find("b")).isNull();
+    assertThat(store.find("a")).isNotNull();
+    assertThat(store.find("c")).isNotNull();
+    assertThat(blobCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void anImageStaysWhileAnotherKeyStillRefersToIt() throws IOException {
+    var store = new DogImageStore(cacheDir, MAX_SIZE, clock);
+    var shared = store.put("a", image(1), "jpg");
+    clock.step();
+    store.put("b", image(2), "jpg");
+    clock.step();
+    store.link("a@320", shared);
+    clock.step();
+
+    store.put("c", image(3), "jpg");
+
+    assertThat(store.find("a")).isNull();
+    assertThat(store.find("b")).isNull();
+    assertThat(store.find("a@320")).isEqualTo(shared);
+    assertThat(blobCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void startingSweepsImagesNothingRefersTo() throws IOException {
+    new DogImageStore(cacheDir, MAX_SIZE, clock).put("a", image(1), "jpg");
+    var orphan = Files.write(cacheDir.resolve("blobs").resolve("orphan.jpg"), image(2));
+    Files.setLastModifiedTime(orphan, FileTime.from(clock.instant()));
+    clock.step();
+
+    var store = new DogImageStore(cacheDir, MAX_SIZE, clock);
+
+    assertThat(orphan).doesNotExist();
+    assertThat(store.find("a")).isNotNull();
+  }
+
+  private long blobCount() throws IOException {
+    try (var files = Files.list(cacheDir.resolve("blobs"))) {
+      return files.count();
+    }
+  }
+
+  private static byte[] image(int seed) {
+    var content = new byte[400];
+    Arrays.fill(content, (byte) seed);
+    return content;
+  }
+
+  // Steps further than the grace sweeps give fresh files, so that earlier files may be swept.
+  private static final class SteppingClock extends Clock {
+    private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+    void step() {
+      now = now.plus(Duration.ofMinutes(2));
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import cz.levy.pet.shelter.aggregator.spec.DogSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+public class DogQueryCacheTest {
+  private static final DogQueryCache.DogListKey MALES =
+      new DogQueryCache.DogListKey(
+          PageRequest.of(0, 10), new DogFilter(null, null, Sex.MALE, null));
+  private static final DogChangedEvent MALE_ADDED =
+      new DogChangedEvent(
+          1, null, new DogSnapshot(1, "Rex", Sex.MALE, null, null, null, null), 1, 0);
+  private static final DogChangedEvent FEMALE_ADDED =
+      new DogChangedEvent(
+          2, null, new DogSnapshot(1, "Bella", Sex.FEMALE, null, null, null, null), 1, 0);
+
+  private final DogQueryCache cache =
+      new DogQueryCache(new SimpleMeterRegistry(), 100, 100, Duration.ofMinutes(5));
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  public void writesEvictOnlyTheListingsTheyMatch() {
+    cache.getDogList(MALES, this::load);
+
+    cache.onDogChanged(FEMALE_ADDED);
+    cache.getDogList(MALES, this::load);
+    assertThat(loads).hasValue(1);
+
+    cache.onDogChanged(MALE_ADDED);
+    cache.getDogList(MALES, this::load);
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  public void aWriteCommittedDuringALoadDiscardsWhatTheLoadRead() throws Exception {
+    var loadStarted = new CountDownLatch(1);
+    var writeCommitted = new CountDownLatch(1);
+    var staleLoad =
+        Thread.ofPlatform()
+            .start(
+                () ->
+                    cache.getDogList(
+                        MALES,
+                        key -> {
+                          var beforeTheWrite = load(key);
+                          loadStarted.countDown();
+                          await(writeCommitted);
+                          return beforeTheWrite;
+                        }));
+    loadStarted.await();
+
+    var invalidation = Thread.ofPlatform().start(() -> cache.onDogChanged(MALE_ADDED));
+    // The invalidation either finishes, as it did when it overlooked loading listings, or waits
+    // for the load.
+    while (invalidation.isAlive() && invalidation.getState() == Thread.State.RUNNABLE) {
+      Thread.onSpinWait();
+    }
+    writeCommitted.countDown();
+    staleLoad.join();
+    invalidation.join();
+
+    cache.getDogList(MALES, this::load);
+    assertThat(loads).hasValue(2);
+  }
+
+  private List<DogResponse> load(DogQueryCache.DogListKey key) {
+    loads.incrementAndGet();
+    return List.of();
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import cz.levy.pet.shelter.aggregator.config.TestContainerConfig;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = "seed.batch-size=2")
+@Import(TestContainerConfig.class)
+@ActiveProfiles("test")
+public class DogSeedLoaderIntegrationTest {
+  @Autowired private DogSeedLoader dogSeedLoader;
+  @Autowired private DogRepository dogRepository;
+  @Autowired private ShelterRepository shelterRepository;
+
+  @BeforeEach
+  void setup() {
+    dogRepository.deleteAll();
+    shelterRepository.deleteAll();
+  }
+
+  @Test
+  public void loadWritesDogsInBatchesAndSkipsDogsOfUnknownShelters() throws Exception {
+    var shelter = shelterRepository.save(ShelterEntity.builder().name("Seed Shelter").build());
+    var seedFile =
+        """
+        [
+          {"shelterId": %1$d, "externalId": "rex", "name": "Rex", "sex": "MALE",
+           "imageUrls": ["rex.jpg"]},
+          {"shelterId": %1$d, "externalId": "bella", "name": "Bella", "sex": "FEMALE"},
+          {"shelterId": %2$d, "externalId": "lost", "name": "Lost", "sex": "MALE"},
+          {"shelterId": %1$d, "externalId": "max", "name": "Max", "sex": "MALE"}
+        ]
+        """
+            .formatted(shelter.getId(), shelter.getId() + 1);
+
+    var result =
+        dogSeedLoader.load(new ByteArrayInputStream(seedFile.getBytes(StandardCharsets.UTF_8)));
+
+    assertThat(result.read()).isEqualTo(4);
+    assertThat(result.written()).isEqualTo(3);
+    assertThat(result.skipped()).isEqualTo(1);
+    assertThat(dogRepository.findAll())
+        .extracting(DogEntity::getName)
+        .containsExactlyInAnyOrder("Rex", "Bella", "Max");
+  }
+}
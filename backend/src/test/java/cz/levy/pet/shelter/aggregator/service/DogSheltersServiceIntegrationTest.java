@@ -10,6 +10,8 @@ import cz.levy.pet.shelter.aggregator.entity.DogEntity;
 import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
 import cz.levy.pet.shelter.aggregator.repository.DogRepository;
 import cz.levy.pet.shelter.aggregator.repository.ShelterRepository;
+import cz.levy.pet.shelter.aggregator.spec.DogCursor;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
 import lombok.Builder;
@@ -23,6 +25,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.test.context.ActiveProfiles;
 
@@ -196,6 +199,93 @@ public class DogSheltersServiceIntegrationTest {
             .build());
   }
 
+  @ParameterizedTest(name = "{0}")
+  @MethodSource("keysetPaginationCases")
+  void sliceAndFilterDogsWalksAllSlicesInOrder(KeysetPaginationTestCase caseData) {
+    var externalIds = new ArrayList<String>();
+    DogCursor cursor = null;
+    Slice<DogEntity> slice;
+    do {
+      slice =
+          dogSheltersService.sliceAndFilterDogs(
+              cursor,
+              caseData.sort,
+              caseData.order,
+              caseData.size,
+              caseData.ageMin,
+              null,
+              caseData.sex,
+              null);
+      slice.forEach(dogEntity -> externalIds.add(dogEntity.getExternalId()));
+      if (slice.hasNext()) {
+        cursor =
+            DogCursor.decode(
+                DogCursor.of(caseData.sort, caseData.order, slice.getContent().getLast()).encode());
+      }
+    } while (slice.hasNext());
+
+    assertThatEqualsRecursive(externalIds, caseData.expectedExternalIds);
+  }
+
+  static Stream<KeysetPaginationTestCase> keysetPaginationCases() {
+    return Stream.of(
+        KeysetPaginationTestCase.builder()
+            .caseName("NO FILTER, sort by ID asc")
+            .size(3)
+            .order(Sort.Direction.ASC)
+            .sort(SortField.ID)
+            .expectedExternalIds(List.of("dog1", "dog2", "dog3", "dog4", "dog5", "dog6", "dog7"))
+            .build(),
+        KeysetPaginationTestCase.builder()
+            .caseName("NO FILTER, sort by AGE asc, nulls last")
+            .size(2)
+            .order(Sort.Direction.ASC)
+            .sort(SortField.ESTIMATED_AGE)
+            .expectedExternalIds(List.of("dog1", "dog2", "dog5", "dog3", "dog4", "dog6", "dog7"))
+            .build(),
+        KeysetPaginationTestCase.builder()
+            .caseName("NO FILTER, sort by WEIGHT desc, nulls first")
+            .size(2)
+            .order(Sort.Direction.DESC)
+            .sort(SortField.CURRENT_WEIGHT)
+            .expectedExternalIds(List.of("dog7", "dog3", "dog5", "dog2", "dog6", "dog1", "dog4"))
+            .build(),
+        KeysetPaginationTestCase.builder()
+            .caseName("FILTER sex = FEMALE, sort by NAME desc")
+            .size(1)
+            .order(Sort.Direction.DESC)
+            .sort(SortField.NAME)
+            .sex(Sex.FEMALE)
+            .expectedExternalIds(List.of("dog7", "dog5", "dog4", "dog1"))
+            .build(),
+        KeysetPaginationTestCase.builder()
+            .caseName("FILTER ageMin ≥ 5, sort by SHELTER_ID asc")
+            .size(2)
+            .order(Sort.Direction.ASC)
+            .sort(SortField.SHELTER_ID)
+            .ageMin(5F)
+            .expectedExternalIds(List.of("dog2", "dog3", "dog4", "dog5"))
+            .build());
+  }
+
+  @Data
+  @Builder
+  public static class KeysetPaginationTestCase {
+    private String caseName;
+    private int size;
+    private Sort.Direction order;
+    private SortField sort;
+    @Builder.Default private Float ageMin = null;
+    @Builder.Default private Sex sex = null;
+
+    private List<String> expectedExternalIds;
+
+    @Override
+    public String toString() {
+      return caseName;
+    }
+  }
+
   @Data
   @Builder
   public static class FilterPaginationTestCase {
@@ -0,0 +1,109 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SortedSlotsTest {
+  private static final int SLOTS = 500;
+  private static final int CELLS = 3;
+
+  private final int[] values = new int[SLOTS];
+  private final int[] cells = new int[SLOTS];
+  private final Random random = new Random(7);
+  // Small chunks, so that splits and merges happen with a few hundred slots.
+  private final SortedSlots sorted =
+      new SortedSlots(
+          (a, b) -> a == b ? 0 : values[a] != values[b] ? values[a] - values[b] : a - b,
+          slot -> cells[slot],
+          CELLS,
+          8);
+  private final TreeSet<Integer> expected =
+      new TreeSet<>(Comparator.<Integer>comparingInt(slot -> values[slot]).thenComparing(s -> s));
+
+  @BeforeEach
+  void buildHalfOfTheSlots() {
+    for (int slot = 0; slot < SLOTS; slot++) {
+      values[slot] = random.nextInt(50);
+      cells[slot] = random.nextInt(CELLS);
+    }
+    var built = IntStream.range(0, SLOTS / 2).toArray();
+    sorted.build(built);
+    IntStream.range(0, SLOTS / 2).forEach(expected::add);
+  }
+
+  @Test
+  void buildSortsTheSlots() {
+    assertThat(sorted.size()).isEqualTo(SLOTS / 2);
+    assertThat(page(true, 0, SLOTS, allCells(), null)).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  void staysSortedThroughInsertsUpdatesAndRemovals() {
+    for (int i = 0; i < 5_000; i++) {
+      var slot = random.nextInt(SLOTS);
+      if (expected.contains(slot)) {
+        sorted.remove(slot);
+        expected.remove(slot);
+      }
+      if (random.nextBoolean()) {
+        values[slot] = random.nextInt(50);
+        cells[slot] = random.nextInt(CELLS);
+        sorted.insert(slot);
+        expected.add(slot);
+      }
+    }
+
+    assertThat(sorted.size()).isEqualTo(expected.size());
+    assertThat(page(true, 0, SLOTS, allCells(), null)).containsExactlyElementsOf(expected);
+    assertThat(page(false, 0, SLOTS, allCells(), null))
+        .containsExactlyElementsOf(expected.descendingSet());
+  }
+
+  @Test
+  void removingAnAbsentSlotChangesNothing() {
+    sorted.remove(SLOTS - 1);
+
+    assertThat(page(true, 0, SLOTS, allCells(), null)).containsExactlyElementsOf(expected);
+  }
+
+  @Test
+  void pagesSkipTheOffsetAmongMatchingSlotsOnly() {
+    var cellsOfOne = new boolean[] {false, true, false};
+    IntPredicate even = slot -> slot % 2 == 0;
+    var matching = expected.stream().filter(slot -> cells[slot] == 1).toList();
+    var matchingEven = matching.stream().filter(slot -> slot % 2 == 0).toList();
+
+    for (var offset : new int[] {0, 1, 7, 8, 9, 30, matching.size() - 3, matching.size() + 1}) {
+      assertThat(page(true, offset, 5, cellsOfOne, null))
+          .containsExactlyElementsOf(slice(matching, offset, 5));
+      assertThat(page(false, offset, 5, cellsOfOne, null))
+          .containsExactlyElementsOf(slice(matching.reversed(), offset, 5));
+      assertThat(page(true, offset, 5, cellsOfOne, even))
+          .containsExactlyElementsOf(slice(matchingEven, offset, 5));
+    }
+  }
+
+  private List<Integer> page(
+      boolean ascending, long offset, int limit, boolean[] cells, IntPredicate alsoMatches) {
+    var slots = new ArrayList<Integer>();
+    sorted.forEachOnPage(ascending, offset, limit, cells, alsoMatches, slots::add);
+    return slots;
+  }
+
+  private static List<Integer> slice(List<Integer> list, int offset, int limit) {
+    return list.subList(Math.min(offset, list.size()), Math.min(offset + limit, list.size()));
+  }
+
+  private static boolean[] allCells() {
+    return new boolean[] {true, true, true};
+  }
+}
@@ -0,0 +1,98 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.spec.DogSnapshot;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class WeightedDogSamplerTest {
+  private static final DogSnapshot SNAPSHOT =
+      new DogSnapshot(1, "Rex", Sex.MALE, null, null, null, null);
+
+  private WeightedDogSampler sampler;
+
+  @BeforeEach
+  void loadEmptySampler() {
+    var dogRepository = mock(DogRepository.class);
+    when(dogRepository.findAllWeightViews()).thenReturn(List.of());
+    sampler = new WeightedDogSampler(dogRepository);
+    assertThat(sampler.size()).isZero();
+  }
+
+  @Test
+  public void growsBeyondItsInitialCapacity() {
+    var ids = LongStream.rangeClosed(1, 5_000).boxed().toList();
+    ids.forEach(id -> sampler.put(id, 1 + id % 7));
+
+    assertThat(sampler.size()).isEqualTo(5_000);
+    assertThat(sampler.sample(5_000)).containsExactlyInAnyOrderElementsOf(ids);
+  }
+
+  @Test
+  public void removedIdsAreNotDrawnUntilTheyAreAddedAgain() {
+    sampler.put(1, 1);
+    sampler.put(2, 1);
+    sampler.put(3, 1);
+
+    sampler.remove(2);
+    sampler.remove(42);
+    assertThat(sampler.size()).isEqualTo(2);
+    assertThat(sampler.sample(10)).containsExactlyInAnyOrder(1L, 3L);
+
+    sampler.put(2, 1);
+    assertThat(sampler.size()).isEqualTo(3);
+    assertThat(sampler.sample(10)).containsExactlyInAnyOrder(1L, 2L, 3L);
+  }
+
+  @Test
+  public void samplingAtLeastTheSizeReturnsEveryIdOnce() {
+    LongStream.rangeClosed(1, 10).forEach(id -> sampler.put(id, id * id));
+
+    for (int size : new int[] {10, 11, 100}) {
+      assertThat(sampler.sample(size))
+          .hasSize(10)
+          .doesNotHaveDuplicates()
+          .containsExactlyInAnyOrderElementsOf(LongStream.rangeClosed(1, 10).boxed().toList());
+    }
+  }
+
+  @Test
+  public void weightUpdatesChangeHowOftenAnIdIsDrawn() {
+    sampler.put(1, 1);
+    sampler.put(2, 1);
+    assertThat(drawShareOf(1)).isBetween(0.4, 0.6);
+
+    sampler.put(1, 99);
+    assertThat(drawShareOf(1)).isGreaterThan(0.95);
+
+    sampler.put(1, 0);
+    assertThat(drawShareOf(1)).isZero();
+  }
+
+  @Test
+  public void followsChangeEvents() {
+    sampler.onDogChanged(new DogChangedEvent(1, null, SNAPSHOT, 1, 0));
+    sampler.onDogChanged(new DogChangedEvent(2, null, SNAPSHOT, 1, 0));
+    sampler.onDogChanged(new DogChangedEvent(1, SNAPSHOT, null, 0, 0));
+
+    assertThat(sampler.sample(10)).containsExactly(2L);
+  }
+
+  private double drawShareOf(long id) {
+    Map<Long, Integer> draws = new HashMap<>();
+    int total = 10_000;
+    for (int i = 0; i < total; i++) {
+      sampler.sample(1).forEach(drawn -> draws.merge(drawn, 1, Integer::sum));
+    }
+    return draws.getOrDefault(id, 0) / (double) total;
+  }
+}
@@ -32,10 +32,10 @@ SELECT
 FROM shelter_entity s
 CROSS JOIN generate_series(1, 30) AS d;
 
--- Insert 0–5 unique images per dog
-INSERT INTO dog_image_urls (dog_id, image_url)
-SELECT
-  d.id,
-  '/images/default_' || img.n || '.jpg'
-FROM dog_entity d
-JOIN generate_series(1, 5) AS img(n) ON random() < 0.5;
\ No newline at end of file
+-- Insert 0–5 unique images per dog; referencing d keeps the subquery from running only once
+UPDATE dog_entity d
+SET image_urls = ARRAY(
+  SELECT '/images/default_' || img.n || '.jpg'
+  FROM generate_series(1, 5) AS img(n)
+  WHERE random() < 0.5 AND d.id IS NOT NULL
+);
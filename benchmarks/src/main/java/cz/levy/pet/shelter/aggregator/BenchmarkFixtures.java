@@ -0,0 +1,43 @@
+package cz.levy.pet.shelter.aggregator;
+
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+public class BenchmarkFixtures {
+
+  /** Deterministic dogs with a realistic mix of missing attributes. */
+  public static List<DogEntity> dogs(int count) {
+    var random = new SplittableRandom(42);
+    var shelter = ShelterEntity.builder().id(1).name("Benchmark Shelter").build();
+    var dogs = new ArrayList<DogEntity>(count);
+    for (int i = 0; i < count; i++) {
+      var finalWeightMin = 3F + random.nextInt(50);
+      var imageUrls = new ArrayList<String>();
+      for (int image = random.nextInt(6); image > 0; image--) {
+        imageUrls.add("https://example.org/images/dog-" + i + "-" + image + ".jpg");
+      }
+      dogs.add(
+          DogEntity.builder()
+              .id(i + 1)
+              .externalId("dog-" + i)
+              .shelterUrl("https://example.org/dogs/" + i)
+              .name("Dog " + i)
+              .description(random.nextInt(4) == 0 ? null : "A friendly dog looking for a home")
+              .breedGuess(random.nextInt(2) == 0 ? null : "Kříženec")
+              .sex(Sex.values()[random.nextInt(Sex.values().length)])
+              .estimatedAgeInYears(random.nextInt(10) == 0 ? null : random.nextInt(150) / 10F)
+              .currentWeight(random.nextInt(7) == 0 ? null : 2F + random.nextInt(60))
+              .estimatedFinalWeightMin(finalWeightMin)
+              .estimatedFinalWeightMax(finalWeightMin + random.nextInt(10))
+              .dogAddress(random.nextInt(3) == 0 ? null : "https://example.org/shelters/1")
+              .shelter(shelter)
+              .imageUrls(imageUrls)
+              .build());
+    }
+    return dogs;
+  }
+}
@@ -0,0 +1,99 @@
+package cz.levy.pet.shelter.aggregator.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import cz.levy.pet.shelter.aggregator.api.DogRequest;
+import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Encodes and decodes the dogs of the {@code dogs.json} fixture as one {@code GET /dogs} page in
+ * each format the API negotiates, optionally gzipped like large responses of the server. JMH cannot
+ * report sizes, so the setup prints the payload size of each combination.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class DogResponseFormatBenchmark {
+
+  @Param({"json", "cbor", "smile"})
+  private String format;
+
+  @Param({"false", "true"})
+  private boolean gzip;
+
+  private List<DogResponse> page;
+  private ObjectWriter writer;
+  private ObjectReader reader;
+  private byte[] payload;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<DogRequest> dogs;
+    try (var fixture = getClass().getResourceAsStream("/dogs.json")) {
+      ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+      dogs = jsonMapper.readValue(fixture, new TypeReference<>() {});
+    }
+    page =
+        IntStream.range(0, dogs.size()).mapToObj(i -> new DogResponse(i + 1, dogs.get(i))).toList();
+
+    // Built like the mappers of Spring MVC's message converters for each format.
+    ObjectMapper mapper =
+        switch (format) {
+          case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+          case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+          default -> Jackson2ObjectMapperBuilder.json().build();
+        };
+    var pageType = mapper.getTypeFactory().constructCollectionType(List.class, DogResponse.class);
+    writer = mapper.writerFor(pageType);
+    reader = mapper.readerFor(pageType);
+
+    payload = encode();
+    System.out.printf(
+        "%n%s%s: %d bytes for %d dogs%n",
+        format, gzip ? " + gzip" : "", payload.length, page.size());
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    var output = new ByteArrayOutputStream();
+    try (OutputStream stream = gzip ? new GZIPOutputStream(output) : output) {
+      writer.writeValue(stream, page);
+    }
+    return output.toByteArray();
+  }
+
+  @Benchmark
+  public List<DogResponse> decode() throws IOException {
+    InputStream input = new ByteArrayInputStream(payload);
+    try (var stream = gzip ? new GZIPInputStream(input) : input) {
+      return reader.readValue(stream);
+    }
+  }
+}
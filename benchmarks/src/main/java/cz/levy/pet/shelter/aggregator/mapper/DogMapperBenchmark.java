@@ -0,0 +1,74 @@
+package cz.levy.pet.shelter.aggregator.mapper;
+
+import cz.levy.pet.shelter.aggregator.BenchmarkFixtures;
+import cz.levy.pet.shelter.aggregator.api.DogRequest;
+import cz.levy.pet.shelter.aggregator.api.DogResponse;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares mapping a page of dogs through {@link DogMapper#entityToDto} and {@link
+ * DogMapper#dtoToResponse} with the single-pass {@link DogMapper#entityToResponse}, and measures
+ * the ingest mapping of requests to entities. Run with {@code -prof gc} to compare allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class DogMapperBenchmark {
+
+  @Param({"100"})
+  private int pageSize;
+
+  private List<DogEntity> page;
+  private List<DogRequest> requests;
+
+  @Setup
+  public void setUp() {
+    page = BenchmarkFixtures.dogs(pageSize);
+    requests = page.stream().map(dog -> DogMapper.entityToResponse(dog).dogInfo()).toList();
+  }
+
+  @Benchmark
+  public List<DogResponse> throughDto() {
+    var responses = new ArrayList<DogResponse>(page.size());
+    for (var dogEntity : page) {
+      responses.add(DogMapper.dtoToResponse(DogMapper.entityToDto(dogEntity), dogEntity.getId()));
+    }
+    return responses;
+  }
+
+  @Benchmark
+  public List<DogResponse> singlePass() {
+    var responses = new ArrayList<DogResponse>(page.size());
+    for (var dogEntity : page) {
+      responses.add(DogMapper.entityToResponse(dogEntity));
+    }
+    return responses;
+  }
+
+  @Benchmark
+  public List<DogEntity> requestToEntity() {
+    var shelter = page.getFirst().getShelter();
+    var entities = new ArrayList<DogEntity>(requests.size());
+    for (var request : requests) {
+      entities.add(DogMapper.dtoToEntity(DogMapper.requestToDto(request), shelter));
+    }
+    return entities;
+  }
+}
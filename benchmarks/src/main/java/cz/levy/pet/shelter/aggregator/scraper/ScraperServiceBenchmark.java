@@ -0,0 +1,77 @@
+package cz.levy.pet.shelter.aggregator.scraper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import service.ScraperParsers;
+
+/** Runs the pesweb.cz scraper parsers, through {@link ScraperParsers}, on a dog detail page. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class ScraperServiceBenchmark {
+  private static final String DETAIL_PATH = "/cz/psi-k-adopci?objid=98231";
+  private static final String DETAIL_URL = "https://www.pesweb.cz" + DETAIL_PATH;
+
+  private String html;
+  private Document detail;
+
+  @Setup
+  public void setUp() throws IOException {
+    try (var fixture = getClass().getResourceAsStream("/pesweb/dog-detail.html")) {
+      html = new String(fixture.readAllBytes(), StandardCharsets.UTF_8);
+    }
+    detail = Jsoup.parse(html, DETAIL_URL);
+  }
+
+  @Benchmark
+  public Document parseHtml() {
+    return Jsoup.parse(html, DETAIL_URL);
+  }
+
+  @Benchmark
+  public void getWeight(Blackhole blackhole) {
+    blackhole.consume(ScraperParsers.weight(detail));
+  }
+
+  @Benchmark
+  public void getAge(Blackhole blackhole) {
+    blackhole.consume(ScraperParsers.age(detail));
+  }
+
+  @Benchmark
+  public void getSex(Blackhole blackhole) {
+    blackhole.consume(ScraperParsers.sex(detail));
+  }
+
+  @Benchmark
+  public void getBreed(Blackhole blackhole) {
+    blackhole.consume(ScraperParsers.breed(detail));
+  }
+
+  @Benchmark
+  public void getDescription(Blackhole blackhole) {
+    blackhole.consume(ScraperParsers.description(detail));
+  }
+
+  @Benchmark
+  public void parseDogDetail(Blackhole blackhole) {
+    blackhole.consume(ScraperParsers.parseDogDetail(DETAIL_PATH, DETAIL_URL, detail));
+  }
+}
@@ -0,0 +1,177 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import cz.levy.pet.shelter.aggregator.BenchmarkFixtures;
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.repository.DogFilterView;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import cz.levy.pet.shelter.aggregator.spec.DogFilter;
+import cz.levy.pet.shelter.aggregator.spec.DogSnapshot;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Answers listing pages from {@link DogFilterIndex}: the first and the last full page of a sex and
+ * size filtered listing, a page filtered by age, a write, and pages read by three threads while a
+ * fourth keeps writing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class DogFilterIndexBenchmark {
+  private static final DogFilter FEMALE_MEDIUM =
+      new DogFilter(null, null, Sex.FEMALE, DogSize.MEDIUM);
+  private static final DogFilter YOUNG = new DogFilter(null, 2F, null, null);
+  private static final Sort HEAVIEST_FIRST =
+      Sort.by(Sort.Direction.DESC, "currentWeight").and(Sort.by(Sort.Direction.DESC, "id"));
+
+  @Param({"10000", "100000"})
+  private int dogCount;
+
+  private List<DogEntity> dogs;
+  private DogFilterIndex index;
+  private Pageable firstPage;
+  private Pageable deepPage;
+  private SplittableRandom random;
+
+  @Setup
+  public void setUp() {
+    dogs = BenchmarkFixtures.dogs(dogCount);
+    index = new DogFilterIndex(dogRepository(dogs));
+    index.load();
+    firstPage = PageRequest.of(0, 20, HEAVIEST_FIRST);
+    var matching = dogs.stream().filter(dog -> FEMALE_MEDIUM.matches(DogSnapshot.of(dog))).count();
+    deepPage = PageRequest.of((int) (matching / 20) - 1, 20, HEAVIEST_FIRST);
+    random = new SplittableRandom(42);
+  }
+
+  @Benchmark
+  public List<Long> firstPage() {
+    return index.findPage(FEMALE_MEDIUM, firstPage);
+  }
+
+  @Benchmark
+  public List<Long> deepPage() {
+    return index.findPage(FEMALE_MEDIUM, deepPage);
+  }
+
+  @Benchmark
+  public List<Long> ageFilteredPage() {
+    return index.findPage(YOUNG, firstPage);
+  }
+
+  @Benchmark
+  public void write() {
+    changeRandomDog();
+  }
+
+  @Benchmark
+  @Group("readWhileWriting")
+  @GroupThreads(3)
+  public List<Long> readDuringWrites() {
+    return index.findPage(FEMALE_MEDIUM, deepPage);
+  }
+
+  @Benchmark
+  @Group("readWhileWriting")
+  @GroupThreads(1)
+  public void writeDuringReads() {
+    changeRandomDog();
+  }
+
+  // Moves a dog to another weight, which moves it within the current weight order.
+  private void changeRandomDog() {
+    DogEntity dog;
+    float currentWeight;
+    synchronized (this) {
+      dog = dogs.get(random.nextInt(dogs.size()));
+      currentWeight = 2F + random.nextInt(60);
+    }
+    var before = DogSnapshot.of(dog);
+    var after =
+        new DogSnapshot(
+            before.shelterId(),
+            before.name(),
+            before.sex(),
+            before.estimatedAgeInYears(),
+            currentWeight,
+            before.estimatedFinalWeightMin(),
+            before.estimatedFinalWeightMax());
+    index.onDogChanged(new DogChangedEvent(dog.getId(), before, after, 1, 0));
+  }
+
+  private static DogRepository dogRepository(List<DogEntity> dogs) {
+    var views = dogs.stream().map(DogFilterIndexBenchmark::filterView).toList();
+    return (DogRepository)
+        Proxy.newProxyInstance(
+            DogRepository.class.getClassLoader(),
+            new Class<?>[] {DogRepository.class},
+            (_, method, _) -> {
+              if (method.getName().equals("findAllFilterViewsWithSnapshot")) {
+                return new DogRepository.SnapshotFilterViews(views, "1:1:");
+              }
+              throw new UnsupportedOperationException(method.getName());
+            });
+  }
+
+  private static DogFilterView filterView(DogEntity dog) {
+    return new DogFilterView() {
+      @Override
+      public long getId() {
+        return dog.getId();
+      }
+
+      @Override
+      public long getShelterId() {
+        return dog.getShelter().getId();
+      }
+
+      @Override
+      public String getSex() {
+        return dog.getSex().name();
+      }
+
+      @Override
+      public Float getEstimatedAgeInYears() {
+        return dog.getEstimatedAgeInYears();
+      }
+
+      @Override
+      public Float getCurrentWeight() {
+        return dog.getCurrentWeight();
+      }
+
+      @Override
+      public Float getEstimatedFinalWeightMin() {
+        return dog.getEstimatedFinalWeightMin();
+      }
+
+      @Override
+      public Float getEstimatedFinalWeightMax() {
+        return dog.getEstimatedFinalWeightMax();
+      }
+    };
+  }
+}
@@ -0,0 +1,75 @@
+package cz.levy.pet.shelter.aggregator.service;
+
+import cz.levy.pet.shelter.aggregator.BenchmarkFixtures;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.repository.DogRepository;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Draws a page of random dogs with {@link DogSheltersService.RandomnessWeight}, which builds a
+ * distribution over all dogs on every call, and with the incrementally maintained {@link
+ * WeightedDogSampler}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class RandomnessWeightBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  private int dogCount;
+
+  @Param({"100"})
+  private int sampleSize;
+
+  private List<DogEntity> dogs;
+  private WeightedDogSampler sampler;
+
+  @Setup
+  public void setUp() {
+    dogs = BenchmarkFixtures.dogs(dogCount);
+    sampler = new WeightedDogSampler(emptyDogRepository());
+    // Loads the (empty) repository so that the puts below are applied.
+    sampler.size();
+    dogs.forEach(
+        dog -> sampler.put(dog.getId(), DogSheltersService.RandomnessWeight.computeWeight(dog)));
+  }
+
+  @Benchmark
+  public List<DogEntity> randomWeightedSelection() {
+    return DogSheltersService.RandomnessWeight.getRandomWeightedSelection(dogs, sampleSize);
+  }
+
+  @Benchmark
+  public List<Long> weightedDogSampler() {
+    return sampler.sample(sampleSize);
+  }
+
+  private static DogRepository emptyDogRepository() {
+    return (DogRepository)
+        Proxy.newProxyInstance(
+            DogRepository.class.getClassLoader(),
+            new Class<?>[] {DogRepository.class},
+            (_, method, _) -> {
+              if (method.getName().equals("findAllWeightViews")) {
+                return List.of();
+              }
+              throw new UnsupportedOperationException(method.getName());
+            });
+  }
+}
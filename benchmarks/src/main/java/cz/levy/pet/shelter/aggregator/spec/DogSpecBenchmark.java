@@ -0,0 +1,91 @@
+package cz.levy.pet.shelter.aggregator.spec;
+
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.domain.SortField;
+import cz.levy.pet.shelter.aggregator.entity.DogEntity;
+import cz.levy.pet.shelter.aggregator.entity.ShelterEntity;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.query.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Builds the criteria queries of dog listings from {@link DogFilter} and {@link DogSpec} up to the
+ * Hibernate query object. Hibernate runs without a database, so executing the query is not
+ * measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+public class DogSpecBenchmark {
+  private static final int PAGE_SIZE = 100;
+
+  private SessionFactory sessionFactory;
+  private Session session;
+  private DogCursor cursor;
+
+  @Setup
+  public void setUp() {
+    sessionFactory =
+        new Configuration()
+            .addAnnotatedClass(DogEntity.class)
+            .addAnnotatedClass(ShelterEntity.class)
+            .setProperty("hibernate.dialect", PostgreSQLDialect.class.getName())
+            .setProperty("hibernate.boot.allow_jdbc_metadata_access", "false")
+            .buildSessionFactory();
+    session = sessionFactory.openSession();
+    cursor = new DogCursor(SortField.NAME, Direction.ASC, "Dog 500", 500);
+  }
+
+  @TearDown
+  public void tearDown() {
+    session.close();
+    sessionFactory.close();
+  }
+
+  @Benchmark
+  public Query<DogEntity> unfilteredPage() {
+    return createQuery(new DogFilter(null, null, null, null).toSpecification());
+  }
+
+  @Benchmark
+  public Query<DogEntity> filteredPage() {
+    return createQuery(new DogFilter(2F, 8F, Sex.FEMALE, DogSize.MEDIUM).toSpecification());
+  }
+
+  @Benchmark
+  public Query<DogEntity> filteredSliceAfterCursor() {
+    return createQuery(
+        new DogFilter(null, null, Sex.MALE, DogSize.LARGE)
+            .toSpecification()
+            .and(DogSpec.after(cursor)));
+  }
+
+  private Query<DogEntity> createQuery(Specification<DogEntity> spec) {
+    var cb = session.getCriteriaBuilder();
+    var query = cb.createQuery(DogEntity.class);
+    var root = query.from(DogEntity.class);
+    query.where(spec.toPredicate(root, query, cb));
+    query.orderBy(cb.asc(root.get(SortField.NAME.getFieldName())), cb.asc(root.get("id")));
+    return session.createQuery(query).setMaxResults(PAGE_SIZE + 1);
+  }
+}
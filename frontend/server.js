@@ -6,6 +6,8 @@ import path from 'path';
 const app = express();
 const PORT = process.env.PORT || 5000;
 const BACKEND = process.env.BACKEND_URL || 'http://localhost:8080';
+const IMAGE_WIDTH = 640;
+const IMAGE_HEADERS = ['content-type', 'content-length', 'etag', 'cache-control'];
 
 app.use(cors());
 
@@ -21,34 +23,49 @@ app.get('/api/dogs', async (req, res) => {
     }
     const dogs = await response.json();
 
-    const dataUris = await Promise.all(
-      dogs.map(async dog => {
-        const info = dog.dogInfo || {};
-        const externalId = info.externalId;
-        const urls = info.imageUrls;
-        if (!Array.isArray(urls) || urls.length === 0) {
-          return null;
-        }
-        const imgUrl = urls[0];
-        try {
-          const imgRes = await fetch(imgUrl);
-          const buffer = await imgRes.buffer();
-          const contentType = imgRes.headers.get('content-type') || 'image/jpeg';
-          const base64 = buffer.toString('base64');
-          return `data:${contentType};base64,${base64}`;
-        } catch (err) {
-          return null;
-        }
-      })
-    );
+    // The backend downloads, resizes and caches the images, so the browser only gets their URLs.
+    const imageUrls = dogs.map(dog => {
+      const urls = (dog.dogInfo || {}).imageUrls;
+      if (!Array.isArray(urls) || urls.length === 0) {
+        return null;
+      }
+      return `/api/dogs/${dog.internalId}/images/0?w=${IMAGE_WIDTH}`;
+    });
 
-    res.json(dataUris);
+    res.json(imageUrls);
 
   } catch (e) {
     res.status(500).json({ error: 'Internal server error' });
   }
 });
 
+app.get('/api/dogs/:id/images/:n', async (req, res) => {
+  const { id, n } = req.params;
+  const width = parseInt(req.query.w, 10);
+  const query = Number.isNaN(width) ? '' : `?w=${width}`;
+  const headers = {};
+  if (req.headers['if-none-match']) {
+    headers['If-None-Match'] = req.headers['if-none-match'];
+  }
+
+  try {
+    const response = await fetch(
+      `${BACKEND}/dogs/${encodeURIComponent(id)}/images/${encodeURIComponent(n)}${query}`,
+      { headers }
+    );
+    res.status(response.status);
+    IMAGE_HEADERS.forEach(name => {
+      const value = response.headers.get(name);
+      if (value) {
+        res.set(name, value);
+      }
+    });
+    response.body.pipe(res);
+  } catch (e) {
+    res.status(502).json({ error: 'Error fetching image' });
+  }
+});
+
 app.listen(PORT, () => {
   console.log(`Node.js proxy listening on port ${PORT}`);
 });
\ No newline at end of file
@@ -1,19 +1,48 @@
 package config;
 
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import java.time.Duration;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import service.HostLimiter;
+import service.ScrapePipeline;
 
 @Configuration
 public class ScraperConfig {
-  @Bean("scraperExecutor")
-  public ThreadPoolTaskExecutor scraperExecutor() {
-    ThreadPoolTaskExecutor exec = new ThreadPoolTaskExecutor();
-    exec.setCorePoolSize(12);
-    exec.setMaxPoolSize(12);
-    exec.setQueueCapacity(500); // buffer up to 500 pending tasks
-    exec.setThreadNamePrefix("scraper-");
-    exec.initialize();
-    return exec;
+  @Bean
+  public ScrapePipeline.Settings scrapePipelineSettings(
+      @Value("${scrape.detail-fetches-in-flight:64}") int detailFetchesInFlight,
+      @Value("${scrape.parsers:2}") int parsers,
+      @Value("${scrape.queue-capacity:256}") int queueCapacity,
+      @Value("${scrape.flush-size:100}") int flushSize,
+      @Value("${scrape.flush-interval:2s}") Duration flushInterval) {
+    return new ScrapePipeline.Settings(
+        detailFetchesInFlight, parsers, queueCapacity, flushSize, flushInterval);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "scrape.sink", havingValue = "kafka")
+  public KafkaTemplate<String, DogDto> dogKafkaTemplate(KafkaProperties kafkaProperties) {
+    var properties = kafkaProperties.buildProducerProperties(null);
+    properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+    properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+    properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+    properties.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, false);
+    return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(properties));
+  }
+
+  @Bean
+  public HostLimiter hostLimiter(
+      @Value("${scrape.max-requests-per-host:4}") int maxRequestsPerHost,
+      @Value("${scrape.min-request-interval:100ms}") Duration minRequestInterval) {
+    return new HostLimiter(maxRequestsPerHost, minRequestInterval);
   }
 }
@@ -0,0 +1,44 @@
+package service;
+
+import cz.levy.pet.shelter.aggregator.entity.CrawlStateEntity;
+import cz.levy.pet.shelter.aggregator.repository.CrawlStateRepository;
+import java.util.Collection;
+import org.springframework.stereotype.Component;
+
+@Component
+public class BackendCrawlStateStore implements CrawlStateStore {
+  private final CrawlStateRepository crawlStateRepository;
+
+  public BackendCrawlStateStore(CrawlStateRepository crawlStateRepository) {
+    this.crawlStateRepository = crawlStateRepository;
+  }
+
+  @Override
+  public CrawlState find(String url) {
+    return crawlStateRepository
+        .findById(url)
+        .map(
+            entity ->
+                new CrawlState(
+                    entity.getUrl(),
+                    entity.getEtag(),
+                    entity.getLastModified(),
+                    entity.getContentHash()))
+        .orElse(null);
+  }
+
+  @Override
+  public void saveAll(Collection<CrawlState> states) {
+    crawlStateRepository.saveAll(
+        states.stream()
+            .map(
+                state ->
+                    CrawlStateEntity.builder()
+                        .url(state.url())
+                        .etag(state.etag())
+                        .lastModified(state.lastModified())
+                        .contentHash(state.contentHash())
+                        .build())
+            .toList());
+  }
+}
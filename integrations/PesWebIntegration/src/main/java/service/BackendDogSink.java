@@ -0,0 +1,36 @@
+package service;
+
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.service.DogIngestService;
+import java.util.LinkedHashMap;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "scrape.sink", havingValue = "backend", matchIfMissing = true)
+public class BackendDogSink implements DogSink {
+  private final DogIngestService dogIngestService;
+
+  public BackendDogSink(DogIngestService dogIngestService) {
+    this.dogIngestService = dogIngestService;
+  }
+
+  @Override
+  public void write(List<DogDto> dogs) {
+    var dogsByIndex = new LinkedHashMap<Integer, DogDto>();
+    for (int index = 0; index < dogs.size(); index++) {
+      dogsByIndex.put(index, dogs.get(index));
+    }
+    dogIngestService.upsertDogs(dogsByIndex).stream()
+        .filter(result -> result.internalId() == null)
+        .forEach(
+            result ->
+                log.warn(
+                    "Dog {} was not stored: {}",
+                    dogs.get(result.index()).getExternalId(),
+                    result.message()));
+  }
+}
@@ -0,0 +1,25 @@
+package service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/** The validators and the parsed content last seen at a detail page URL. */
+public record CrawlState(String url, String etag, String lastModified, String contentHash) {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  static String contentHash(DogDto dog) {
+    try {
+      var digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of()
+          .formatHex(
+              digest.digest(MAPPER.writeValueAsString(dog).getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+      throw new IllegalStateException("Could not hash dog " + dog.getExternalId(), e);
+    }
+  }
+}
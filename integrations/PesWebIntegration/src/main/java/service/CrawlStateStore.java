@@ -0,0 +1,22 @@
+package service;
+
+import java.util.Collection;
+
+/** Persists {@link CrawlState}s between crawls so that unchanged pages can be skipped. */
+public interface CrawlStateStore {
+  CrawlStateStore NONE =
+      new CrawlStateStore() {
+        @Override
+        public CrawlState find(String url) {
+          return null;
+        }
+
+        @Override
+        public void saveAll(Collection<CrawlState> states) {}
+      };
+
+  /** Returns the state saved for the detail page URL, or null when none was. */
+  CrawlState find(String url);
+
+  void saveAll(Collection<CrawlState> states);
+}
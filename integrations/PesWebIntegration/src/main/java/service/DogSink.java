@@ -0,0 +1,9 @@
+package service;
+
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import java.util.List;
+
+/** Destination of scraped dogs, receiving them in batches as the crawl progresses. */
+public interface DogSink {
+  void write(List<DogDto> dogs);
+}
@@ -0,0 +1,66 @@
+package service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Politeness limit for outgoing requests: at most {@code maxConcurrent} requests run against one
+ * host at a time, and their starts are spaced at least {@code minInterval} apart.
+ */
+public class HostLimiter {
+  private final int maxConcurrent;
+  private final long minIntervalNanos;
+  private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+  public HostLimiter(int maxConcurrent, Duration minInterval) {
+    this.maxConcurrent = maxConcurrent;
+    this.minIntervalNanos = minInterval.toNanos();
+  }
+
+  public static HostLimiter defaults() {
+    return new HostLimiter(4, Duration.ofMillis(100));
+  }
+
+  <T> T call(String url, Request<T> request) throws IOException, InterruptedException {
+    var host = hosts.computeIfAbsent(URI.create(url).getHost(), _ -> new Host(maxConcurrent));
+    host.permits.acquire();
+    try {
+      host.awaitTurn(minIntervalNanos);
+      return request.send();
+    } finally {
+      host.permits.release();
+    }
+  }
+
+  @FunctionalInterface
+  interface Request<T> {
+    T send() throws IOException;
+  }
+
+  private static final class Host {
+    private final Semaphore permits;
+    private final AtomicLong nextStart = new AtomicLong(System.nanoTime());
+
+    private Host(int maxConcurrent) {
+      permits = new Semaphore(maxConcurrent, true);
+    }
+
+    // Reserves the next free start slot and sleeps until it arrives.
+    private void awaitTurn(long minIntervalNanos) throws InterruptedException {
+      if (minIntervalNanos == 0) {
+        return;
+      }
+      var now = System.nanoTime();
+      var slotEnd =
+          nextStart.accumulateAndGet(
+              now, (next, current) -> Math.max(next, current) + minIntervalNanos);
+      TimeUnit.NANOSECONDS.sleep(slotEnd - minIntervalNanos - now);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/** Streams dogs into a JSON array file instead of collecting them before writing. */
+public class JsonFileDogSink implements DogSink, Closeable {
+  private final JsonGenerator generator;
+
+  public JsonFileDogSink(File file) throws IOException {
+    var mapper = new ObjectMapper();
+    generator = mapper.createGenerator(file, JsonEncoding.UTF8);
+    generator.useDefaultPrettyPrinter();
+    generator.writeStartArray();
+  }
+
+  @Override
+  public synchronized void write(List<DogDto> dogs) {
+    try {
+      for (var dog : dogs) {
+        generator.writeObject(dog);
+      }
+      generator.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    generator.writeEndArray();
+    generator.close();
+  }
+}
@@ -0,0 +1,49 @@
+package service;
+
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes scraped dogs as change events for the backend's Kafka listener. Records are keyed by
+ * (shelterId, externalId) so that every change of one dog lands on the same partition in order.
+ */
+@Component
+@ConditionalOnProperty(name = "scrape.sink", havingValue = "kafka")
+public class KafkaDogSink implements DogSink {
+  private final KafkaTemplate<String, DogDto> kafkaTemplate;
+  private final String topic;
+
+  public KafkaDogSink(
+      KafkaTemplate<String, DogDto> dogKafkaTemplate,
+      @Value("${ingest.kafka.topic:dog-changes}") String topic) {
+    this.kafkaTemplate = dogKafkaTemplate;
+    this.topic = topic;
+  }
+
+  // Waits for the broker to acknowledge the batch so crawl states are only saved for sent dogs.
+  @Override
+  public void write(List<DogDto> dogs) {
+    var sends =
+        dogs.stream()
+            .map(dog -> kafkaTemplate.send(topic, key(dog), dog))
+            .toArray(CompletableFuture[]::new);
+    try {
+      CompletableFuture.allOf(sends).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while publishing dogs", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Failed to publish dogs", e.getCause());
+    }
+  }
+
+  static String key(DogDto dog) {
+    return dog.getShelterId() + ":" + dog.getExternalId();
+  }
+}
@@ -0,0 +1,83 @@
+package service;
+
+import java.io.IOException;
+import java.util.List;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+@Component
+public class PesWebClient {
+  public static final String DEFAULT_BASE_URL = "https://www.pesweb.cz";
+  private static final String SEARCH_DOGS = "/cz/psi-k-adopci";
+  private static final int PAGE_SIZE = 52;
+  private static final int NOT_MODIFIED = 304;
+
+  private final String baseUrl;
+  private final HostLimiter hostLimiter;
+
+  public PesWebClient(
+      @Value("${scrape.base-url:" + DEFAULT_BASE_URL + "}") String baseUrl,
+      HostLimiter hostLimiter) {
+    this.baseUrl = baseUrl;
+    this.hostLimiter = hostLimiter;
+  }
+
+  String getBaseUrl() {
+    return baseUrl;
+  }
+
+  int fetchLastPage() throws IOException, InterruptedException {
+    Document doc = get(baseUrl + SEARCH_DOGS);
+    Element pager = doc.selectFirst("div.pager");
+    return Integer.parseInt(pager.select("a[rel=next]").last().text());
+  }
+
+  List<String> fetchDetailPaths(int page) throws IOException, InterruptedException {
+    Document pageDoc = get(baseUrl + SEARCH_DOGS + "?start=" + page * PAGE_SIZE);
+    return pageDoc.select("div.object-item a").stream().map(el -> el.attr("href")).toList();
+  }
+
+  /**
+   * Fetches a detail page with a conditional GET against the validators in {@code previous}.
+   * Returns null when the server answers 304 Not Modified.
+   */
+  DetailPage fetchDetail(String detailPath, CrawlState previous)
+      throws IOException, InterruptedException {
+    var url = baseUrl + detailPath;
+    var connection = connect(url);
+    if (previous != null && previous.etag() != null) {
+      connection.header("If-None-Match", previous.etag());
+    }
+    if (previous != null && previous.lastModified() != null) {
+      connection.header("If-Modified-Since", previous.lastModified());
+    }
+    return hostLimiter.call(
+        url,
+        () -> {
+          var response = connection.execute();
+          if (response.statusCode() == NOT_MODIFIED) {
+            return null;
+          }
+          return new DetailPage(
+              detailPath,
+              url,
+              response.parse(),
+              response.header("ETag"),
+              response.header("Last-Modified"));
+        });
+  }
+
+  private Document get(String url) throws IOException, InterruptedException {
+    return hostLimiter.call(url, () -> connect(url).get());
+  }
+
+  private static Connection connect(String url) {
+    return Jsoup.connect(url).userAgent("MyScraper/1.0").timeout(10_000);
+  }
+
+  record DetailPage(String path, String url, Document document, String etag, String lastModified) {}
+}
@@ -0,0 +1,258 @@
+package service;
+
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import service.PesWebClient.DetailPage;
+
+/**
+ * One crawl of pesweb.cz as four stages joined by bounded queues: list pages yield detail paths,
+ * detail pages are fetched, parsed into dogs and written to the sink in batches. The pages and dogs
+ * held at once are bounded by the queue capacities and the flush size rather than by the number of
+ * dogs. Only the set of detail paths already listed, which drops the duplicates that appear when
+ * the listing shifts during a crawl, grows with the catalogue, by one path per dog.
+ *
+ * <p>Detail pages are fetched with conditional GETs against the {@link CrawlState} stored for each
+ * page, looked up as the page is fetched, and dogs whose parsed content hashes the same as last
+ * time are not written again.
+ */
+@Slf4j
+public class ScrapePipeline {
+
+  /**
+   * @param detailFetchesInFlight caps the detail fetches started but not yet handed to the parsers;
+   *     how many requests actually run at once is up to the client's {@link HostLimiter}
+   * @param flushSize the writer flushes once this many dogs are buffered
+   * @param flushInterval the writer flushes a partial batch once its oldest dog waited this long
+   */
+  public record Settings(
+      int detailFetchesInFlight,
+      int parsers,
+      int queueCapacity,
+      int flushSize,
+      Duration flushInterval) {
+
+    public static Settings defaults() {
+      return new Settings(64, 2, 256, 100, Duration.ofSeconds(2));
+    }
+  }
+
+  private final PesWebClient client;
+  private final CrawlStateStore crawlStateStore;
+  private final DogSink sink;
+  private final Settings settings;
+  private final AtomicLong unchanged = new AtomicLong();
+
+  public ScrapePipeline(
+      PesWebClient client, CrawlStateStore crawlStateStore, DogSink sink, Settings settings) {
+    this.client = client;
+    this.crawlStateStore = crawlStateStore;
+    this.sink = sink;
+    this.settings = settings;
+  }
+
+  /**
+   * Runs a full crawl and returns the number of dogs handed to the sink. Every stage and every
+   * detail fetch runs in its own virtual thread inside one task scope, so the crawl returns only
+   * once all of them have finished.
+   */
+  public long run() throws InterruptedException {
+    var capacity = settings.queueCapacity();
+    var detailPaths = new StageQueue<String>(capacity, 1, 1);
+    var detailPages = new StageQueue<FetchedPage>(capacity, 1, settings.parsers());
+    var dogs = new StageQueue<ScrapedDog>(capacity, settings.parsers(), 1);
+    var written = new AtomicLong();
+
+    try (var scope = new StructuredTaskScope<Void>()) {
+      fork(scope, "list", detailPaths, () -> listDetailPaths(detailPaths));
+      fork(scope, "fetch", detailPages, () -> fetchDetails(scope, detailPaths, detailPages));
+      for (int i = 0; i < settings.parsers(); i++) {
+        fork(scope, "parse", dogs, () -> parseDetails(detailPages, dogs));
+      }
+      fork(scope, "write", null, () -> writeDogs(dogs, written));
+      scope.join();
+    }
+    log.info("Scrape finished, {} dogs written, {} unchanged", written.get(), unchanged.get());
+    return written.get();
+  }
+
+  private void listDetailPaths(StageQueue<String> detailPaths)
+      throws IOException, InterruptedException {
+    var seen = new HashSet<String>();
+    var lastPage = client.fetchLastPage();
+    for (int page = 0; page < lastPage; page++) {
+      List<String> paths;
+      try {
+        paths = client.fetchDetailPaths(page);
+      } catch (IOException e) {
+        log.warn("Skipping list page {}: {}", page, e.getMessage());
+        continue;
+      }
+      for (var path : paths) {
+        if (seen.add(path)) {
+          detailPaths.put(path);
+        }
+      }
+    }
+  }
+
+  private void fetchDetails(
+      StructuredTaskScope<Void> scope,
+      StageQueue<String> detailPaths,
+      StageQueue<FetchedPage> detailPages)
+      throws InterruptedException {
+    var inFlight = new Semaphore(settings.detailFetchesInFlight());
+    for (String path; (path = detailPaths.take()) != null; ) {
+      inFlight.acquire();
+      var detailPath = path;
+      scope.fork(
+          () -> {
+            try {
+              fetchDetail(detailPath, detailPages);
+            } finally {
+              inFlight.release();
+            }
+            return null;
+          });
+    }
+    // Holding every permit means all forked fetches have finished.
+    inFlight.acquire(settings.detailFetchesInFlight());
+  }
+
+  private void fetchDetail(String path, StageQueue<FetchedPage> detailPages)
+      throws InterruptedException {
+    var previous = findCrawlState(client.getBaseUrl() + path);
+    DetailPage page;
+    try {
+      page = client.fetchDetail(path, previous);
+    } catch (IOException e) {
+      log.warn("Skipping dog {}: {}", path, e.getMessage());
+      return;
+    }
+    if (page == null) {
+      unchanged.incrementAndGet();
+    } else {
+      detailPages.put(new FetchedPage(page, previous));
+    }
+  }
+
+  // Without its state a page is fetched and written in full, which costs time but loses nothing.
+  private CrawlState findCrawlState(String url) {
+    try {
+      return crawlStateStore.find(url);
+    } catch (RuntimeException e) {
+      log.warn("Could not read the crawl state of {}: {}", url, e.toString());
+      return null;
+    }
+  }
+
+  private void parseDetails(StageQueue<FetchedPage> detailPages, StageQueue<ScrapedDog> dogs)
+      throws InterruptedException {
+    for (FetchedPage fetched; (fetched = detailPages.take()) != null; ) {
+      var page = fetched.page();
+      DogDto dog;
+      try {
+        dog = ScraperService.parseDogDetail(page.path(), page.url(), page.document());
+      } catch (RuntimeException e) {
+        log.warn("Could not parse dog {}: {}", page.path(), e.toString());
+        continue;
+      }
+      var previous = fetched.previous();
+      var state =
+          new CrawlState(page.url(), page.etag(), page.lastModified(), CrawlState.contentHash(dog));
+      if (state.equals(previous)) {
+        unchanged.incrementAndGet();
+      } else if (previous != null && state.contentHash().equals(previous.contentHash())) {
+        // Only the validators moved, so remember them without rewriting the dog.
+        unchanged.incrementAndGet();
+        dogs.put(new ScrapedDog(null, state));
+      } else {
+        dogs.put(new ScrapedDog(dog, state));
+      }
+    }
+  }
+
+  private void writeDogs(StageQueue<ScrapedDog> dogs, AtomicLong written)
+      throws InterruptedException {
+    var buffer = new ArrayList<ScrapedDog>(settings.flushSize());
+    var flushIntervalNanos = settings.flushInterval().toNanos();
+    var deadline = 0L;
+    while (true) {
+      var dog =
+          buffer.isEmpty()
+              ? dogs.take()
+              : dogs.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      if (dog != null) {
+        if (buffer.isEmpty()) {
+          deadline = System.nanoTime() + flushIntervalNanos;
+        }
+        buffer.add(dog);
+        if (buffer.size() < settings.flushSize()) {
+          continue;
+        }
+      }
+      flush(buffer, written);
+      if (dog == null && dogs.isFinished()) {
+        return;
+      }
+    }
+  }
+
+  // A failing batch is logged and dropped so the writer keeps draining and upstream never stalls.
+  // Crawl states are saved only after their dogs, so a failed batch is retried by the next crawl.
+  private void flush(List<ScrapedDog> buffer, AtomicLong written) {
+    if (buffer.isEmpty()) {
+      return;
+    }
+    var changedDogs = buffer.stream().map(ScrapedDog::dog).filter(Objects::nonNull).toList();
+    try {
+      if (!changedDogs.isEmpty()) {
+        sink.write(changedDogs);
+      }
+      crawlStateStore.saveAll(buffer.stream().map(ScrapedDog::state).toList());
+      written.addAndGet(changedDogs.size());
+    } catch (RuntimeException e) {
+      log.error("Failed to write {} dogs", changedDogs.size(), e);
+    }
+    buffer.clear();
+  }
+
+  private static void fork(
+      StructuredTaskScope<Void> scope, String stage, StageQueue<?> output, Stage task) {
+    scope.fork(
+        () -> {
+          try {
+            task.run();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (Exception e) {
+            log.error("Scrape stage {} failed", stage, e);
+          } finally {
+            if (output != null) {
+              output.producerDone();
+            }
+          }
+          return null;
+        });
+  }
+
+  @FunctionalInterface
+  private interface Stage {
+    void run() throws Exception;
+  }
+
+  // The state the page was fetched against, null for a page not crawled before.
+  private record FetchedPage(DetailPage page, CrawlState previous) {}
+
+  // A null dog means only the crawl state needs saving.
+  private record ScrapedDog(DogDto dog, CrawlState state) {}
+}
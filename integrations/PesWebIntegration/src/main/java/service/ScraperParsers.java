@@ -0,0 +1,40 @@
+package service;
+
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.data.util.Pair;
+
+/**
+ * Public entry points to the pesweb.cz detail page parsers of {@link ScraperService}, for callers
+ * outside this package such as the benchmarks.
+ */
+public final class ScraperParsers {
+
+  private ScraperParsers() {}
+
+  public static DogDto parseDogDetail(String detailPath, String url, Document detail) {
+    return ScraperService.parseDogDetail(detailPath, url, detail);
+  }
+
+  public static String description(Element detail) {
+    return ScraperService.getDescription(detail);
+  }
+
+  public static Pair<Integer, Integer> weight(Element detail) {
+    return ScraperService.getWeight(detail);
+  }
+
+  public static Float age(Element detail) {
+    return ScraperService.getAge(detail);
+  }
+
+  public static Sex sex(Element detail) {
+    return ScraperService.getSex(detail);
+  }
+
+  public static String breed(Element detail) {
+    return ScraperService.getBreed(detail);
+  }
+}
@@ -3,13 +3,9 @@ package service;
 import cz.levy.pet.shelter.aggregator.domain.DogSize;
 import cz.levy.pet.shelter.aggregator.domain.Sex;
 import cz.levy.pet.shelter.aggregator.dto.DogDto;
-import java.io.IOException;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.task.TaskExecutor;
 import org.springframework.data.util.Pair;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -17,83 +13,57 @@ import org.springframework.stereotype.Service;
 @Service
 public class ScraperService {
 
-  private static final String BASE = "https://www.pesweb.cz";
-  private static final int PAGE_SIZE = 52;
-  private static final String SEARCH_DOGS = "/cz/psi-k-adopci";
   private static final String LEGAL_DISCLAIMER =
       "Žádná část těchto stránek, včetně fotografií, nesmí být kopírována a rozmnožována za účelem rozšiřování v jakékoliv formě či jakýmkoliv způsobem bez písemného souhlasu provozovatele portálu.";
 
-  @Autowired private TaskExecutor scraperExecutor;
-
-  @Scheduled(fixedDelayString = "${scrape.interval:3600000}")
-  public void dispatchPages() throws Exception {
-    Document doc =
-        Jsoup.connect(BASE + SEARCH_DOGS).userAgent("MyScraper/1.0").timeout(10_000).get();
-
-    Element pager = doc.selectFirst("div.pager");
-    int lastPage = Integer.parseInt(pager.select("a[rel=next]").last().text());
-
-    for (int page = 0; page < lastPage; page++) {
-      final int offset = page * PAGE_SIZE;
-      scraperExecutor.execute(() -> scrapeDogListPage(offset));
-    }
-  }
-
-  private void scrapeDogListPage(int offset) {
-    try {
-      Document pageDoc =
-          Jsoup.connect(BASE + SEARCH_DOGS + "?start=" + offset)
-              .userAgent("MyScraper/1.0")
-              .timeout(10_000)
-              .get();
-
-      pageDoc.select("div.object-item ").stream()
-          .map(el -> el.attr("href"))
-          .forEach(this::submitDogDetailJob);
-
-    } catch (IOException e) {
-    }
+  private final PesWebClient pesWebClient;
+  private final CrawlStateStore crawlStateStore;
+  private final DogSink dogSink;
+  private final ScrapePipeline.Settings pipelineSettings;
+
+  public ScraperService(
+      PesWebClient pesWebClient,
+      CrawlStateStore crawlStateStore,
+      DogSink dogSink,
+      ScrapePipeline.Settings pipelineSettings) {
+    this.pesWebClient = pesWebClient;
+    this.crawlStateStore = crawlStateStore;
+    this.dogSink = dogSink;
+    this.pipelineSettings = pipelineSettings;
   }
 
-  private void submitDogDetailJob(String dogUrl) {
-    scraperExecutor.execute(() -> scrapeDogDetail(dogUrl));
+  @Scheduled(fixedDelayString = "${scrape.interval:3600000}")
+  public void dispatchPages() throws InterruptedException {
+    new ScrapePipeline(pesWebClient, crawlStateStore, dogSink, pipelineSettings).run();
   }
 
-  private static DogDto scrapeDogDetail(String url) {
-    try {
-      var fullUrl = BASE + url;
-      Document detail = Jsoup.connect(fullUrl).userAgent("MyScraper/1.0").timeout(10_000).get();
-
-      var externalId = url.replace("/cz/psi-k-adopci?objid=", "");
-      Elements imageLinkElements = detail.select("div.gallery-basic a[data-fancybox]");
-      var imageLinks = imageLinkElements.stream().map(link -> link.absUrl("href")).toList();
-
-      var dogName = detail.selectFirst(".nadpis").text();
-      var breedGuess = getBreed(detail);
-      var sex = getSex(detail);
-      var age = getAge(detail);
-      var dogSize = getWeight(detail);
-      var dogAddress = getAddress(detail);
-      var dogDescription = getDescription(detail);
-
-      return DogDto.builder()
-          .shelterId(1L)
-          .externalId(externalId)
-          .imageUrls(imageLinks)
-          .estimatedAgeInYears(age)
-          .estimatedFinalWeightMin(dogSize.getFirst().floatValue())
-          .estimatedFinalWeightMax(dogSize.getSecond().floatValue())
-          .shelterUrl(fullUrl)
-          .name(dogName)
-          .breedGuess(breedGuess)
-          .sex(sex)
-          .dogAddress(dogAddress)
-          .description(dogDescription)
-          .build();
-
-    } catch (IOException e) {
-      return null;
-    }
+  static DogDto parseDogDetail(String detailPath, String url, Document detail) {
+    var externalId = detailPath.replace("/cz/psi-k-adopci?objid=", "");
+    Elements imageLinkElements = detail.select("div.gallery-basic a[data-fancybox]");
+    var imageLinks = imageLinkElements.stream().map(link -> link.absUrl("href")).toList();
+
+    var dogName = detail.selectFirst(".nadpis").text();
+    var breedGuess = getBreed(detail);
+    var sex = getSex(detail);
+    var age = getAge(detail);
+    var dogSize = getWeight(detail);
+    var dogAddress = getAddress(detail);
+    var dogDescription = getDescription(detail);
+
+    return DogDto.builder()
+        .shelterId(1L)
+        .externalId(externalId)
+        .imageUrls(imageLinks)
+        .estimatedAgeInYears(age)
+        .estimatedFinalWeightMin(dogSize.getFirst().floatValue())
+        .estimatedFinalWeightMax(dogSize.getSecond().floatValue())
+        .shelterUrl(url)
+        .name(dogName)
+        .breedGuess(breedGuess)
+        .sex(sex)
+        .dogAddress(dogAddress)
+        .description(dogDescription)
+        .build();
   }
 
   static String getDescription(Element detail) {
@@ -125,15 +95,7 @@ public class ScraperService {
   }
 
   static String getAddress(Element detail) {
-    String address =
-        detail
-            .selectFirst("tr:contains(umístění) td")
-            .childNodes()
-            .getFirst()
-            .attributes()
-            .attribute("href")
-            .getValue();
-    return BASE + address;
+    return detail.selectFirst("tr:contains(umístění) td").childNodes().getFirst().absUrl("href");
   }
 
   static Float getAge(Element detail) {
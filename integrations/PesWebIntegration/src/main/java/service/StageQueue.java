@@ -0,0 +1,64 @@
+package service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded hand-off between two pipeline stages. {@link #put} blocks while the queue is full, which
+ * throttles the upstream stage to the pace of the downstream one. Once every producer has called
+ * {@link #producerDone}, each consumer receives an end marker and {@link #take} returns null.
+ */
+class StageQueue<T> {
+  private static final Object END = new Object();
+
+  private final BlockingQueue<Object> queue;
+  private final AtomicInteger openProducers;
+  private final int consumers;
+  private volatile boolean finished;
+
+  StageQueue(int capacity, int producers, int consumers) {
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.openProducers = new AtomicInteger(producers);
+    this.consumers = consumers;
+  }
+
+  void put(T item) throws InterruptedException {
+    queue.put(item);
+  }
+
+  void producerDone() throws InterruptedException {
+    if (openProducers.decrementAndGet() == 0) {
+      for (int i = 0; i < consumers; i++) {
+        queue.put(END);
+      }
+    }
+  }
+
+  /** Returns the next item, or null once the producers are done. */
+  T take() throws InterruptedException {
+    return unwrap(queue.take());
+  }
+
+  /**
+   * Returns the next item, or null when none arrived within the timeout or the producers are done.
+   * The two cases are told apart by {@link #isFinished}, so this is meant for a single consumer.
+   */
+  T poll(long timeout, TimeUnit unit) throws InterruptedException {
+    return unwrap(queue.poll(timeout, unit));
+  }
+
+  boolean isFinished() {
+    return finished;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T unwrap(Object item) {
+    if (item == END) {
+      finished = true;
+      return null;
+    }
+    return (T) item;
+  }
+}
@@ -0,0 +1,132 @@
+package service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class HostLimiterTest {
+  private static final String HOST_A = "https://a.example/dogs";
+  private static final String HOST_B = "https://b.example/dogs";
+  private static final int CALLS = 8;
+
+  @Test
+  public void atMostMaxConcurrentCallsRunAgainstAHost() throws Exception {
+    var limiter = new HostLimiter(2, Duration.ZERO);
+    var inFlight = new AtomicInteger();
+    var mostInFlight = new AtomicInteger();
+
+    callConcurrently(
+        limiter,
+        HOST_A,
+        () -> {
+          mostInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          sleep(Duration.ofMillis(50));
+          inFlight.decrementAndGet();
+          return null;
+        });
+
+    assertThat(mostInFlight).hasValue(2);
+  }
+
+  @Test
+  public void startsAgainstAHostAreSpacedByTheMinInterval() throws Exception {
+    var minInterval = Duration.ofMillis(40);
+    var limiter = new HostLimiter(CALLS, minInterval);
+
+    var starts = new ArrayList<>(callConcurrently(limiter, HOST_A, System::nanoTime));
+
+    Collections.sort(starts);
+    // A start is recorded a little after its slot begins, so allow for that delay.
+    var tolerance = TimeUnit.MILLISECONDS.toNanos(5);
+    for (int i = 1; i < starts.size(); i++) {
+      assertThat(starts.get(i) - starts.get(i - 1))
+          .as("gap before start %d", i)
+          .isGreaterThanOrEqualTo(minInterval.toNanos() - tolerance);
+    }
+    assertThat(starts.getLast() - starts.getFirst())
+        .isGreaterThanOrEqualTo((CALLS - 1) * minInterval.toNanos() - tolerance);
+  }
+
+  @Test
+  public void hostsDoNotShareTheirConcurrencyLimit() throws Exception {
+    var limiter = new HostLimiter(1, Duration.ZERO);
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var blocking =
+          executor.submit(
+              () ->
+                  limiter.call(
+                      HOST_A,
+                      () -> {
+                        started.countDown();
+                        await(release);
+                        return "a";
+                      }));
+      started.await();
+
+      var other = executor.submit(() -> limiter.call(HOST_B, () -> "b"));
+
+      assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo("b");
+      assertThat(blocking.isDone()).isFalse();
+      release.countDown();
+      assertThat(blocking.get(5, TimeUnit.SECONDS)).isEqualTo("a");
+    }
+  }
+
+  @Test
+  public void hostsDoNotShareTheirMinInterval() throws Exception {
+    var minInterval = Duration.ofSeconds(1);
+    var limiter = new HostLimiter(1, minInterval);
+    limiter.call(HOST_A, () -> null);
+
+    var before = System.nanoTime();
+    limiter.call(HOST_B, () -> null);
+    var other = System.nanoTime() - before;
+    limiter.call(HOST_A, () -> null);
+    var same = System.nanoTime() - before;
+
+    assertThat(other).isLessThan(minInterval.toNanos() / 2);
+    assertThat(same).isGreaterThanOrEqualTo(minInterval.toNanos() / 2);
+  }
+
+  private static <T> List<T> callConcurrently(
+      HostLimiter limiter, String url, HostLimiter.Request<T> request) throws Exception {
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var futures = new ArrayList<Future<T>>();
+      for (int i = 0; i < CALLS; i++) {
+        futures.add(executor.submit(() -> limiter.call(url, request)));
+      }
+      var results = new ArrayList<T>();
+      for (var future : futures) {
+        results.add(future.get(30, TimeUnit.SECONDS));
+      }
+      return results;
+    }
+  }
+
+  private static void sleep(Duration duration) {
+    try {
+      Thread.sleep(duration);
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
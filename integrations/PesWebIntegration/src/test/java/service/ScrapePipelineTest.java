@@ -0,0 +1,151 @@
+package service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ScrapePipelineTest {
+  private static final ScrapePipeline.Settings SETTINGS =
+      new ScrapePipeline.Settings(4, 1, 4, 10, Duration.ofMillis(50));
+
+  private final Map<String, String> dogNames = new ConcurrentHashMap<>();
+  private final AtomicInteger detailPagesServed = new AtomicInteger();
+  private final InMemoryCrawlStateStore crawlStateStore = new InMemoryCrawlStateStore();
+  private volatile boolean sendValidators = true;
+  private HttpServer server;
+  private PesWebClient client;
+
+  @BeforeEach
+  void startStub() throws IOException {
+    dogNames.put("1", "Rex");
+    dogNames.put("2", "Bella");
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/cz/psi-k-adopci", this::handle);
+    server.start();
+    client =
+        new PesWebClient(
+            "http://localhost:" + server.getAddress().getPort(), new HostLimiter(2, Duration.ZERO));
+  }
+
+  @AfterEach
+  void stopStub() {
+    server.stop(0);
+  }
+
+  @Test
+  public void recrawlSkipsPagesTheServerReportsAsNotModified() throws Exception {
+    assertThat(crawl()).extracting(DogDto::getName).containsExactlyInAnyOrder("Rex", "Bella");
+    assertThat(crawlStateStore.states).hasSize(2);
+
+    assertThat(crawl()).isEmpty();
+    assertThat(detailPagesServed.get()).isEqualTo(2);
+
+    dogNames.put("2", "Luna");
+    assertThat(crawl()).extracting(DogDto::getName).containsExactly("Luna");
+    assertThat(detailPagesServed.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void recrawlDoesNotRewriteDogsWithUnchangedContentWhenServerSendsNoValidators()
+      throws Exception {
+    sendValidators = false;
+
+    assertThat(crawl()).hasSize(2);
+    assertThat(crawl()).isEmpty();
+    assertThat(detailPagesServed.get()).isEqualTo(4);
+  }
+
+  private List<DogDto> crawl() throws InterruptedException {
+    var written = Collections.synchronizedList(new ArrayList<DogDto>());
+    new ScrapePipeline(client, crawlStateStore, written::addAll, SETTINGS).run();
+    return written;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    var query = exchange.getRequestURI().getQuery();
+    if (query == null || !query.startsWith("objid=")) {
+      respond(exchange, listPage());
+      return;
+    }
+
+    var id = query.substring("objid=".length());
+    var name = dogNames.get(id);
+    var etag = "\"" + id + "-" + name + "\"";
+    if (sendValidators) {
+      if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return;
+      }
+      exchange.getResponseHeaders().add("ETag", etag);
+    }
+    detailPagesServed.incrementAndGet();
+    respond(exchange, detailPage(name));
+  }
+
+  private String listPage() {
+    var items = new StringBuilder();
+    dogNames.forEach(
+        (id, name) ->
+            items.append(
+                "<div class=\"object-item\"><a href=\"/cz/psi-k-adopci?objid=%s\">%s</a></div>"
+                    .formatted(id, name)));
+    return "<html><body><div class=\"pager\"><a rel=\"next\">1</a></div>%s</body></html>"
+        .formatted(items);
+  }
+
+  private static String detailPage(String name) {
+    return """
+        <html><body>
+          <h1 class="nadpis">%s</h1>
+          <div id="dogdetail"><div id="dd-left"><table><tbody>
+            <tr><td>Velikost: Střední</td></tr>
+            <tr><td>Pohlaví: Pes</td></tr>
+            <tr><td>věk: 3 roky</td></tr>
+            <tr><th>umístění</th><td><a href="/cz/utulek-1">Útulek</a></td></tr>
+          </tbody></table></div></div>
+          <div><p>%s is a good dog.</p></div>
+        </body></html>
+        """
+        .formatted(name, name);
+  }
+
+  private static void respond(HttpExchange exchange, String body) throws IOException {
+    var bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+    exchange.sendResponseHeaders(200, bytes.length);
+    try (var responseBody = exchange.getResponseBody()) {
+      responseBody.write(bytes);
+    }
+  }
+
+  private static class InMemoryCrawlStateStore implements CrawlStateStore {
+    private final Map<String, CrawlState> states = new ConcurrentHashMap<>();
+
+    @Override
+    public CrawlState find(String url) {
+      return states.get(url);
+    }
+
+    @Override
+    public void saveAll(Collection<CrawlState> newStates) {
+      newStates.forEach(state -> states.put(state.url(), state));
+    }
+  }
+}
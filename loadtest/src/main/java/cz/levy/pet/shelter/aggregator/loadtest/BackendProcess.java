@@ -0,0 +1,115 @@
+package cz.levy.pet.shelter.aggregator.loadtest;
+
+import cz.levy.pet.shelter.aggregator.Application;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * The backend running in a JVM of its own, so that its heap, garbage collection and threads do not
+ * share the machine's JVM with the clients measuring it. It runs from the classpath of the load
+ * test, or from the load test jar through Spring Boot's {@code PropertiesLauncher}, and logs to a
+ * file.
+ */
+final class BackendProcess implements AutoCloseable {
+  private static final String PROPERTIES_LAUNCHER =
+      "org.springframework.boot.loader.launch.PropertiesLauncher";
+  private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+  private final Process process;
+  private final URI baseUri;
+
+  private BackendProcess(Process process, URI baseUri) {
+    this.process = process;
+    this.baseUri = baseUri;
+  }
+
+  /** Starts the backend against the database and returns once it reports itself healthy. */
+  static BackendProcess start(PostgreSQLContainer<?> postgres, Path log)
+      throws IOException, InterruptedException {
+    var port = freePort();
+    var command = new ArrayList<String>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.add("--enable-preview");
+    command.addAll(mainClassArguments());
+    // Arguments, unlike default properties, take precedence over application.yml.
+    command.addAll(
+        List.of(
+            "--server.port=" + port,
+            "--spring.datasource.url=" + postgres.getJdbcUrl(),
+            "--spring.datasource.username=" + postgres.getUsername(),
+            "--spring.datasource.password=" + postgres.getPassword(),
+            "--spring.jpa.show-sql=false"));
+    var process =
+        new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+    var backend = new BackendProcess(process, URI.create("http://localhost:" + port));
+    try {
+      backend.awaitHealthy(log);
+    } catch (IOException | InterruptedException | RuntimeException e) {
+      backend.close();
+      throw e;
+    }
+    return backend;
+  }
+
+  URI baseUri() {
+    return baseUri;
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    process.destroy();
+    if (!process.waitFor(30, TimeUnit.SECONDS)) {
+      process.destroyForcibly().waitFor();
+    }
+  }
+
+  private void awaitHealthy(Path log) throws IOException, InterruptedException {
+    var health = HttpRequest.newBuilder(baseUri.resolve("/actuator/health")).GET().build();
+    var deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+    try (var httpClient = HttpClient.newHttpClient()) {
+      while (System.nanoTime() < deadline) {
+        if (!process.isAlive()) {
+          throw new IllegalStateException(
+              "The backend exited with status " + process.exitValue() + ", see " + log);
+        }
+        try {
+          if (httpClient.send(health, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+            return;
+          }
+        } catch (ConnectException e) {
+          // Not listening yet.
+        }
+        Thread.sleep(500);
+      }
+    }
+    throw new IllegalStateException(
+        "The backend did not become healthy within " + STARTUP_TIMEOUT + ", see " + log);
+  }
+
+  // Started with java -jar, the classes are nested in the jar and only its launcher can load them.
+  private static List<String> mainClassArguments() {
+    var classPath = System.getProperty("java.class.path");
+    if (Application.class.getClassLoader() == ClassLoader.getSystemClassLoader()) {
+      return List.of("-cp", classPath, Application.class.getName());
+    }
+    return List.of(
+        "-cp", classPath, "-Dloader.main=" + Application.class.getName(), PROPERTIES_LAUNCHER);
+  }
+
+  private static int freePort() throws IOException {
+    try (var socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+}
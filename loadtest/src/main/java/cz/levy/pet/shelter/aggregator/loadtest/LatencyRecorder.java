@@ -0,0 +1,82 @@
+package cz.levy.pet.shelter.aggregator.loadtest;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Latencies of the requests of each scenario. Every worker records into its own recorder, so
+ * recording needs no synchronisation; the recorders are merged once the run is over.
+ */
+final class LatencyRecorder {
+  private final Map<Scenario, Samples> samples = new EnumMap<>(Scenario.class);
+
+  void record(Scenario scenario, long nanos, boolean failed) {
+    samples.computeIfAbsent(scenario, _ -> new Samples()).add(nanos, failed);
+  }
+
+  void mergeFrom(LatencyRecorder other) {
+    other.samples.forEach(
+        (scenario, theirs) -> samples.computeIfAbsent(scenario, _ -> new Samples()).addAll(theirs));
+  }
+
+  LoadReport report(double seconds) {
+    var endpoints =
+        samples.entrySet().stream()
+            .map(entry -> entry.getValue().result(entry.getKey(), seconds))
+            .toList();
+    return new LoadReport(seconds, endpoints);
+  }
+
+  private static final class Samples {
+    private long[] nanos = new long[1024];
+    private int count;
+    private long errors;
+
+    void add(long latency, boolean failed) {
+      if (count == nanos.length) {
+        nanos = Arrays.copyOf(nanos, count * 2);
+      }
+      nanos[count++] = latency;
+      if (failed) {
+        errors++;
+      }
+    }
+
+    void addAll(Samples other) {
+      if (count + other.count > nanos.length) {
+        nanos = Arrays.copyOf(nanos, Math.max(count + other.count, count * 2));
+      }
+      System.arraycopy(other.nanos, 0, nanos, count, other.count);
+      count += other.count;
+      errors += other.errors;
+    }
+
+    LoadReport.EndpointResult result(Scenario scenario, double seconds) {
+      var sorted = Arrays.copyOf(nanos, count);
+      Arrays.sort(sorted);
+      return new LoadReport.EndpointResult(
+          scenario.endpoint(),
+          count,
+          errors,
+          count / seconds,
+          millis(percentile(sorted, 0.50)),
+          millis(percentile(sorted, 0.95)),
+          millis(percentile(sorted, 0.99)),
+          millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+    }
+
+    // Nearest-rank percentile: the smallest latency that at least that share of requests met.
+    private static long percentile(long[] sorted, double share) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      var rank = (int) Math.ceil(share * sorted.length);
+      return sorted[Math.max(rank, 1) - 1];
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1_000_000.0;
+    }
+  }
+}
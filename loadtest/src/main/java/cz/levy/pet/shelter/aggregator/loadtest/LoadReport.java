@@ -0,0 +1,97 @@
+package cz.levy.pet.shelter.aggregator.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/** Throughput and latency percentiles per endpoint over the measured part of a run. */
+record LoadReport(double seconds, List<EndpointResult> endpoints) {
+  private static final ObjectMapper OBJECT_MAPPER =
+      new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+  record EndpointResult(
+      String endpoint,
+      long requests,
+      long errors,
+      double throughput,
+      double p50Millis,
+      double p95Millis,
+      double p99Millis,
+      double maxMillis) {
+
+    double errorRate() {
+      return requests == 0 ? 0 : (double) errors / requests;
+    }
+  }
+
+  static LoadReport read(Path path) throws IOException {
+    return OBJECT_MAPPER.readValue(path.toFile(), LoadReport.class);
+  }
+
+  void write(Path path) throws IOException {
+    OBJECT_MAPPER.writeValue(path.toFile(), this);
+  }
+
+  String toTable() {
+    var table = new StringBuilder();
+    table.append(
+        "%-50s %9s %7s %9s %9s %9s %9s %9s%n"
+            .formatted(
+                "Endpoint", "Requests", "Errors", "Req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+    for (var result : endpoints) {
+      table.append(
+          "%-50s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n"
+              .formatted(
+                  result.endpoint(),
+                  result.requests(),
+                  result.errors(),
+                  result.throughput(),
+                  result.p50Millis(),
+                  result.p95Millis(),
+                  result.p99Millis(),
+                  result.maxMillis()));
+    }
+    return table.toString();
+  }
+
+  /**
+   * Lists the endpoints that failed more often than {@code maxErrorRate} or, compared with the
+   * baseline, got a p99 latency or a throughput worse by more than {@code tolerance}.
+   */
+  List<String> regressions(LoadReport baseline, double tolerance, double maxErrorRate) {
+    var regressions = new ArrayList<String>();
+    var baselineByEndpoint =
+        baseline == null
+            ? Map.<String, EndpointResult>of()
+            : baseline.endpoints().stream()
+                .collect(Collectors.toMap(EndpointResult::endpoint, Function.identity()));
+    for (var result : endpoints) {
+      if (result.errorRate() > maxErrorRate) {
+        regressions.add(
+            "%s failed %d of %d requests"
+                .formatted(result.endpoint(), result.errors(), result.requests()));
+      }
+      var previous = baselineByEndpoint.get(result.endpoint());
+      if (previous == null) {
+        continue;
+      }
+      if (result.p99Millis() > previous.p99Millis() * (1 + tolerance)) {
+        regressions.add(
+            "%s p99 rose from %.2f ms to %.2f ms"
+                .formatted(result.endpoint(), previous.p99Millis(), result.p99Millis()));
+      }
+      if (result.throughput() < previous.throughput() * (1 - tolerance)) {
+        regressions.add(
+            "%s throughput fell from %.1f to %.1f requests/s"
+                .formatted(result.endpoint(), previous.throughput(), result.throughput()));
+      }
+    }
+    return regressions;
+  }
+}
@@ -0,0 +1,164 @@
+package cz.levy.pet.shelter.aggregator.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Starts the backend in a JVM of its own against a Testcontainers Postgres seeded with synthetic
+ * dogs, replays a weighted mix of reads and writes from a fixed number of clients, either closed
+ * loop or at a fixed rate, and reports the throughput and latency percentiles of each endpoint.
+ *
+ * <p>Exits with status 1 when an endpoint fails too often or, given a {@code --baseline} report of
+ * an earlier run, regresses beyond {@code --tolerance}, so that a release build can be gated on it.
+ *
+ * <p>Usage: {@code LoadTest [--name=value ...]}
+ */
+public class LoadTest {
+
+  public static void main(String[] args) throws Exception {
+    LoadTestConfig config;
+    try {
+      config = LoadTestConfig.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(LoadTestConfig.usage());
+      System.exit(2);
+      return;
+    }
+    System.exit(run(config));
+  }
+
+  private static int run(LoadTestConfig config) throws Exception {
+    try (var postgres = new PostgreSQLContainer<>("postgres:15-alpine")) {
+      postgres.start();
+      var log = config.report().toAbsolutePath().resolveSibling("loadtest-backend.log");
+      System.out.println("Starting the backend, logging to " + log);
+      try (var backend = BackendProcess.start(postgres, log)) {
+        var objectMapper = new ObjectMapper();
+        System.out.printf("Seeding %d dogs into %d shelters%n", config.dogs(), config.shelters());
+        var dogs =
+            SyntheticDogs.seed(
+                postgres,
+                backend.baseUri(),
+                objectMapper,
+                config.dogs(),
+                config.shelters(),
+                config.seed());
+        var target = new Scenario.Target(backend.baseUri(), dogs, objectMapper);
+
+        System.out.printf(
+            "Warming up for %s, then measuring for %s with %d clients%s%n",
+            config.warmup(),
+            config.duration(),
+            config.concurrency(),
+            config.rate() > 0 ? " sending " + config.rate() + " requests per second" : "");
+        var report = replay(target, config);
+        System.out.print(report.toTable());
+        report.write(config.report());
+        System.out.println("Report written to " + config.report());
+
+        var baseline = config.baseline() == null ? null : LoadReport.read(config.baseline());
+        var regressions = report.regressions(baseline, config.tolerance(), config.maxErrorRate());
+        regressions.forEach(regression -> System.err.println("Regression: " + regression));
+        return regressions.isEmpty() ? 0 : 1;
+      }
+    }
+  }
+
+  private static LoadReport replay(Scenario.Target target, LoadTestConfig config) throws Exception {
+    var scenarios = new ArrayList<Scenario>();
+    config
+        .mix()
+        .forEach((scenario, weight) -> scenarios.addAll(Collections.nCopies(weight, scenario)));
+    var start = System.nanoTime();
+    var measureFrom = start + config.warmup().toNanos();
+    var end = measureFrom + config.duration().toNanos();
+
+    var recorders = new ArrayList<Future<LatencyRecorder>>();
+    // Each client's schedule is offset so that together they send evenly spaced requests.
+    var interval = config.rate() > 0 ? (long) (config.concurrency() * 1e9 / config.rate()) : 0;
+    var seeds = new SplittableRandom(config.seed());
+    try (var httpClient = HttpClient.newHttpClient();
+        var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < config.concurrency(); i++) {
+        var random = seeds.split();
+        var firstSend = start + interval * i / config.concurrency();
+        recorders.add(
+            executor.submit(
+                () ->
+                    replayUntil(
+                        httpClient,
+                        target,
+                        scenarios,
+                        random,
+                        firstSend,
+                        interval,
+                        measureFrom,
+                        end)));
+      }
+      var merged = new LatencyRecorder();
+      for (var recorder : recorders) {
+        merged.mergeFrom(recorder.get());
+      }
+      return merged.report(config.duration().toNanos() / 1e9);
+    }
+  }
+
+  /**
+   * Without an interval, the client sends its next request as soon as the previous one is answered
+   * and a request's latency is the time until its answer. A slow answer then also delays the
+   * requests that would have been sent meanwhile, so they are never measured, which hides stalls
+   * from the percentiles. With an interval, requests are due on a fixed schedule and a request's
+   * latency counts from when it was due, so a stall shows in every request it held up.
+   */
+  private static LatencyRecorder replayUntil(
+      HttpClient httpClient,
+      Scenario.Target target,
+      List<Scenario> scenarios,
+      SplittableRandom random,
+      long firstSend,
+      long interval,
+      long measureFrom,
+      long end)
+      throws InterruptedException {
+    var recorder = new LatencyRecorder();
+    var due = firstSend;
+    while (due < end) {
+      if (interval > 0) {
+        var wait = due - System.nanoTime();
+        if (wait > 0) {
+          TimeUnit.NANOSECONDS.sleep(wait);
+        }
+      }
+      var scenario = scenarios.get(random.nextInt(scenarios.size()));
+      var request = scenario.request(target, random);
+      var sent = System.nanoTime();
+      if (interval == 0) {
+        due = sent;
+      }
+      boolean failed;
+      try {
+        var status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        failed = status >= 400;
+      } catch (IOException e) {
+        failed = true;
+      }
+      var answered = System.nanoTime();
+      if (due >= measureFrom && answered <= end) {
+        recorder.record(scenario, answered - due, failed);
+      }
+      due = interval > 0 ? due + interval : answered;
+    }
+    return recorder;
+  }
+}
@@ -0,0 +1,118 @@
+package cz.levy.pet.shelter.aggregator.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * Settings of a load test run. Every setting has a default and is overridden with a {@code
+ * --name=value} argument.
+ *
+ * <p>A positive {@code rate}, in requests per second, replays on a fixed schedule; zero lets every
+ * client send its next request as soon as the last one is answered.
+ */
+record LoadTestConfig(
+    int dogs,
+    int shelters,
+    int concurrency,
+    double rate,
+    Duration warmup,
+    Duration duration,
+    Map<Scenario, Integer> mix,
+    Path report,
+    Path baseline,
+    double tolerance,
+    double maxErrorRate,
+    long seed) {
+
+  private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+  static {
+    DEFAULTS.put("dogs", "100000");
+    DEFAULTS.put("shelters", "20");
+    DEFAULTS.put("concurrency", "32");
+    DEFAULTS.put("rate", "0");
+    DEFAULTS.put("warmup", "10s");
+    DEFAULTS.put("duration", "60s");
+    DEFAULTS.put("mix", "list=40,filter=20,sort=10,random=10,detail=10,patch=5,upsert=5");
+    DEFAULTS.put("report", "loadtest-report.json");
+    DEFAULTS.put("baseline", "");
+    DEFAULTS.put("tolerance", "0.2");
+    DEFAULTS.put("max-error-rate", "0.01");
+    DEFAULTS.put("seed", "42");
+  }
+
+  static LoadTestConfig parse(String... args) {
+    var values = new LinkedHashMap<>(DEFAULTS);
+    for (var arg : args) {
+      var separator = arg.indexOf('=');
+      if (!arg.startsWith("--") || separator < 0) {
+        throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+      }
+      var name = arg.substring(2, separator);
+      if (!DEFAULTS.containsKey(name)) {
+        throw new IllegalArgumentException(
+            "Unknown option --" + name + ", must be one of " + DEFAULTS.keySet());
+      }
+      values.put(name, arg.substring(separator + 1));
+    }
+
+    var config =
+        new LoadTestConfig(
+            Integer.parseInt(values.get("dogs")),
+            Integer.parseInt(values.get("shelters")),
+            Integer.parseInt(values.get("concurrency")),
+            Double.parseDouble(values.get("rate")),
+            DurationStyle.detectAndParse(values.get("warmup")),
+            DurationStyle.detectAndParse(values.get("duration")),
+            parseMix(values.get("mix")),
+            Path.of(values.get("report")),
+            values.get("baseline").isBlank() ? null : Path.of(values.get("baseline")),
+            Double.parseDouble(values.get("tolerance")),
+            Double.parseDouble(values.get("max-error-rate")),
+            Long.parseLong(values.get("seed")));
+    if (config.dogs() < 1 || config.shelters() < 1 || config.concurrency() < 1) {
+      throw new IllegalArgumentException("Dogs, shelters and concurrency must be positive");
+    }
+    if (config.rate() < 0) {
+      throw new IllegalArgumentException("Rate must not be negative");
+    }
+    if (config.duration().isZero() || config.duration().isNegative()) {
+      throw new IllegalArgumentException("Duration must be positive");
+    }
+    return config;
+  }
+
+  static String usage() {
+    var usage = new StringBuilder("Options, with their defaults:");
+    DEFAULTS.forEach(
+        (name, value) -> usage.append("\n  --").append(name).append('=').append(value));
+    return usage.toString();
+  }
+
+  // "list=40,patch=5" sends eight listings for every patch; scenarios left out are not run.
+  private static Map<Scenario, Integer> parseMix(String mix) {
+    var weights = new EnumMap<Scenario, Integer>(Scenario.class);
+    for (var entry : mix.split(",")) {
+      var parts = entry.trim().split("=");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Expected scenario=weight in the mix but got: " + entry);
+      }
+      var weight = Integer.parseInt(parts[1].trim());
+      if (weight < 0) {
+        throw new IllegalArgumentException("Weight of " + parts[0] + " must not be negative");
+      }
+      if (weight > 0) {
+        weights.put(Scenario.from(parts[0].trim()), weight);
+      }
+    }
+    if (weights.isEmpty()) {
+      throw new IllegalArgumentException("The mix must give some scenario a positive weight");
+    }
+    return Collections.unmodifiableMap(weights);
+  }
+}
@@ -0,0 +1,143 @@
+package cz.levy.pet.shelter.aggregator.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.levy.pet.shelter.aggregator.domain.DogSize;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.domain.SortField;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/** A kind of request the load test sends, with randomised parameters drawn for each request. */
+enum Scenario {
+  LIST("list", "GET /dogs") {
+    @Override
+    HttpRequest request(Target target, SplittableRandom random) {
+      return target.get("/dogs?size=" + PAGE_SIZE + "&page=" + random.nextInt(PAGES));
+    }
+  },
+  FILTER("filter", "GET /dogs?ageMin&ageMax&sex&dogSize") {
+    @Override
+    HttpRequest request(Target target, SplittableRandom random) {
+      var ageMin = random.nextInt(8);
+      var ageMax = ageMin + 1 + random.nextInt(8);
+      var sex = Sex.values()[random.nextInt(Sex.values().length)];
+      var dogSize = DogSize.values()[random.nextInt(DogSize.values().length)];
+      return target.get(
+          "/dogs?size=%d&ageMin=%d&ageMax=%d&sex=%s&dogSize=%s"
+              .formatted(PAGE_SIZE, ageMin, ageMax, sex, dogSize));
+    }
+  },
+  SORT("sort", "GET /dogs?sort&order") {
+    @Override
+    HttpRequest request(Target target, SplittableRandom random) {
+      var sort = SortField.values()[random.nextInt(SortField.values().length)];
+      var order = random.nextBoolean() ? "ASC" : "DESC";
+      return target.get(
+          "/dogs?size=%d&page=%d&sort=%s&order=%s"
+              .formatted(PAGE_SIZE, random.nextInt(PAGES), sort, order));
+    }
+  },
+  RANDOM("random", "GET /dogs?randomise=true") {
+    @Override
+    HttpRequest request(Target target, SplittableRandom random) {
+      return target.get("/dogs?randomise=true&size=" + PAGE_SIZE);
+    }
+  },
+  DETAIL("detail", "GET /dogs/{id}") {
+    @Override
+    HttpRequest request(Target target, SplittableRandom random) {
+      return target.get("/dogs/" + target.anyDog(random).id());
+    }
+  },
+  PATCH("patch", "PATCH /dogs/{id}") {
+    @Override
+    HttpRequest request(Target target, SplittableRandom random) {
+      var patch = Map.of("currentWeight", 2 + random.nextInt(40));
+      return target
+          .builder("/dogs/" + target.anyDog(random).id())
+          .header("Content-Type", "application/merge-patch+json")
+          .method("PATCH", target.body(patch))
+          .build();
+    }
+  },
+  UPSERT("upsert", "PUT /dogs/by-external/{shelterId}/{externalId}") {
+    @Override
+    HttpRequest request(Target target, SplittableRandom random) {
+      var dog = SyntheticDogs.vary(target.anyDog(random).dog(), random);
+      return target
+          .builder(
+              "/dogs/by-external/"
+                  + dog.getShelterId()
+                  + "/"
+                  + URLEncoder.encode(dog.getExternalId(), StandardCharsets.UTF_8))
+          .header("Content-Type", "application/json")
+          .PUT(target.body(dog))
+          .build();
+    }
+  };
+
+  private static final int PAGE_SIZE = 20;
+  private static final int PAGES = 10;
+
+  private final String key;
+  private final String endpoint;
+
+  Scenario(String key, String endpoint) {
+    this.key = key;
+    this.endpoint = endpoint;
+  }
+
+  abstract HttpRequest request(Target target, SplittableRandom random);
+
+  String key() {
+    return key;
+  }
+
+  String endpoint() {
+    return endpoint;
+  }
+
+  static Scenario from(String key) {
+    return Arrays.stream(values())
+        .filter(scenario -> scenario.key.equals(key))
+        .findFirst()
+        .orElseThrow(
+            () ->
+                new IllegalArgumentException(
+                    "Unknown scenario '"
+                        + key
+                        + "', must be one of "
+                        + Arrays.stream(values()).map(Scenario::key).toList()));
+  }
+
+  /** The running backend and the dogs seeded into it. */
+  record Target(URI baseUri, List<SyntheticDogs.SeededDog> dogs, ObjectMapper objectMapper) {
+    HttpRequest.Builder builder(String path) {
+      return HttpRequest.newBuilder(baseUri.resolve(path)).header("Accept", "application/json");
+    }
+
+    HttpRequest get(String path) {
+      return builder(path).GET().build();
+    }
+
+    HttpRequest.BodyPublisher body(Object value) {
+      try {
+        return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(value));
+      } catch (JsonProcessingException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    SyntheticDogs.SeededDog anyDog(SplittableRandom random) {
+      return dogs.get(random.nextInt(dogs.size()));
+    }
+  }
+}
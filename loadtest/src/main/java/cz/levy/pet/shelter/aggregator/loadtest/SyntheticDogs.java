@@ -0,0 +1,133 @@
+package cz.levy.pet.shelter.aggregator.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.levy.pet.shelter.aggregator.api.DogUpsertBatchResponse;
+import cz.levy.pet.shelter.aggregator.domain.Sex;
+import cz.levy.pet.shelter.aggregator.dto.DogDto;
+import cz.levy.pet.shelter.aggregator.service.DogIngestService;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Seeds the database with copies of the scraped {@code dogs.json} dogs, spread over synthetic
+ * shelters, with jittered ages, weights and sexes so that filters and sorts see realistic spread.
+ */
+final class SyntheticDogs {
+
+  private SyntheticDogs() {}
+
+  /**
+   * Inserts the shelters straight into the database, which the backend has no endpoint for, and
+   * upserts the dogs through the backend in batches. The same seed seeds the same dogs.
+   */
+  static List<SeededDog> seed(
+      PostgreSQLContainer<?> postgres,
+      URI baseUri,
+      ObjectMapper objectMapper,
+      int dogs,
+      int shelters,
+      long seed)
+      throws IOException, InterruptedException, SQLException {
+    List<DogDto> fixture;
+    try (var input = SyntheticDogs.class.getResourceAsStream("/dogs.json")) {
+      fixture = objectMapper.readValue(input, new TypeReference<>() {});
+    }
+    var shelterIds = insertShelters(postgres, shelters);
+
+    var random = new SplittableRandom(seed);
+    var seeded = new ArrayList<SeededDog>(dogs);
+    var batch = new ArrayList<DogDto>();
+    try (var httpClient = HttpClient.newHttpClient()) {
+      for (int i = 0; i < dogs; i++) {
+        var template = fixture.get(i % fixture.size());
+        var dog = vary(template, random);
+        dog.setShelterId(shelterIds.get(i % shelterIds.size()));
+        dog.setExternalId(template.getExternalId() + "-" + i);
+        batch.add(dog);
+        if (batch.size() == DogIngestService.MAX_BATCH_SIZE || i == dogs - 1) {
+          for (var result : upsert(httpClient, baseUri, objectMapper, batch).items()) {
+            if (result.internalId() == null) {
+              throw new IllegalStateException("Cannot seed dog: " + result.message());
+            }
+            seeded.add(new SeededDog(result.internalId(), batch.get(result.index())));
+          }
+          batch.clear();
+        }
+      }
+    }
+    return seeded;
+  }
+
+  private static List<Long> insertShelters(PostgreSQLContainer<?> postgres, int shelters)
+      throws SQLException {
+    try (var connection =
+            DriverManager.getConnection(
+                postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+        var insert =
+            connection.prepareStatement(
+                "INSERT INTO shelter_entity (name) VALUES (?)", new String[] {"id"})) {
+      var ids = new ArrayList<Long>(shelters);
+      for (int i = 0; i < shelters; i++) {
+        insert.setString(1, "Load test shelter " + i);
+        insert.executeUpdate();
+        try (var keys = insert.getGeneratedKeys()) {
+          keys.next();
+          ids.add(keys.getLong(1));
+        }
+      }
+      return ids;
+    }
+  }
+
+  private static DogUpsertBatchResponse upsert(
+      HttpClient httpClient, URI baseUri, ObjectMapper objectMapper, List<DogDto> batch)
+      throws IOException, InterruptedException {
+    var request =
+        HttpRequest.newBuilder(baseUri.resolve("/dogs/by-external/batch"))
+            .header("Content-Type", "application/json")
+            .PUT(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(batch)))
+            .build();
+    var response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException(
+          "Cannot seed dogs, the backend answered "
+              + response.statusCode()
+              + ": "
+              + new String(response.body(), StandardCharsets.UTF_8));
+    }
+    return objectMapper.readValue(response.body(), DogUpsertBatchResponse.class);
+  }
+
+  /** Returns a copy of the dog with a different age, weights and sex but the same key. */
+  static DogDto vary(DogDto dog, SplittableRandom random) {
+    var finalWeightMin = 3 + random.nextInt(40);
+    return DogDto.builder()
+        .shelterId(dog.getShelterId())
+        .externalId(dog.getExternalId())
+        .shelterUrl(dog.getShelterUrl())
+        .name(dog.getName())
+        .description(dog.getDescription())
+        .breedGuess(dog.getBreedGuess())
+        .sex(Sex.values()[random.nextInt(Sex.values().length)])
+        .estimatedAgeInYears(random.nextInt(10) == 0 ? null : random.nextInt(160) / 10F)
+        .currentWeight(random.nextInt(4) == 0 ? null : (float) (1 + random.nextInt(45)))
+        .estimatedFinalWeightMin((float) finalWeightMin)
+        .estimatedFinalWeightMax((float) (finalWeightMin + random.nextInt(10)))
+        .dogAddress(dog.getDogAddress())
+        .imageUrls(dog.getImageUrls())
+        .build();
+  }
+
+  record SeededDog(long id, DogDto dog) {}
+}